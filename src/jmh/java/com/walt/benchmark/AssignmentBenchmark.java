@@ -0,0 +1,74 @@
+package com.walt.benchmark;
+
+import com.walt.index.DriverAvailabilityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+
+/**
+ * Driver assignment on the in-memory availability index (the hot path of createOrderAndAssignDriver without the database).
+ * Every order is for the next City, in the first hours after the history, and books the chosen Driver.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AssignmentBenchmark
+{
+    @Param({"10", "1000", "100000"})
+    int drivers;
+
+    @Param({"1", "50", "500"})
+    int cities;
+
+    @Param({"1000000"})
+    int deliveries;
+
+    private DriverAvailabilityIndex index;
+    private long firstFreeHourMillis;
+    private int citiesWithDrivers;
+    private long order;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        index = new DriverAvailabilityIndex();
+        SyntheticData.fill(index, drivers, cities, deliveries);
+        firstFreeHourMillis = SyntheticData.firstFreeHourMillis(deliveries, drivers);
+        // Orders only for Cities with Drivers (there may be more Cities than Drivers).
+        citiesWithDrivers = Math.min(cities, drivers);
+    }
+
+    @Benchmark
+    public Long assignDriver()
+    {
+        long cityId = 1 + (order % citiesWithDrivers);
+        // A year of hours after the history, so the hours fill up slowly and the index keeps growing like production.
+        long hour = (order / citiesWithDrivers) % (24 * 365);
+        order++;
+
+        Date deliveryTime = new Date(firstFreeHourMillis + hour * SyntheticData.HOUR_MILLIS);
+        Long driverId = index.findLeastBusyAvailableDriver(cityId, deliveryTime);
+        if (driverId != null)
+        {
+            index.addDelivery(driverId, deliveryTime);
+        }
+        return driverId;
+    }
+
+    @Benchmark
+    public Long findAvailableDriver()
+    {
+        long cityId = 1 + (order % citiesWithDrivers);
+        order++;
+        return index.findLeastBusyAvailableDriver(cityId, new Date(firstFreeHourMillis));
+    }
+}
@@ -0,0 +1,51 @@
+package com.walt.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run the benchmarks twice and save the results in JSON:
+ * throughput (ops/s, with the allocation rate of the GC profiler) and latency (sample time percentiles, p99 included).
+ * Then save the fairness report of the assignment strategies (fairness.json).
+ * Note: The first argument is the results directory, the other arguments are regular JMH arguments
+ * (e.g. a benchmark regex, '-p drivers=1000', '-f 0').
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws Exception
+    {
+        File resultsDirectory = new File(args[0]);
+        resultsDirectory.mkdirs();
+        CommandLineOptions commandLineOptions = new CommandLineOptions(Arrays.copyOfRange(args, 1, args.length));
+
+        Options throughput = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultsDirectory, "throughput.json").getPath())
+                .build();
+        new Runner(throughput).run();
+
+        Options latency = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultsDirectory, "latency.json").getPath())
+                .build();
+        new Runner(latency).run();
+
+        FairnessReport.write(new File(resultsDirectory, "fairness.json"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.walt.benchmark;
+
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.Delivery;
+import com.walt.model.Driver;
+import com.walt.model.Restaurant;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Bulk loading benchmark on the application context and its H2 database:
+ * saveAll of a batch of new Drivers, then of a Delivery for each of them (the way the test fixtures,
+ * imports and batch orders load rows), and the JDBC statements it prepares (sequence calls, inserts and batches) next to the rows it saves.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BulkLoadBenchmark
+{
+    @Param({"1000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private DriverRepository driverRepository;
+    private DeliveryRepository deliveryRepository;
+    private Statistics statistics;
+    private City city;
+    private Customer customer;
+    private Restaurant restaurant;
+    private long batch;
+
+    /**
+     * The JDBC statements of the benchmark, reported next to its score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements
+    {
+        public long statements;
+        public long rows;
+    }
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        context = new SpringApplicationBuilder(OrderServiceBenchmark.BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN",
+                        "spring.jpa.properties.hibernate.generate_statistics=true")
+                .run();
+        driverRepository = context.getBean(DriverRepository.class);
+        deliveryRepository = context.getBean(DeliveryRepository.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        city = context.getBean(CityRepository.class).save(new City("Bulk City"));
+        customer = context.getBean(CustomerRepository.class).save(new Customer("Bulk Customer", city, "Address"));
+        restaurant = context.getBean(RestaurantRepository.class).save(new Restaurant("Bulk Restaurant", city, "Address"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Delivery> saveAllDriversAndDeliveries(Statements statements)
+    {
+        long statementsBefore = statistics.getPrepareStatementCount();
+
+        List<Driver> list_driver = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++)
+        {
+            list_driver.add(new Driver("Bulk Driver " + batch + "-" + i, city));
+        }
+        batch++;
+        driverRepository.saveAll(list_driver);
+
+        Date deliveryTime = new Date(batch * SyntheticData.HOUR_MILLIS);
+        List<Delivery> list_delivery = new ArrayList<>(rows);
+        for (Driver driver : list_driver)
+        {
+            list_delivery.add(new Delivery(driver, restaurant, customer, deliveryTime));
+        }
+        deliveryRepository.saveAll(list_delivery);
+
+        statements.statements += statistics.getPrepareStatementCount() - statementsBefore;
+        statements.rows += 2L * rows;
+        return list_delivery;
+    }
+}
@@ -0,0 +1,168 @@
+package com.walt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.index.DriverAvailabilityIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fairness report of the built in assignment strategies.
+ * The same synthetic month of orders is assigned with every strategy: DRIVERS Drivers in CITIES Cities,
+ * a random number of orders every hour, and a tenth of the Drivers joining only in the middle of the month.
+ * For every strategy the report has the spread of the Deliveries and of the distance between the Drivers,
+ * over the whole month and over its last week (min, max, mean, coefficient of variation and Gini coefficient),
+ * and the Deliveries of the late Drivers against the others.
+ */
+final class FairnessReport
+{
+    private static final int DRIVERS = 200;
+    private static final int CITIES = 5;
+    private static final int DAYS = 30;
+    private static final int LATE_DRIVERS = DRIVERS / 10;
+
+    // Maximum orders of a City in an hour, a City has 40 Drivers.
+    private static final int MAXIMUM_HOURLY_ORDERS = 30;
+
+    private FairnessReport()
+    {
+    }
+
+    /**
+     * Simulate the month with every strategy, print the report and save it in JSON.
+     * @param file The report file (File type).
+     * @throws IOException if the report can not be saved.
+     */
+    static void write(File file) throws IOException
+    {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (String name : Strategies.NAMES)
+        {
+            report.put(name, simulate(name));
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(file, report);
+        System.out.println("Fairness report of the assignment strategies:");
+        System.out.println(objectMapper.writeValueAsString(report));
+    }
+
+    private static Map<String, Object> simulate(String name)
+    {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        DriverAssignmentStrategy strategy = Strategies.create(name, index);
+
+        int[] monthDeliveries = new int[DRIVERS];
+        double[] monthDistance = new double[DRIVERS];
+        int[] weekDeliveries = new int[DRIVERS];
+        double[] weekDistance = new double[DRIVERS];
+        int failedOrders = 0;
+
+        // The same orders and distances for every strategy.
+        Random random = new Random(42);
+        for (int hour = 0; hour < DAYS * 24; hour++)
+        {
+            // The late Drivers join in the middle of the month.
+            if (hour == 0 || hour == (DAYS / 2) * 24)
+            {
+                int first = (hour == 0) ? 0 : DRIVERS - LATE_DRIVERS;
+                int last = (hour == 0) ? DRIVERS - LATE_DRIVERS : DRIVERS;
+                for (int d = first; d < last; d++)
+                {
+                    index.addDriver((long) d + 1, SyntheticData.cityIdOf(d, CITIES));
+                    strategy.addDriver((long) d + 1, SyntheticData.cityIdOf(d, CITIES));
+                }
+            }
+
+            Date deliveryTime = new Date(SyntheticData.FIRST_HOUR_MILLIS + hour * SyntheticData.HOUR_MILLIS);
+            boolean lastWeek = hour >= (DAYS - 7) * 24;
+            for (int c = 0; c < CITIES; c++)
+            {
+                int orders = random.nextInt(MAXIMUM_HOURLY_ORDERS + 1);
+                for (int o = 0; o < orders; o++)
+                {
+                    double distance = random.nextDouble() * random.nextInt(20);
+                    Long driverId = strategy.chooseDriver((long) c + 1, deliveryTime);
+                    if (driverId == null)
+                    {
+                        failedOrders++;
+                        continue;
+                    }
+                    index.addDelivery(driverId, deliveryTime);
+                    strategy.addDelivery(driverId, deliveryTime, distance);
+
+                    int d = (int) (driverId - 1);
+                    monthDeliveries[d]++;
+                    monthDistance[d] += distance;
+                    if (lastWeek)
+                    {
+                        weekDeliveries[d]++;
+                        weekDistance[d] += distance;
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("failedOrders", failedOrders);
+        result.put("monthDeliveries", spread(toDoubles(monthDeliveries)));
+        result.put("monthDistance", spread(monthDistance));
+        result.put("lastWeekDeliveries", spread(toDoubles(weekDeliveries)));
+        result.put("lastWeekDistance", spread(weekDistance));
+        result.put("lateDriversMeanDeliveries", mean(toDoubles(monthDeliveries), DRIVERS - LATE_DRIVERS, DRIVERS));
+        result.put("otherDriversMeanDeliveries", mean(toDoubles(monthDeliveries), 0, DRIVERS - LATE_DRIVERS));
+        return result;
+    }
+
+    private static Map<String, Double> spread(double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        double mean = mean(sorted, 0, sorted.length);
+        double variance = 0;
+        double weightedSum = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            variance += (sorted[i] - mean) * (sorted[i] - mean);
+            weightedSum += (i + 1) * sorted[i];
+        }
+        double n = sorted.length;
+        double total = mean * n;
+
+        Map<String, Double> spread = new LinkedHashMap<>();
+        spread.put("min", sorted[0]);
+        spread.put("max", sorted[sorted.length - 1]);
+        spread.put("mean", mean);
+        spread.put("coefficientOfVariation", (mean == 0) ? 0 : Math.sqrt(variance / n) / mean);
+        spread.put("gini", (total == 0) ? 0 : (2 * weightedSum) / (n * total) - (n + 1) / n);
+        return spread;
+    }
+
+    private static double mean(double[] values, int from, int to)
+    {
+        double sum = 0;
+        for (int i = from; i < to; i++)
+        {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    private static double[] toDoubles(int[] values)
+    {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+}
@@ -0,0 +1,281 @@
+package com.walt.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.Driver;
+import com.walt.model.Restaurant;
+import com.walt.web.VirtualThreads;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the orders through HTTP: POST /createOrder with the requests on the Tomcat thread pool ('platform'),
+ * then on virtual threads ('virtual'), and POST /reactive/createOrder ('reactive', the requests wait for the
+ * OrderPipeline without a thread), each mode in an application context of its own with the same data.
+ * CLIENTS client threads send orders one after the other for SECONDS seconds (after a warm up of a fifth of that),
+ * every order in a City and hour that still has a free Driver, so an order only fails when it is rejected.
+ * For every mode the report has the requests/s, the latency percentiles (p50, p99, max) and the failed requests.
+ * Note: The arguments are the results directory, then optionally the clients (default 1000) and the seconds (default 30).
+ * The virtual mode is skipped on a Java without virtual threads.
+ */
+public class LoadTest
+{
+    private static final String[] MODES = {"platform", "virtual", "reactive"};
+
+    private static final int CITIES = 10;
+    private static final int DRIVERS_PER_CITY = 50;
+
+    // Orders of consecutive clients go to other Cities and hours, so they rarely wait for the same slot lock.
+    private static final int HOURS = 24 * 365;
+
+    public static void main(String[] args) throws Exception
+    {
+        File resultsDirectory = new File(args[0]);
+        resultsDirectory.mkdirs();
+        int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+
+        // Keep alive a connection of every client.
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (String mode : MODES)
+        {
+            if (mode.equals("virtual") && ! (VirtualThreads.isAvailable()))
+            {
+                report.put(mode, "skipped, virtual threads need Java 21 (running " + System.getProperty("java.version") + ")");
+                continue;
+            }
+            report.put(mode, run(mode, clients, seconds));
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        objectMapper.writeValue(new File(resultsDirectory, "load.json"), report);
+        System.out.println("Load test of the orders, " + clients + " clients for " + seconds + " seconds:");
+        System.out.println(objectMapper.writeValueAsString(report));
+    }
+
+    private static Map<String, Object> run(String mode, int clients, int seconds) throws Exception
+    {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(OrderServiceBenchmark.BenchmarkApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                // Arguments, not default properties: application.properties would override them.
+                .run("--server.port=0", "--walt.web.threads=" + (mode.equals("virtual") ? "virtual" : "platform"),
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode);
+        try
+        {
+            createData(context);
+            URL url = new URL("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                    + (mode.equals("reactive") ? "/reactive/createOrder" : "/createOrder"));
+
+            long startNanos = System.nanoTime();
+            long measureNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds) / 5;
+            long endNanos = measureNanos + TimeUnit.SECONDS.toNanos(seconds);
+
+            AtomicLong orders = new AtomicLong();
+            List<Client> list_client = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++)
+            {
+                Client client = new Client(url, orders, measureNanos, endNanos);
+                client.thread.start();
+                list_client.add(client);
+            }
+
+            long requests = 0;
+            long failed = 0;
+            for (Client client : list_client)
+            {
+                client.thread.join();
+                requests += client.count;
+                failed += client.failed;
+            }
+
+            long[] latencies = new long[(int) requests];
+            int position = 0;
+            for (Client client : list_client)
+            {
+                System.arraycopy(client.latencies, 0, latencies, position, client.count);
+                position += client.count;
+            }
+            Arrays.sort(latencies);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("requests", requests);
+            result.put("requestsPerSecond", requests / (double) seconds);
+            result.put("failed", failed);
+            result.put("p50Millis", percentileMillis(latencies, 0.5));
+            result.put("p99Millis", percentileMillis(latencies, 0.99));
+            result.put("maxMillis", percentileMillis(latencies, 1));
+            return result;
+        }
+        finally
+        {
+            context.close();
+        }
+    }
+
+    /**
+     * CITIES Cities, each with a Customer, a Restaurant and DRIVERS_PER_CITY Drivers.
+     */
+    private static void createData(ConfigurableApplicationContext context)
+    {
+        List<City> list_city = new ArrayList<>();
+        List<Customer> list_customer = new ArrayList<>();
+        List<Restaurant> list_restaurant = new ArrayList<>();
+        List<Driver> list_driver = new ArrayList<>();
+        for (int c = 0; c < CITIES; c++)
+        {
+            City city = new City("City " + (c + 1));
+            list_city.add(city);
+            list_customer.add(new Customer("Customer " + (c + 1), city, "Address " + (c + 1)));
+            list_restaurant.add(new Restaurant("Restaurant " + (c + 1), city, "Address " + (c + 1)));
+            for (int d = 0; d < DRIVERS_PER_CITY; d++)
+            {
+                list_driver.add(new Driver("Driver " + (c + 1) + "-" + (d + 1), city));
+            }
+        }
+        context.getBean(CityRepository.class).saveAll(list_city);
+        context.getBean(CustomerRepository.class).saveAll(list_customer);
+        context.getBean(RestaurantRepository.class).saveAll(list_restaurant);
+        context.getBean(DriverRepository.class).saveAll(list_driver);
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile)
+    {
+        if (sortedNanos.length == 0)
+        {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * A client thread, sending the next order as soon as the previous one is answered.
+     */
+    private static final class Client implements Runnable
+    {
+        private final URL url;
+        private final AtomicLong orders;
+        private final long measureNanos;
+        private final long endNanos;
+        private final Thread thread;
+        private final SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+        private final byte[] buffer = new byte[1024];
+
+        // Latencies of the measured requests, in nanoseconds.
+        private long[] latencies = new long[1024];
+        private int count;
+        private long failed;
+
+        Client(URL url, AtomicLong orders, long measureNanos, long endNanos)
+        {
+            this.url = url;
+            this.orders = orders;
+            this.measureNanos = measureNanos;
+            this.endNanos = endNanos;
+            this.thread = new Thread(this, "load-client");
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            long now;
+            while ((now = System.nanoTime()) < endNanos)
+            {
+                byte[] body = nextOrder();
+                boolean created;
+                try
+                {
+                    created = post(body) == 200;
+                }
+                catch (IOException e)
+                {
+                    created = false;
+                }
+                long latency = System.nanoTime() - now;
+
+                if (now >= measureNanos)
+                {
+                    if (count == latencies.length)
+                    {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = latency;
+                    if ( ! (created))
+                    {
+                        failed++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * The order n is in City (n % CITIES), at hour ((n / CITIES) % HOURS) from the first hour,
+         * so every City and hour gets at most DRIVERS_PER_CITY orders in the first DRIVERS_PER_CITY * CITIES * HOURS orders.
+         */
+        private byte[] nextOrder()
+        {
+            long n = orders.getAndIncrement();
+            int city = (int) (n % CITIES) + 1;
+            long hour = (n / CITIES) % HOURS;
+            String deliveryTime = format.format(new Date(SyntheticData.FIRST_HOUR_MILLIS + hour * SyntheticData.HOUR_MILLIS));
+            return ("{\"customer\":\"Customer " + city + "\",\"restaurant\":\"Restaurant " + city
+                    + "\",\"deliveryTime\":\"" + deliveryTime + "\"}").getBytes(StandardCharsets.UTF_8);
+        }
+
+        private int post(byte[] body) throws IOException
+        {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream outputStream = connection.getOutputStream())
+            {
+                outputStream.write(body);
+            }
+
+            // Read the whole response, so the connection is kept alive for the next order.
+            int status = connection.getResponseCode();
+            InputStream inputStream = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+            if (inputStream != null)
+            {
+                try (InputStream responseStream = inputStream)
+                {
+                    while (responseStream.read(buffer) != -1)
+                    {
+                        // Discard.
+                    }
+                }
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.walt.benchmark;
+
+import com.walt.WaltApplication;
+import com.walt.WaltService;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.index.DriverAvailabilityIndexLoader;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.Delivery;
+import com.walt.model.DeliveryTime;
+import com.walt.model.Driver;
+import com.walt.model.DriverDistance;
+import com.walt.model.Restaurant;
+import com.walt.ranking.DriverRankingLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * End to end WaltService benchmark on the application context and its H2 database:
+ * createOrderAndAssignDriver (index lookup, locks, transaction and inserts), getDriverRankReport and getDriverRankReportByCity.
+ * Note: The Delivery history is inserted with plain JDBC batches, then the index and the ranking are rebuilt from it,
+ * the same way the application starts on an existing database.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class OrderServiceBenchmark
+{
+    /**
+     * The WaltApplication, without the test configurations of the test classes (they are on the benchmark classpath).
+     * Note: WaltApplication itself is excluded, its own component scan would bring them back,
+     * so its system Clock is declared here again.
+     */
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @AutoConfigurationPackage(basePackageClasses = WaltApplication.class)
+    @ComponentScan(basePackageClasses = WaltApplication.class, excludeFilters = {
+            @ComponentScan.Filter(TestConfiguration.class),
+            @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = WaltApplication.class)})
+    static class BenchmarkApplication
+    {
+        @Bean
+        public Clock clock()
+        {
+            return Clock.systemDefaultZone();
+        }
+    }
+
+    // Ids of the synthetic history, far away from the ids of the delivery sequence.
+    private static final long FIRST_DELIVERY_ID = 1_000_000_000L;
+
+    private static final int JDBC_BATCH_SIZE = 10_000;
+
+    @Param({"10", "1000", "100000"})
+    int drivers;
+
+    @Param({"1", "50", "500"})
+    int cities;
+
+    @Param({"1000000"})
+    int deliveries;
+
+    private ConfigurableApplicationContext context;
+    private WaltService waltService;
+    private List<City> list_city;
+    private List<Customer> list_customer;
+    private List<Restaurant> list_restaurant;
+    private long firstFreeHourMillis;
+    private int citiesWithDrivers;
+    private long order;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        waltService = context.getBean("waltServiceImpl", WaltService.class);
+
+        list_city = new ArrayList<>();
+        list_customer = new ArrayList<>();
+        list_restaurant = new ArrayList<>();
+        for (int c = 0; c < cities; c++)
+        {
+            City city = new City("City " + (c + 1));
+            list_city.add(city);
+            list_customer.add(new Customer("Customer " + (c + 1), city, "Address " + (c + 1)));
+            list_restaurant.add(new Restaurant("Restaurant " + (c + 1), city, "Address " + (c + 1)));
+        }
+        context.getBean(CityRepository.class).saveAll(list_city);
+        context.getBean(CustomerRepository.class).saveAll(list_customer);
+        context.getBean(RestaurantRepository.class).saveAll(list_restaurant);
+
+        Random random = new Random(42);
+        List<Driver> list_driver = new ArrayList<>(drivers);
+        for (int d = 0; d < drivers; d++)
+        {
+            Driver driver = new Driver("Driver " + (d + 1), list_city.get(d % cities));
+            driver.updateDistance(random.nextDouble() * 10000);
+            // The Delivery history below gives Delivery i to Driver (i % drivers).
+            driver.updateDeliveryCount(deliveries / drivers + ((d < deliveries % drivers) ? 1 : 0));
+            list_driver.add(driver);
+        }
+        context.getBean(DriverRepository.class).saveAll(list_driver);
+
+        insertDeliveryHistory(list_driver);
+        firstFreeHourMillis = SyntheticData.firstFreeHourMillis(deliveries, drivers);
+        citiesWithDrivers = Math.min(cities, drivers);
+
+        context.getBean(DriverAvailabilityIndexLoader.class).rebuild();
+        context.getBean(DriverRankingLoader.class).rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public Delivery createOrderAndAssignDriver() throws Exception
+    {
+        // Orders only for Cities with Drivers (there may be more Cities than Drivers).
+        int city = (int) (order % citiesWithDrivers);
+        long hour = order / citiesWithDrivers;
+        order++;
+
+        Date deliveryTime = new Date(firstFreeHourMillis + hour * SyntheticData.HOUR_MILLIS);
+        return waltService.createOrderAndAssignDriver(list_customer.get(city), list_restaurant.get(city), deliveryTime);
+    }
+
+    @Benchmark
+    public List<DriverDistance> getDriverRankReport()
+    {
+        return waltService.getDriverRankReport();
+    }
+
+    @Benchmark
+    public List<DriverDistance> getDriverRankReportByCity()
+    {
+        City city = list_city.get((int) (order++ % cities));
+        return waltService.getDriverRankReportByCity(city);
+    }
+
+    /**
+     * Insert the synthetic Delivery history of the given Drivers.
+     * @param list_driver The saved Drivers, in the order of SyntheticData (List<Driver> type).
+     */
+    private void insertDeliveryHistory(List<Driver> list_driver)
+    {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        String sql = "insert into delivery (id, driver_id, restaurant_id, customer_id, delivery_time, hour_slot, seat, distance)"
+                + " values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(JDBC_BATCH_SIZE);
+        for (int i = 0; i < deliveries; i++)
+        {
+            int d = i % drivers;
+            Driver driver = list_driver.get(d);
+            long deliveryTime = SyntheticData.deliveryTimeOf(i, drivers).getTime();
+            batch.add(new Object[] {FIRST_DELIVERY_ID + i, driver.getId(), list_restaurant.get(d % cities).getId(),
+                    list_customer.get(d % cities).getId(), new Timestamp(deliveryTime), DeliveryTime.hourSlotOf(deliveryTime), 0, 1.0});
+
+            if (batch.size() == JDBC_BATCH_SIZE)
+            {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if ( ! (batch.isEmpty()))
+        {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+}
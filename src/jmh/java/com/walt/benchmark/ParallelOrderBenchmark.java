@@ -0,0 +1,126 @@
+package com.walt.benchmark;
+
+import com.walt.WaltService;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.dao.RestaurantRepository;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.Delivery;
+import com.walt.model.Driver;
+import com.walt.model.Restaurant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order throughput of createOrderAndAssignDriver on a single thread and on a thread per core:
+ * orders of different Cities and hours take different striped locks (SlotLocks), so the throughput should grow
+ * with the number of cores, up to the parallelism of the database.
+ * Compare the ops/s of orderOnOneThread and orderOnAllCores, their ratio is the scaling of the machine
+ * (WaltConcurrencyTest only checks the correctness of parallel orders, a timing assertion would depend on the machine).
+ * Note: Every order is of the next City, and of the next hour once every Driver of every City is booked,
+ * so no order fails whatever the number of threads.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ParallelOrderBenchmark
+{
+    @Param({"10", "100"})
+    int cities;
+
+    @Param({"50"})
+    int driversPerCity;
+
+    private ConfigurableApplicationContext context;
+    private WaltService waltService;
+    private List<Customer> list_customer;
+    private List<Restaurant> list_restaurant;
+
+    // Number of the next order, of all the threads.
+    private final AtomicLong order = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        context = new SpringApplicationBuilder(OrderServiceBenchmark.BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run();
+        waltService = context.getBean("waltServiceImpl", WaltService.class);
+
+        List<City> list_city = new ArrayList<>();
+        list_customer = new ArrayList<>();
+        list_restaurant = new ArrayList<>();
+        List<Driver> list_driver = new ArrayList<>();
+        for (int c = 0; c < cities; c++)
+        {
+            City city = new City("City " + (c + 1));
+            list_city.add(city);
+            list_customer.add(new Customer("Customer " + (c + 1), city, "Address " + (c + 1)));
+            list_restaurant.add(new Restaurant("Restaurant " + (c + 1), city, "Address " + (c + 1)));
+            for (int d = 0; d < driversPerCity; d++)
+            {
+                list_driver.add(new Driver("Driver " + (c + 1) + "_" + (d + 1), city));
+            }
+        }
+        context.getBean(CityRepository.class).saveAll(list_city);
+        context.getBean(CustomerRepository.class).saveAll(list_customer);
+        context.getBean(RestaurantRepository.class).saveAll(list_restaurant);
+        context.getBean(DriverRepository.class).saveAll(list_driver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Delivery orderOnOneThread() throws Exception
+    {
+        return createOrder();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Delivery orderOnAllCores() throws Exception
+    {
+        return createOrder();
+    }
+
+    /**
+     * Create the next order: every City and hour gets exactly as many orders as the City has Drivers.
+     * @return The created Delivery (Delivery type).
+     * @throws Exception if no Driver was available.
+     */
+    private Delivery createOrder() throws Exception
+    {
+        long next = order.getAndIncrement();
+        int city = (int) (next % cities);
+        long hour = next / ((long) cities * driversPerCity);
+
+        Date deliveryTime = new Date(SyntheticData.FIRST_HOUR_MILLIS + hour * SyntheticData.HOUR_MILLIS);
+        return waltService.createOrderAndAssignDriver(list_customer.get(city), list_restaurant.get(city), deliveryTime);
+    }
+}
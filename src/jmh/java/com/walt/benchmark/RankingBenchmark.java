@@ -0,0 +1,77 @@
+package com.walt.benchmark;
+
+import com.walt.model.Driver;
+import com.walt.model.DriverDistance;
+import com.walt.ranking.DriverRanking;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The Driver rank reports (getDriverRankReport, getDriverRankReportByCity) and the ranking update of a new Delivery.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RankingBenchmark
+{
+    @Param({"10", "1000", "100000"})
+    int drivers;
+
+    @Param({"1", "50", "500"})
+    int cities;
+
+    private DriverRanking ranking;
+    private Driver[] rankedDrivers;
+    private final Random random = new Random(42);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        ranking = new DriverRanking();
+        rankedDrivers = new Driver[drivers];
+        for (int d = 0; d < drivers; d++)
+        {
+            rankedDrivers[d] = SyntheticData.driver(d, cities, random.nextDouble() * 10000);
+            ranking.update(rankedDrivers[d]);
+        }
+    }
+
+    @Benchmark
+    public List<DriverDistance> rankReport()
+    {
+        return ranking.report(0, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<DriverDistance> rankReportTop100()
+    {
+        return ranking.report(0, 100);
+    }
+
+    @Benchmark
+    public List<DriverDistance> rankReportByCity()
+    {
+        long cityId = 1 + (next++ % cities);
+        return ranking.reportByCity(cityId, 0, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public void updateDistance()
+    {
+        Driver driver = rankedDrivers[next++ % drivers];
+        driver.updateDistance(random.nextInt(20));
+        ranking.update(driver);
+    }
+}
@@ -0,0 +1,40 @@
+package com.walt.benchmark;
+
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.assignment.LeastDeliveriesStrategy;
+import com.walt.assignment.LeastDistanceTodayStrategy;
+import com.walt.assignment.RollingWindowStrategy;
+import com.walt.assignment.RoundRobinStrategy;
+import com.walt.index.DriverAvailabilityIndex;
+
+import java.time.Duration;
+
+/**
+ * Create the built in assignment strategies by name, outside of the application context.
+ */
+final class Strategies
+{
+    static final String[] NAMES = {LeastDeliveriesStrategy.NAME, RollingWindowStrategy.NAME,
+            LeastDistanceTodayStrategy.NAME, RoundRobinStrategy.NAME};
+
+    private Strategies()
+    {
+    }
+
+    static DriverAssignmentStrategy create(String name, DriverAvailabilityIndex index)
+    {
+        switch (name)
+        {
+            case LeastDeliveriesStrategy.NAME:
+                return new LeastDeliveriesStrategy(index);
+            case RollingWindowStrategy.NAME:
+                return new RollingWindowStrategy(index, Duration.ofDays(7));
+            case LeastDistanceTodayStrategy.NAME:
+                return new LeastDistanceTodayStrategy(index);
+            case RoundRobinStrategy.NAME:
+                return new RoundRobinStrategy(index);
+            default:
+                throw new IllegalArgumentException("Unknown assignment strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.walt.benchmark;
+
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.index.DriverAvailabilityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+
+/**
+ * Driver assignment with every built in DriverAssignmentStrategy:
+ * choose the Driver, then book it in the availability index and in the strategy state (like a committed Delivery).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StrategyBenchmark
+{
+    @Param({"least-deliveries", "rolling-window", "least-distance-today", "round-robin"})
+    String strategy;
+
+    @Param({"1000", "100000"})
+    int drivers;
+
+    @Param({"1", "50"})
+    int cities;
+
+    @Param({"1000000"})
+    int deliveries;
+
+    private DriverAvailabilityIndex index;
+    private DriverAssignmentStrategy assignmentStrategy;
+    private long firstFreeHourMillis;
+    private int citiesWithDrivers;
+    private long order;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        index = new DriverAvailabilityIndex();
+        assignmentStrategy = Strategies.create(strategy, index);
+        for (int d = 0; d < drivers; d++)
+        {
+            index.addDriver((long) d + 1, SyntheticData.cityIdOf(d, cities));
+            assignmentStrategy.addDriver((long) d + 1, SyntheticData.cityIdOf(d, cities));
+        }
+        for (int i = 0; i < deliveries; i++)
+        {
+            Date deliveryTime = SyntheticData.deliveryTimeOf(i, drivers);
+            index.addDelivery(SyntheticData.driverIdOf(i, drivers), deliveryTime);
+            assignmentStrategy.addDelivery(SyntheticData.driverIdOf(i, drivers), deliveryTime, i % 20);
+        }
+        firstFreeHourMillis = SyntheticData.firstFreeHourMillis(deliveries, drivers);
+        citiesWithDrivers = Math.min(cities, drivers);
+    }
+
+    @Benchmark
+    public Long assignDriver()
+    {
+        long cityId = 1 + (order % citiesWithDrivers);
+        long hour = (order / citiesWithDrivers) % (24 * 365);
+        order++;
+
+        Date deliveryTime = new Date(firstFreeHourMillis + hour * SyntheticData.HOUR_MILLIS);
+        Long driverId = assignmentStrategy.chooseDriver(cityId, deliveryTime);
+        if (driverId != null)
+        {
+            index.addDelivery(driverId, deliveryTime);
+            assignmentStrategy.addDelivery(driverId, deliveryTime, order % 20);
+        }
+        return driverId;
+    }
+}
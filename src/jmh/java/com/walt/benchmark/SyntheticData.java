@@ -0,0 +1,88 @@
+package com.walt.benchmark;
+
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.model.City;
+import com.walt.model.Driver;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic datasets of the benchmarks.
+ * Note: Driver d (0 based) is in City d % cities, and Delivery i of the history belongs to Driver i % drivers,
+ * so every Driver is busy in every hour of the history and the new orders start right after it.
+ */
+final class SyntheticData
+{
+    // First hour of the synthetic history (01-01-2021 00:00 UTC).
+    static final long FIRST_HOUR_MILLIS = 1609459200000L;
+
+    static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private SyntheticData()
+    {
+    }
+
+    static long cityIdOf(int driver, int cities)
+    {
+        return 1 + (driver % cities);
+    }
+
+    static long driverIdOf(int delivery, int drivers)
+    {
+        return 1 + (delivery % drivers);
+    }
+
+    static Date deliveryTimeOf(int delivery, int drivers)
+    {
+        return new Date(FIRST_HOUR_MILLIS + (delivery / drivers) * HOUR_MILLIS);
+    }
+
+    /**
+     * The first hour after the synthetic history.
+     * @param deliveries Number of Deliveries in the history (int type).
+     * @param drivers Number of Drivers (int type).
+     * @return Start of the hour (long type).
+     */
+    static long firstFreeHourMillis(int deliveries, int drivers)
+    {
+        return FIRST_HOUR_MILLIS + ((deliveries + drivers - 1) / drivers) * HOUR_MILLIS;
+    }
+
+    /**
+     * Fill the given index with the synthetic Drivers and Deliveries.
+     * @param index Given empty index (DriverAvailabilityIndex type).
+     * @param drivers Number of Drivers (int type).
+     * @param cities Number of Cities (int type).
+     * @param deliveries Number of Deliveries (int type).
+     */
+    static void fill(DriverAvailabilityIndex index, int drivers, int cities, int deliveries)
+    {
+        for (int d = 0; d < drivers; d++)
+        {
+            index.addDriver((long) d + 1, cityIdOf(d, cities));
+        }
+        for (int i = 0; i < deliveries; i++)
+        {
+            index.addDelivery(driverIdOf(i, drivers), deliveryTimeOf(i, drivers));
+        }
+    }
+
+    /**
+     * A detached synthetic Driver with the given id and total distance.
+     * @param driver Driver number, 0 based (int type).
+     * @param cities Number of Cities (int type).
+     * @param distance Total distance of the Driver (double type).
+     * @return The Driver (Driver type).
+     */
+    static Driver driver(int driver, int cities, double distance)
+    {
+        City city = new City("City " + cityIdOf(driver, cities));
+        city.setId(cityIdOf(driver, cities));
+
+        Driver syntheticDriver = new Driver("Driver " + (driver + 1), city);
+        syntheticDriver.setId((long) driver + 1);
+        syntheticDriver.updateDistance(distance);
+        return syntheticDriver;
+    }
+}
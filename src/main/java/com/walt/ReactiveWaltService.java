@@ -0,0 +1,20 @@
+package com.walt;
+
+import com.walt.model.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+public interface ReactiveWaltService {
+
+    Mono<Delivery> createOrderAndAssignDriver(Customer customer, Restaurant restaurant, Date deliveryTime);
+
+    Flux<DriverDistance> getDriverRankReport(int offset, int limit);
+
+    Flux<DriverDistance> getDriverRankReport(Date from, Date to, int offset, int limit);
+
+    Flux<DriverDistance> getDriverRankReportByCity(City city, int offset, int limit);
+
+    Flux<DriverDistance> getDriverRankReportByCity(City city, Date from, Date to, int offset, int limit);
+}
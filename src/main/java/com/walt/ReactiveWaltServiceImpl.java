@@ -0,0 +1,76 @@
+package com.walt;
+
+import com.walt.model.*;
+import com.walt.pipeline.OrderPipeline;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The WaltService contract on Reactor types, so a caller waiting for an order or a report never holds a thread.
+ * An order is created by the workers of the OrderPipeline (a fixed number of threads, whatever the number of waiting
+ * orders) and its Mono completes with the Delivery the pipeline hands to it (the pipeline order does not keep it).
+ * The rank reports are read from the in-memory DriverRanking, without any database access.
+ * Note: Nothing runs until subscribed, and every subscription is a new order or a new report.
+ */
+@Service
+public class ReactiveWaltServiceImpl implements ReactiveWaltService {
+
+    @Resource
+    WaltService waltService;
+
+    @Resource
+    OrderPipeline orderPipeline;
+
+    /**
+     * Create a new order, by the given Customer, Restaurant and Date of deliveryTime,
+     * and assign an available Driver to the order Delivery (see WaltServiceImpl.createOrderAndAssignDriver).
+     * @param customer Customer who order a Delivery (Customer type).
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return The new Delivery, or an error if it was not created,
+     * RejectedExecutionException if the pipeline queue of the City is full (Mono<Delivery> type).
+     */
+    @Override
+    public Mono<Delivery> createOrderAndAssignDriver(Customer customer, Restaurant restaurant, Date deliveryTime)
+    {
+        return Mono.defer(() ->
+        {
+            CompletableFuture<Delivery> createdDelivery = new CompletableFuture<>();
+            if (orderPipeline.submit(customer, restaurant, deliveryTime, createdDelivery) == null)
+            {
+                return Mono.error(new RejectedExecutionException("Too many orders, please try again later!"));
+            }
+            return Mono.fromFuture(createdDelivery);
+        });
+    }
+
+    @Override
+    public Flux<DriverDistance> getDriverRankReport(int offset, int limit)
+    {
+        return Flux.defer(() -> Flux.fromIterable(waltService.getDriverRankReport(offset, limit)));
+    }
+
+    @Override
+    public Flux<DriverDistance> getDriverRankReport(Date from, Date to, int offset, int limit)
+    {
+        return Flux.defer(() -> Flux.fromIterable(waltService.getDriverRankReport(from, to, offset, limit)));
+    }
+
+    @Override
+    public Flux<DriverDistance> getDriverRankReportByCity(City city, int offset, int limit)
+    {
+        return Flux.defer(() -> Flux.fromIterable(waltService.getDriverRankReportByCity(city, offset, limit)));
+    }
+
+    @Override
+    public Flux<DriverDistance> getDriverRankReportByCity(City city, Date from, Date to, int offset, int limit)
+    {
+        return Flux.defer(() -> Flux.fromIterable(waltService.getDriverRankReportByCity(city, from, to, offset, limit)));
+    }
+}
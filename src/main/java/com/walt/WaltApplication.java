@@ -4,8 +4,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
 
 @SpringBootApplication
+@EnableScheduling
 public class WaltApplication {
 
     private static final Logger log = LoggerFactory.getLogger(WaltApplication.class);
@@ -14,4 +19,14 @@ public class WaltApplication {
     {
         SpringApplication.run(WaltApplication.class, args);
     }
+
+    /**
+     * The clock of 'now' (e.g. the earliest suggested delivery time), replaced by a fixed clock in the tests.
+     * @return The system clock, in the default time zone (Clock type).
+     */
+    @Bean
+    public Clock clock()
+    {
+        return Clock.systemDefaultZone();
+    }
 }
@@ -4,13 +4,34 @@ import com.walt.model.*;
 
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public  interface WaltService{
 
     Delivery createOrderAndAssignDriver(Customer customer, Restaurant restaurant, Date deliveryTime) throws Exception;
 
+    List<DeliveryOrderResult> createOrdersAndAssignDrivers(List<DeliveryOrder> orders);
+
+    List<Date> getNextAvailableDeliveryTimes(Restaurant restaurant, Date from, int count);
+
+    List<Date> getNearestAvailableDeliveryTimes(City city, Date preferredTime, int count);
+
+    List<Date> getNearestAvailableDeliveryTimes(City city, Date preferredTime, Date earliest, int count);
+
     List<DriverDistance> getDriverRankReport();
 
+    List<DriverDistance> getDriverRankReport(int offset, int limit);
+
+    List<DriverDistance> getDriverRankReport(Date from, Date to, int offset, int limit);
+
     List<DriverDistance> getDriverRankReportByCity(City city);
+
+    List<DriverDistance> getDriverRankReportByCity(City city, int offset, int limit);
+
+    List<DriverDistance> getDriverRankReportByCity(City city, Date from, Date to, int offset, int limit);
+
+    long getDriverRankReportVersion();
+
+    void exportDriverRankReport(City city, Consumer<DriverRank> consumer);
 }
 
@@ -1,17 +1,41 @@
 package com.walt;
 
+import com.walt.assignment.DriverAssignmentStrategy;
 import com.walt.dao.*;
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.index.SlotLocks;
 import com.walt.model.*;
-import javafx.util.Pair;
+import com.walt.ranking.DriverRanking;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.sql.Timestamp;
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class WaltServiceImpl implements WaltService {
 
+    private static final String ASSIGNMENT_SOURCE_DATABASE = "database";
+
+    private static final int MAX_ASSIGNMENT_ATTEMPTS = 3;
+
+    private static final String NO_DRIVER_AVAILABLE = "Sorry no driver available to take the new Delivery!";
+
+    // How far ahead (and back) of the preferred time the available delivery times are searched.
+    private static final long AVAILABLE_TIMES_HORIZON_HOURS = TimeUnit.DAYS.toHours(7);
+
     @Resource
     CityRepository cityRepository;
 
@@ -27,45 +51,154 @@ public class WaltServiceImpl implements WaltService {
     @Resource
     RestaurantRepository restaurantRepository;
 
+    @Resource
+    DriverAvailabilityIndex driverAvailabilityIndex;
+
+    @Resource
+    DriverAssignmentStrategy driverAssignmentStrategy;
+
+    @Resource
+    SlotLocks slotLocks;
+
+    @Resource
+    DriverRanking driverRanking;
+
+    @Resource
+    PlatformTransactionManager transactionManager;
+
+    // The clock of 'now', by type (a test replaces it by a primary fixed clock).
+    @Autowired
+    Clock clock;
+
+    TransactionTemplate transactionTemplate;
+
+    TransactionTemplate readOnlyTransactionTemplate;
+
+    // Where the Driver of a new Delivery is chosen from: 'index' (in-memory, default) or 'database'.
+    @Value("${walt.assignment.source:index}")
+    String assignmentSource;
+
+    @PostConstruct
+    public void init()
+    {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
     /**
      * Create a new order, by the given Customer, Restaurant and Date of deliveryTime,
      * ans assign an available Driver to the order Delivery.
      * Note: The Customer City and the Restaurant City must by the same.
+     * Note: Orders of the same City and hour are serialized by a striped lock, so they never choose the same Driver.
+     * Across instances the unique (driver, hour slot, seat) constraint rejects a double booking,
+     * and the assignment is retried with a Driver chosen from the database.
      * @param customer Customer who order a Delivery (Customer type).
      * @param restaurant Restaurant where the order from (Restaurant type).
      * @param deliveryTime Date And Time of the Delivery (Date type).
      * @return A new Delivery which created (Delivery type).
-     * @throws Exception if the Customer City and the Restaurant City are not the same.
+     * @throws Exception if the Customer City and the Restaurant City are not the same,
+     * or no Driver is available to take the new Delivery.
      */
     @Override
     public Delivery createOrderAndAssignDriver(Customer customer, Restaurant restaurant, Date deliveryTime) throws Exception
     {
         City customer_city = customer.getCity();
-        String customer_city_name = customer_city.getName();
         // Check if the Customer City and the Restaurant City are the same.
         // Throw Exception if not.
-        if ( ! (customer_city_name.equals(restaurant.getCity().getName())))
+        // Note: The Cities are compared by id, so a lazy City (e.g. of a cached Customer) is never loaded.
+        if ( ! (customer_city.getId().equals(restaurant.getCity().getId())))
         {
             throw new Exception("Customer City not same as Restaurant City!");
         }
 
-        // Find which Driver is available to take the new Delivery.
-        // Note: If more then one Driver is available, we choose the least busy Driver according to the Driver history.
-        Driver chosenDriver = findTheChosenDriver(customer_city, deliveryTime);
+        Lock slotLock = slotLocks.lockFor(customer_city.getId(), DriverAvailabilityIndex.hourSlotOf(deliveryTime));
+        slotLock.lock();
+        try
+        {
+            return assignDriverAndSaveDelivery(customer_city, customer, restaurant, deliveryTime);
+        }
+        finally
+        {
+            slotLock.unlock();
+        }
+    }
 
-        // Case when no driver is available to take the delivery.
-        if (chosenDriver == null)
+    /**
+     * Choose an available Driver and save the new Delivery with it.
+     * Note: Must be called while holding the lock of the Delivery City and hour.
+     * @param deliveryCity City of the Delivery (City type).
+     * @param customer Customer who order a Delivery (Customer type).
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return A new Delivery which created (Delivery type).
+     * @throws Exception if no Driver is available to take the new Delivery.
+     */
+    private Delivery assignDriverAndSaveDelivery(City deliveryCity, Customer customer, Restaurant restaurant, Date deliveryTime) throws Exception
+    {
+        boolean fromDatabase = ASSIGNMENT_SOURCE_DATABASE.equals(assignmentSource);
+        for (int attempt = 1; ; attempt++)
         {
-            throw new Exception("Sorry no driver available to take the new Delivery!");
+            // Find which Driver is available to take the new Delivery.
+            // Note: If more then one Driver is available, we choose by the assignment strategy (by default the least busy Driver according to the Driver history).
+            Driver chosenDriver = findTheChosenDriver(deliveryCity, deliveryTime, fromDatabase);
+
+            // Case when no driver is available to take the delivery.
+            if (chosenDriver == null)
+            {
+                throw new Exception(NO_DRIVER_AVAILABLE);
+            }
+
+            try
+            {
+                boolean seatFromDatabase = fromDatabase;
+                return transactionTemplate.execute(status -> saveDelivery(chosenDriver, restaurant, customer, deliveryTime, seatFromDatabase));
+            }
+            catch (DataIntegrityViolationException e)
+            {
+                // The Driver was booked for this time by another instance, the in-memory index can not know it.
+                if (attempt == MAX_ASSIGNMENT_ATTEMPTS)
+                {
+                    throw new Exception("Failed to assign a driver to the new Delivery, please try again!", e);
+                }
+                fromDatabase = true;
+            }
+            catch (OptimisticLockingFailureException e)
+            {
+                // The Driver distance was updated by a concurrent Delivery (of another hour), choose again.
+                if (attempt == MAX_ASSIGNMENT_ATTEMPTS)
+                {
+                    throw new Exception("Failed to assign a driver to the new Delivery, please try again!", e);
+                }
+            }
         }
+    }
 
+    /**
+     * Save a new Delivery of the given Driver and update the Driver distance and delivery count, in one transaction.
+     * @param chosenDriver The Driver that takes the Delivery (Driver type).
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param customer Customer who order a Delivery (Customer type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param seatFromDatabase Count the Deliveries of the Driver in the hour from the database instead of the index (boolean type).
+     * @return The saved Delivery (Delivery type).
+     */
+    private Delivery saveDelivery(Driver chosenDriver, Restaurant restaurant, Customer customer, Date deliveryTime, boolean seatFromDatabase)
+    {
         // Create new delivery.
         Delivery delivery = new Delivery(chosenDriver, restaurant, customer, deliveryTime);
 
-        // Update the delivery distance for the chosen driver.
+        // The Delivery takes the next seat of its Driver in the hour,
+        // a concurrent booking of the same seat (by another instance) is rejected by the unique index.
+        delivery.setSeat(seatOf(chosenDriver, deliveryTime, seatFromDatabase));
+
+        // Update the delivery distance and count for the chosen driver.
+        // Note: The Driver is versioned, a concurrent update of the same Driver fails instead of being lost.
         double distance = delivery.getDistance();
         chosenDriver.updateDistance(distance);
-        driverRepository.save(chosenDriver);
+        chosenDriver.updateDeliveryCount(1);
+        delivery.setDriver(driverRepository.save(chosenDriver));
 
         // Save the new delivery.
         deliveryRepository.save(delivery);
@@ -74,204 +207,345 @@ public class WaltServiceImpl implements WaltService {
     }
 
     /**
-     * Find which Driver is available to take the new Delivery.
-     * Note: If more then one Driver is available, we choose the least busy Driver according to the Driver history.
-     * @param deliveryCity City of the Delivery (City type).
+     * The seat of a new Delivery of the given Driver: the number of Deliveries the Driver already has in the hour.
+     * @param driver The Driver that takes the Delivery (Driver type).
      * @param deliveryTime Date And Time of the Delivery (Date type).
-     * @return Available Driver to take the delivery (if exists) or null (Driver type).
+     * @param fromDatabase Count the Deliveries from the database instead of the index (boolean type).
+     * @return The seat of the new Delivery (int type).
      */
-    private Driver findTheChosenDriver(City deliveryCity, Date deliveryTime)
+    private int seatOf(Driver driver, Date deliveryTime, boolean fromDatabase)
     {
-        // Convert deliveryTime from Date to Timestamp, to check equality.
-        Timestamp ts_deliveryTime = new Timestamp(deliveryTime.getTime());
+        if ( ! (fromDatabase))
+        {
+            return driverAvailabilityIndex.getDeliveriesInHour(driver.getId(), deliveryTime);
+        }
+        Date hourStart = DriverAvailabilityIndex.hourStartOf(deliveryTime);
+        Date hourEnd = DriverAvailabilityIndex.hourEndOf(deliveryTime);
+        return (int) deliveryRepository.countDeliveriesOfDriverInRange(driver.getId(), hourStart, hourEnd);
+    }
 
-        // Create Map of Driver and the total of its Deliveries.
-        // Note: The Map will contain only the Drivers that available to take the new Delivery.
-        Map<Driver, Integer> map_driver_totalDeliveries = createMap_driver_totalDeliveries(deliveryCity, ts_deliveryTime);
+    /**
+     * Create a batch of new orders and assign an available Driver to each order Delivery.
+     * The orders are grouped by (City, hour), the Drivers of each group are chosen in one call to the
+     * DriverAssignmentStrategy, and all the Deliveries and Driver distances are saved in one transaction
+     * (written with JDBC batches, see 'hibernate.jdbc.batch_size').
+     * Note: The locks of all the (City, hour) groups are held while the batch is assigned and saved.
+     * If the batch transaction fails (e.g. a concurrent update of one of its Drivers),
+     * or the Drivers are chosen from the database, every order is created on its own instead.
+     * A Driver is chosen at most once for each group, so the orders left without a Driver
+     * are also created on their own, by a Driver with capacity for more than one Delivery an hour.
+     * @param orders The orders to create (List<DeliveryOrder> type).
+     * @return The result of each order, in the orders order (List<DeliveryOrderResult> type).
+     */
+    @Override
+    public List<DeliveryOrderResult> createOrdersAndAssignDrivers(List<DeliveryOrder> orders)
+    {
+        DeliveryOrderResult[] results = new DeliveryOrderResult[orders.size()];
 
-        // Case when the Map is empty, meaning no Driver available to take the new Delivery.
-        if (map_driver_totalDeliveries.isEmpty())
+        // Group the valid orders by City and hour slot (indexes of the orders in the batch).
+        Map<Long, Map<Long, List<Integer>>> map_cityId_hourSlot_orders = new LinkedHashMap<>();
+        for (int i = 0; i < orders.size(); i++)
         {
-            return null;
+            DeliveryOrder order = orders.get(i);
+            City customer_city = order.getCustomer().getCity();
+            if ( ! (customer_city.getId().equals(order.getRestaurant().getCity().getId())))
+            {
+                results[i] = DeliveryOrderResult.failed(order, "Customer City not same as Restaurant City!");
+                continue;
+            }
+            map_cityId_hourSlot_orders
+                    .computeIfAbsent(customer_city.getId(), cityId -> new LinkedHashMap<>())
+                    .computeIfAbsent(DriverAvailabilityIndex.hourSlotOf(order.getDeliveryTime()), hourSlot -> new ArrayList<>())
+                    .add(i);
         }
 
-        // Take the first Entry from the Map.
-        Map.Entry<Driver, Integer> firstEntry = map_driver_totalDeliveries.entrySet().iterator().next();
-
-        // Update it is a temporary Chosen Driver and as Minimum Total Deliveries.
-        Driver chosenDriver = firstEntry.getKey();
-        Integer minimumDeliveries = firstEntry.getValue();
+        boolean createOneByOne = ASSIGNMENT_SOURCE_DATABASE.equals(assignmentSource);
+        if ( ! (createOneByOne))
+        {
+            // Lock the stripes of all the groups, in ascending order to avoid deadlocks with other batches.
+            TreeSet<Integer> stripes = new TreeSet<>();
+            for (Map.Entry<Long, Map<Long, List<Integer>>> cityEntry : map_cityId_hourSlot_orders.entrySet())
+            {
+                for (Long hourSlot : cityEntry.getValue().keySet())
+                {
+                    stripes.add(slotLocks.stripeOf(cityEntry.getKey(), hourSlot));
+                }
+            }
+            for (Integer stripe : stripes)
+            {
+                slotLocks.lockOfStripe(stripe).lock();
+            }
+            try
+            {
+                assignDriversAndSaveDeliveries(orders, map_cityId_hourSlot_orders, results);
+            }
+            catch (DataAccessException e)
+            {
+                createOneByOne = true;
+            }
+            finally
+            {
+                for (Integer stripe : stripes.descendingSet())
+                {
+                    slotLocks.lockOfStripe(stripe).unlock();
+                }
+            }
+        }
 
-        // Check which of the Driver it is the least busy Driver according to the Driver history.
-        // And he will be the Chosen Driver to take the Delivery.
-        for (Map.Entry<Driver, Integer> entry : map_driver_totalDeliveries.entrySet())
+        // Create on its own every valid order the batch did not create.
+        for (Map<Long, List<Integer>> map_hourSlot_orders : map_cityId_hourSlot_orders.values())
         {
-            if (entry.getValue() < minimumDeliveries)
+            for (List<Integer> orderIndexes : map_hourSlot_orders.values())
             {
-                chosenDriver = entry.getKey();
-                minimumDeliveries = entry.getValue();
+                for (Integer i : orderIndexes)
+                {
+                    if (results[i] == null)
+                    {
+                        results[i] = createOrder(orders.get(i));
+                    }
+                }
             }
         }
-        return chosenDriver;
+
+        return Arrays.asList(results);
     }
 
     /**
-     * Create Map of Driver and the total of its Deliveries.
-     * Note: The Map will contain only the Drivers that available to take the new Delivery.
-     * @param deliveryCity City of the Delivery (City type).
-     * @param ts_deliveryTime Timestamp of the Delivery (Timestamp type).
-     * @return Map of Driver and the total of its Deliveries (Map type).
+     * Choose the Drivers of all the grouped orders and save all the new Deliveries in one transaction.
+     * Note: Must be called while holding the locks of all the groups.
+     * Note: The results are filled only if the transaction commits, the orders left without a Driver are not filled.
+     * An order whose chosen Driver no longer exists fails, it does not fail the batch.
+     * @param orders The orders of the batch (List<DeliveryOrder> type).
+     * @param map_cityId_hourSlot_orders The indexes of the valid orders, by City and hour slot (Map type).
+     * @param results The results of the orders, to fill (DeliveryOrderResult[] type).
      */
-    private Map<Driver, Integer> createMap_driver_totalDeliveries(City deliveryCity, Timestamp ts_deliveryTime)
+    private void assignDriversAndSaveDeliveries(List<DeliveryOrder> orders,
+                                                Map<Long, Map<Long, List<Integer>>> map_cityId_hourSlot_orders,
+                                                DeliveryOrderResult[] results)
     {
-        // Find all Drivers of the Delivery City.
-        List<Driver> driversFromCity = driverRepository.findAllDriversByCity(deliveryCity);
-
-        // Create Map of Driver and the total of its Deliveries.
-        // Note: The Map will contain only the Drivers that available to take the new Delivery.
-        Map<Driver, Integer> map_driver_totalDeliveries = new LinkedHashMap<>();
+        // Order index and the id of its chosen Driver.
+        Map<Integer, Long> map_order_driverId = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<Long, List<Integer>>> cityEntry : map_cityId_hourSlot_orders.entrySet())
+        {
+            for (List<Integer> orderIndexes : cityEntry.getValue().values())
+            {
+                Date deliveryTime = orders.get(orderIndexes.get(0)).getDeliveryTime();
+                List<Long> driverIds = driverAssignmentStrategy.chooseDrivers(cityEntry.getKey(), deliveryTime, orderIndexes.size());
+                for (int i = 0; i < orderIndexes.size(); i++)
+                {
+                    if (i < driverIds.size())
+                    {
+                        map_order_driverId.put(orderIndexes.get(i), driverIds.get(i));
+                    }
+                }
+            }
+        }
 
-        Integer totalDeliveriesOfDriver;
-        for (Driver driver : driversFromCity)
+        Map<Integer, Delivery> map_order_delivery = transactionTemplate.execute(status ->
         {
-            // Find total Deliveries of current Driver.
-            // If the current Driver not available to take the new Delivery, its total Deliveries will be -1.
-            totalDeliveriesOfDriver = findTotalDeliveriesOfDriver(driver, ts_deliveryTime);
+            // Load all the chosen Drivers in one query.
+            Map<Long, Driver> map_driverId_driver = new HashMap<>();
+            for (Driver driver : driverRepository.findAllById(new HashSet<>(map_order_driverId.values())))
+            {
+                map_driverId_driver.put(driver.getId(), driver);
+            }
 
-            // Case when the current Driver is available to take the new Delivery.
-            if (totalDeliveriesOfDriver != -1)
+            Map<Integer, Delivery> deliveries = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Long> entry : map_order_driverId.entrySet())
             {
-                // Add the Driver and its total Deliveries to the Map.
-                map_driver_totalDeliveries.put(driver, totalDeliveriesOfDriver);
+                DeliveryOrder order = orders.get(entry.getKey());
+                Driver driver = map_driverId_driver.get(entry.getValue());
+
+                // Case when the chosen Driver was deleted meanwhile, the other orders of the batch are still created.
+                if (driver == null)
+                {
+                    results[entry.getKey()] = DeliveryOrderResult.failed(order, NO_DRIVER_AVAILABLE);
+                    continue;
+                }
+                Delivery delivery = new Delivery(driver, order.getRestaurant(), order.getCustomer(), order.getDeliveryTime());
+                delivery.setSeat(driverAvailabilityIndex.getDeliveriesInHour(driver.getId(), order.getDeliveryTime()));
+                driver.updateDistance(delivery.getDistance());
+                driver.updateDeliveryCount(1);
+                deliveries.put(entry.getKey(), delivery);
             }
+
+            // The Drivers are managed, their distances and delivery counts are updated on commit.
+            deliveryRepository.saveAll(deliveries.values());
+            return deliveries;
+        });
+
+        for (Map.Entry<Integer, Delivery> entry : map_order_delivery.entrySet())
+        {
+            results[entry.getKey()] = DeliveryOrderResult.created(orders.get(entry.getKey()), entry.getValue());
         }
-        return map_driver_totalDeliveries;
     }
 
     /**
-     * Find total Deliveries of given Driver.
-     * If the given Driver not available to take the new Delivery, its total Deliveries will be -1.
-     * @param driver given Driver (Driver type).
-     * @param ts_deliveryTime Timestamp of the Delivery (Timestamp type).
-     * @return Total Deliveries of given Driver (Integer type).
+     * Create a single order of a batch.
+     * @param order The order to create (DeliveryOrder type).
+     * @return The result of the order (DeliveryOrderResult type).
      */
-    private Integer findTotalDeliveriesOfDriver(Driver driver, Timestamp ts_deliveryTime)
+    private DeliveryOrderResult createOrder(DeliveryOrder order)
     {
-        // Find all Deliveries of given Driver.
-        List<Delivery> deliveryOfDriver = deliveryRepository.findByDriver(driver);
-        Date delivery_deliveryTime;
-        boolean driverFreeToDeliver = true;
-        for (Delivery delivery : deliveryOfDriver)
+        try
+        {
+            return DeliveryOrderResult.created(order, createOrderAndAssignDriver(order.getCustomer(), order.getRestaurant(), order.getDeliveryTime()));
+        }
+        catch (Exception e)
         {
-            delivery_deliveryTime = delivery.getDeliveryTime();
+            return DeliveryOrderResult.failed(order, e.getMessage());
+        }
+    }
 
-            // Case when the given Driver not available to take the new Delivery.
-            // (He as other Delivery on the save time).
-            if (delivery_deliveryTime.equals(ts_deliveryTime))
-            {
-                // Update a flag (Driver not available to take the new Delivery).
-                driverFreeToDeliver = false;
-                break;
-            }
+    /**
+     * Find which Driver is available to take the new Delivery.
+     * Note: If more then one Driver is available, we choose by the DriverAssignmentStrategy ('walt.assignment.strategy'),
+     * by default the least busy Driver according to the Driver history.
+     * Note: By default the Driver is chosen in memory (the strategy and the DriverAvailabilityIndex), only the chosen Driver is loaded.
+     * When 'walt.assignment.source' is 'database' (e.g. several instances share the database),
+     * or the index turned out to be stale, the Driver is chosen by a single query instead.
+     * @param deliveryCity City of the Delivery (City type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param fromDatabase Choose the Driver by a database query instead of the index (boolean type).
+     * @return Available Driver to take the delivery (if exists) or null (Driver type).
+     */
+    private Driver findTheChosenDriver(City deliveryCity, Date deliveryTime, boolean fromDatabase)
+    {
+        if (fromDatabase)
+        {
+            return findTheChosenDriverFromDatabase(deliveryCity, deliveryTime);
         }
 
-        // Case when the flag is false (Driver not available to take the new Delivery).
-        if ( ! (driverFreeToDeliver))
+        // Find the Driver of the Delivery City chosen by the assignment strategy, among the Drivers free at the same hour.
+        Long chosenDriverId = driverAssignmentStrategy.chooseDriver(deliveryCity.getId(), deliveryTime);
+
+        // Case when no Driver available to take the new Delivery.
+        if (chosenDriverId == null)
         {
-            return -1;
+            return null;
         }
 
-        // Driver total Deliveries.
-        return deliveryOfDriver.size();
+        return driverRepository.findById(chosenDriverId).orElse(null);
     }
 
     /**
-     * Create a rank report of all Drivers and the total distance of the Delivery they made.
-     * @return List that represent the rank report, order by total distance in descending order (List<DriverDistance> type).
+     * Find which Driver is available to take the new Delivery, in one database round trip.
+     * Note: Every Delivery inside the hour of the given deliveryTime makes its Driver busy.
+     * @param deliveryCity City of the Delivery (City type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Available Driver to take the delivery (if exists) or null (Driver type).
      */
-    @Override
-    public List<DriverDistance> getDriverRankReport()
+    private Driver findTheChosenDriverFromDatabase(City deliveryCity, Date deliveryTime)
     {
-        // Find all Drivers.
-        List<Driver> driverList = (List<Driver>) driverRepository.findAll();
+        Date hourStart = DriverAvailabilityIndex.hourStartOf(deliveryTime);
+        Date hourEnd = DriverAvailabilityIndex.hourEndOf(deliveryTime);
+
+        int hourOfDay = DeliveryTime.hourOfDayOf(DriverAvailabilityIndex.hourSlotOf(deliveryTime));
 
-        // Create and return the ordered rank report List
-        return getDriverDistanceListDescendingOrder(driverList);
+        return driverRepository.findLeastBusyAvailableDriver(deliveryCity.getId(), hourOfDay, hourStart, hourEnd);
     }
 
     /**
-     * Create a List of all Drivers and the total distance of the Delivery they made,
-     * using the given List of Drivers.
-     * @param driverList Given List of Drivers (List<Driver> type).
-     * @return List of DriverDistance order by total distance in descending order (List<DriverDistance> type).
+     * Find the next delivery times in which a Driver of the Restaurant City can take a new Delivery.
+     * Note: Served by the free capacity of the City in the DriverAvailabilityIndex, O(log n) for each time, no database access.
+     * Only the next AVAILABLE_TIMES_HORIZON_HOURS hours are searched.
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param from The earliest delivery time (Date type).
+     * @param count Number of delivery times to find (int type).
+     * @return The start of each hour with a free Driver (but not earlier than from), in ascending order, at most count (List<Date> type).
      */
-    private List<DriverDistance> getDriverDistanceListDescendingOrder(List<Driver> driverList)
+    @Override
+    public List<Date> getNextAvailableDeliveryTimes(Restaurant restaurant, Date from, int count)
     {
-        // Create a descending order List of Pairs of Driver name and its total Distance.
-        List<Pair<String, Double>> list_pair_driverNameDistance = getDescendingOrderList_driverNameDistance(driverList);
-
-        List<DriverDistance> list_driverDistance = new ArrayList<>();
-
-        Driver driver;
-        Long distance;
-        DriverDistance driverDistance;
+        long fromHourSlot = DriverAvailabilityIndex.hourSlotOf(from);
+        List<Long> hourSlots = driverAvailabilityIndex.findFreeHourSlots(restaurant.getCity().getId(),
+                fromHourSlot, fromHourSlot + AVAILABLE_TIMES_HORIZON_HOURS, count);
 
-        // Create the List of DriverDistance.
-        // It will be in descending order, because we follow list_pair_driverNameDistance (a descending order List).
-        for (Pair<String, Double> pair_driverNameDistance : list_pair_driverNameDistance)
+        List<Date> deliveryTimes = new ArrayList<>(hourSlots.size());
+        for (Long hourSlot : hourSlots)
         {
-            driver = driverRepository.findByName(pair_driverNameDistance.getKey());
-            distance = pair_driverNameDistance.getValue().longValue();
-
-            // Create new DriverDistance.
-            driverDistance = new DriverDistanceClass(driver, distance);
-
-            // Add a DriverDistance to the List
-            list_driverDistance.add(driverDistance);
+            deliveryTimes.add(new Date(Math.max(from.getTime(), DeliveryTime.hourStartMillisOf(hourSlot))));
         }
+        return deliveryTimes;
+    }
 
-        return list_driverDistance;
+    /**
+     * Find the delivery times nearest to the preferred time, from now on, in which a Driver of the given City can take a new Delivery.
+     * @param city City of the Delivery (City type).
+     * @param preferredTime The preferred delivery time (Date type).
+     * @param count Number of delivery times to find (int type).
+     * @return The delivery times, nearest first, at most count (List<Date> type).
+     */
+    @Override
+    public List<Date> getNearestAvailableDeliveryTimes(City city, Date preferredTime, int count)
+    {
+        return getNearestAvailableDeliveryTimes(city, preferredTime, new Date(clock.millis()), count);
     }
 
     /**
-     * Create List of Pairs.
-     * Each Pair represent Driver name and its total Distance.
-     * The List order by total distance in descending order
-     * @param driverList Given List of Drivers (List<Driver> type).
-     * @return List of Pairs of Driver name and its total Distance, order by total distance in descending order (List<Pair<String, Double>> type).
+     * Find the delivery times nearest to the preferred time, in which a Driver of the given City can take a new Delivery.
+     * Note: Served by the free capacity of the City in the DriverAvailabilityIndex, O(log n) for each time, no database access.
+     * Only the hours up to AVAILABLE_TIMES_HORIZON_HOURS before or after the preferred hour are searched.
+     * @param city City of the Delivery (City type).
+     * @param preferredTime The preferred delivery time (Date type).
+     * @param earliest The earliest delivery time, e.g. now (Date type).
+     * @param count Number of delivery times to find (int type).
+     * @return The preferred time if its hour has a free Driver, or the start of the hour (but not earlier than earliest),
+     * nearest first, at most count (List<Date> type).
      */
-    private List<Pair<String, Double>> getDescendingOrderList_driverNameDistance(List<Driver> driverList)
+    @Override
+    public List<Date> getNearestAvailableDeliveryTimes(City city, Date preferredTime, Date earliest, int count)
     {
-        List<Pair<String, Double>> list_pair_driverNameDistance = new ArrayList<>();
+        long preferredHourSlot = DriverAvailabilityIndex.hourSlotOf(preferredTime);
+        long fromHourSlot = Math.max(DriverAvailabilityIndex.hourSlotOf(earliest), preferredHourSlot - AVAILABLE_TIMES_HORIZON_HOURS);
+        List<Long> hourSlots = driverAvailabilityIndex.findNearestFreeHourSlots(city.getId(),
+                preferredHourSlot, fromHourSlot, preferredHourSlot + AVAILABLE_TIMES_HORIZON_HOURS + 1, count);
 
-        // Create the List of Pairs of Driver name and its total Distance.
-        for (Driver driver : driverList)
+        List<Date> deliveryTimes = new ArrayList<>(hourSlots.size());
+        for (Long hourSlot : hourSlots)
         {
-            // Add new Pair of Driver name and its total Distance, to the List.
-            list_pair_driverNameDistance.add(new Pair<>(driver.getName(), driver.getDistance()));
+            long deliveryTime = (hourSlot == preferredHourSlot) ? preferredTime.getTime() : DeliveryTime.hourStartMillisOf(hourSlot);
+            deliveryTimes.add(new Date(Math.max(earliest.getTime(), deliveryTime)));
         }
+        return deliveryTimes;
+    }
 
-        // Sort the List in descending order.
-        Collections.sort(list_pair_driverNameDistance, new Comparator<Pair<String, Double>>()
-        {
-            /**
-             * Create compare to the Comparator, in order to Sort the Collections.
-             * Compare by total Distance of the Pair Object (Pair Value, a Double type).
-             * Note: We want descending order, so we compare pair2 to pair1.
-             * Note: If we want ascending order, we need to compare pair1 to pair2.
-             * @param pair1 First pair to compare (Pair<String, Double> type).
-             * @param pair2 Second pair to compare (Pair<String, Double> type).
-             * @return A value which represent which pair is bigger (int type).
-             */
-            @Override
-            public int compare(final Pair<String, Double> pair1, final Pair<String, Double> pair2)
-            {
-                return pair2.getValue().compareTo(pair1.getValue());
-            }
-        }
-        );
+    /**
+     * Create a rank report of all Drivers and the total distance of the Delivery they made.
+     * @return List that represent the rank report, order by total distance in descending order (List<DriverDistance> type).
+     */
+    @Override
+    public List<DriverDistance> getDriverRankReport()
+    {
+        return getDriverRankReport(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a page of the rank report of all Drivers and the total distance of the Delivery they made.
+     * Note: The report is read from the in-memory DriverRanking, no database access.
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report page, order by total distance in descending order (List<DriverDistance> type).
+     */
+    @Override
+    public List<DriverDistance> getDriverRankReport(int offset, int limit)
+    {
+        return driverRanking.report(offset, limit);
+    }
 
-        return list_pair_driverNameDistance;
+    /**
+     * Create a page of the rank report of all Drivers and the distance of the Delivery they made in the given range of days.
+     * Note: The distances are summed from the pre-aggregated day buckets of the DriverRanking, no database access.
+     * @param from First day of the range, inclusive, or null for no first day (Date type).
+     * @param to Last day of the range, inclusive, or null for no last day (Date type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report page, order by distance in the range in descending order (List<DriverDistance> type).
+     */
+    @Override
+    public List<DriverDistance> getDriverRankReport(Date from, Date to, int offset, int limit)
+    {
+        return driverRanking.reportInRange(null, from, to, offset, limit);
     }
 
     /**
@@ -282,10 +556,69 @@ public class WaltServiceImpl implements WaltService {
     @Override
     public List<DriverDistance> getDriverRankReportByCity(City city)
     {
-        // Find all Drivers.
-        List<Driver> driverList = (List<Driver>) driverRepository.findAllDriversByCity(city);
+        return getDriverRankReportByCity(city, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a page of the rank report of all Drivers in the given City and the total distance of the Delivery they made.
+     * Note: The report is read from the ranking shard of the City only, no database access.
+     * @param city Given City of the Drivers (City type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report page from the given City, order by total distance in descending order (List<DriverDistance> type).
+     */
+    @Override
+    public List<DriverDistance> getDriverRankReportByCity(City city, int offset, int limit)
+    {
+        return driverRanking.reportByCity(city.getId(), offset, limit);
+    }
+
+    /**
+     * Create a page of the rank report of all Drivers in the given City and the distance of the Delivery they made in the given range of days.
+     * Note: The distances are summed from the pre-aggregated day buckets of the DriverRanking, no database access.
+     * @param city Given City of the Drivers (City type).
+     * @param from First day of the range, inclusive, or null for no first day (Date type).
+     * @param to Last day of the range, inclusive, or null for no last day (Date type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report page from the given City, order by distance in the range in descending order (List<DriverDistance> type).
+     */
+    @Override
+    public List<DriverDistance> getDriverRankReportByCity(City city, Date from, Date to, int offset, int limit)
+    {
+        return driverRanking.reportInRange(city.getId(), from, to, offset, limit);
+    }
+
+    /**
+     * The version of the rank reports of this instance.
+     * Note: Every rank report (of any City or range of days) is the same as long as the version is the same.
+     * @return The version of the in-memory DriverRanking (long type).
+     */
+    @Override
+    public long getDriverRankReportVersion()
+    {
+        return driverRanking.getVersion();
+    }
 
-        // Create and return the ordered rank report List
-        return getDriverDistanceListDescendingOrder(driverList);
+    /**
+     * Export the rank report of all the Drivers (or of the Drivers of the given City), row by row from a database cursor.
+     * Note: Every row is handed to the consumer as soon as it is read, nothing is collected,
+     * so the memory used does not depend on the number of Drivers.
+     * @param city Given City of the Drivers, or null for all the Drivers (City type).
+     * @param consumer Consumer of the report rows, order by total distance in descending order (Consumer<DriverRank> type).
+     */
+    @Override
+    public void exportDriverRankReport(City city, Consumer<DriverRank> consumer)
+    {
+        readOnlyTransactionTemplate.execute(status ->
+        {
+            try (Stream<DriverRank> driverRanks = (city == null)
+                    ? driverRepository.streamDriverRanks()
+                    : driverRepository.streamDriverRanksByCity(city.getId()))
+            {
+                driverRanks.forEach(consumer);
+            }
+            return null;
+        });
     }
 }
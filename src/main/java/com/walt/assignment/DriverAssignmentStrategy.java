@@ -0,0 +1,68 @@
+package com.walt.assignment;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Strategy which chooses the Driver of a new Delivery, among the Drivers of the Delivery City that are free in its hour.
+ * The strategy of a deployment is chosen by 'walt.assignment.strategy':
+ * 'least-deliveries' (default), 'rolling-window', 'least-distance-today' or 'round-robin'.
+ * Every strategy keeps its own state, updated incrementally with every saved Driver and Delivery
+ * (DriverAvailabilityEventListener, and DriverAvailabilityIndexLoader at startup), so choosing a Driver never queries the database.
+ * Note: Whether a Driver is free in an hour is always checked on the DriverAvailabilityIndex.
+ * Note: The strategy is used when the Drivers are chosen from the index ('walt.assignment.source' is 'index'),
+ * the database source always chooses the least busy Driver.
+ */
+public interface DriverAssignmentStrategy
+{
+    /**
+     * The name of the strategy, as set in 'walt.assignment.strategy'.
+     * @return Name of the strategy (String type).
+     */
+    String getName();
+
+    /**
+     * Add a Driver to the state of the strategy.
+     * @param driverId Id of the Driver (Long type).
+     * @param cityId Id of the Driver City (Long type).
+     */
+    void addDriver(Long driverId, Long cityId);
+
+    /**
+     * Add a Delivery of the given Driver to the state of the strategy.
+     * Note: Unknown Drivers are ignored, they will be added when they are saved.
+     * @param driverId Id of the Driver of the Delivery (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param distance Distance of the Delivery (double type).
+     */
+    void addDelivery(Long driverId, Date deliveryTime, double distance);
+
+    /**
+     * Choose the Driver of a new Delivery.
+     * @param cityId Id of the Delivery City (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Id of the chosen Driver (if any Driver is available) or null (Long type).
+     */
+    Long chooseDriver(Long cityId, Date deliveryTime);
+
+    /**
+     * Choose the Drivers of several new Deliveries of the same City and hour.
+     * Note: The same Drivers (in the same order) that chooseDriver would choose one after the other.
+     * @param cityId Id of the Deliveries City (Long type).
+     * @param deliveryTime Date And Time of the Deliveries (Date type).
+     * @param count Number of Drivers to choose (int type).
+     * @return Ids of the chosen Drivers, at most count (List<Long> type).
+     */
+    List<Long> chooseDrivers(Long cityId, Date deliveryTime, int count);
+
+    /**
+     * Remove a Driver (and its Deliveries) from the state of the strategy, e.g. before it is added again from the database.
+     * @param driverId Id of the Driver (Long type).
+     */
+    void removeDriver(Long driverId);
+
+    /**
+     * Remove all the Drivers and Deliveries from the state of the strategy.
+     */
+    void clear();
+}
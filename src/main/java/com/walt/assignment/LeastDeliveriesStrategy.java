@@ -0,0 +1,65 @@
+package com.walt.assignment;
+
+import com.walt.index.DriverAvailabilityIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Choose the least busy Driver by its total Deliveries (all the history), ties to the lowest Driver id.
+ * Note: The state is the DriverAvailabilityIndex itself (its min-heap of the Drivers by total Deliveries),
+ * which is updated on its own, so adding Drivers and Deliveries here does nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "walt.assignment.strategy", havingValue = LeastDeliveriesStrategy.NAME, matchIfMissing = true)
+public class LeastDeliveriesStrategy implements DriverAssignmentStrategy
+{
+    public static final String NAME = "least-deliveries";
+
+    private final DriverAvailabilityIndex driverAvailabilityIndex;
+
+    public LeastDeliveriesStrategy(DriverAvailabilityIndex driverAvailabilityIndex)
+    {
+        this.driverAvailabilityIndex = driverAvailabilityIndex;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void addDriver(Long driverId, Long cityId)
+    {
+    }
+
+    @Override
+    public void addDelivery(Long driverId, Date deliveryTime, double distance)
+    {
+    }
+
+    @Override
+    public Long chooseDriver(Long cityId, Date deliveryTime)
+    {
+        return driverAvailabilityIndex.findLeastBusyAvailableDriver(cityId, deliveryTime);
+    }
+
+    @Override
+    public List<Long> chooseDrivers(Long cityId, Date deliveryTime, int count)
+    {
+        return driverAvailabilityIndex.findLeastBusyAvailableDrivers(cityId, deliveryTime, count);
+    }
+
+    @Override
+    public void removeDriver(Long driverId)
+    {
+    }
+
+    @Override
+    public void clear()
+    {
+    }
+}
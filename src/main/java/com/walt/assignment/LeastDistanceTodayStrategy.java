@@ -0,0 +1,90 @@
+package com.walt.assignment;
+
+import com.walt.index.DriverAvailabilityIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Choose the Driver with the least distance driven on the day of the new Delivery (in the server time zone),
+ * ties to the lowest Driver id.
+ * Note: Every Driver keeps the distances of its last DAYS days in a small ring, older days are dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "walt.assignment.strategy", havingValue = LeastDistanceTodayStrategy.NAME)
+public class LeastDistanceTodayStrategy extends LeastScoreStrategy<LeastDistanceTodayStrategy.DailyDriver>
+{
+    public static final String NAME = "least-distance-today";
+
+    // Days kept by every Driver.
+    private static final int DAYS = 8;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public LeastDistanceTodayStrategy(DriverAvailabilityIndex driverAvailabilityIndex)
+    {
+        super(driverAvailabilityIndex);
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    DailyDriver newDriver(Long driverId)
+    {
+        return new DailyDriver(driverId);
+    }
+
+    @Override
+    void addDelivery(DailyDriver driver, Date deliveryTime, double distance)
+    {
+        long day = timeKeyOf(deliveryTime);
+        int slot = (int) Math.floorMod(day, (long) DAYS);
+        if (driver.days[slot] == day)
+        {
+            driver.distances[slot] += distance;
+        }
+        // Case when the slot holds an older day, a Delivery of a day older than the slot day is dropped.
+        else if (driver.days[slot] < day)
+        {
+            driver.days[slot] = day;
+            driver.distances[slot] = distance;
+        }
+    }
+
+    @Override
+    double score(DailyDriver driver, long day)
+    {
+        int slot = (int) Math.floorMod(day, (long) DAYS);
+        return (driver.days[slot] == day) ? driver.distances[slot] : 0;
+    }
+
+    /**
+     * The day of the Delivery (days since epoch, in the server time zone).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return The day of the Delivery (long type).
+     */
+    @Override
+    long timeKeyOf(Date deliveryTime)
+    {
+        return deliveryTime.toInstant().atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    static final class DailyDriver extends LeastScoreStrategy.ScoredDriver
+    {
+        private final long[] days = new long[DAYS];
+        private final double[] distances = new double[DAYS];
+
+        private DailyDriver(Long driverId)
+        {
+            super(driverId);
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+    }
+}
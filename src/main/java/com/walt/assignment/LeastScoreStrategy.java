@@ -0,0 +1,267 @@
+package com.walt.assignment;
+
+import com.walt.index.DriverAvailabilityIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base of the strategies which choose the available Driver with the lowest score (e.g. its Deliveries in a time window),
+ * ties to the lowest Driver id.
+ * Every Driver has its own scoring state (D), kept per City and updated with every Delivery.
+ * Note: Choosing a Driver scores every Driver of the City, O(n) under the lock of the City only.
+ * A Driver that moves to another City takes its scoring state (its Deliveries) with it.
+ * @param <D> The scoring state of a Driver.
+ */
+abstract class LeastScoreStrategy<D extends LeastScoreStrategy.ScoredDriver> implements DriverAssignmentStrategy
+{
+    private final DriverAvailabilityIndex driverAvailabilityIndex;
+
+    // City id and its Drivers, ordered by Driver id.
+    private final ConcurrentMap<Long, List<D>> map_cityId_drivers = new ConcurrentHashMap<>();
+
+    // Driver id and its scoring state.
+    private final ConcurrentMap<Long, D> map_driverId_driver = new ConcurrentHashMap<>();
+
+    LeastScoreStrategy(DriverAvailabilityIndex driverAvailabilityIndex)
+    {
+        this.driverAvailabilityIndex = driverAvailabilityIndex;
+    }
+
+    /**
+     * Create the scoring state of a new Driver.
+     * @param driverId Id of the Driver (Long type).
+     * @return The scoring state (D type).
+     */
+    abstract D newDriver(Long driverId);
+
+    /**
+     * Add a Delivery to the scoring state of its Driver.
+     * @param driver The scoring state of the Driver (D type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param distance Distance of the Delivery (double type).
+     */
+    abstract void addDelivery(D driver, Date deliveryTime, double distance);
+
+    /**
+     * The time key of a new Delivery (e.g. its hour slot or its day), computed once for all the Drivers of the City.
+     * @param deliveryTime Date And Time of the new Delivery (Date type).
+     * @return The time key (long type).
+     */
+    abstract long timeKeyOf(Date deliveryTime);
+
+    /**
+     * The score of the Driver for a new Delivery, the Driver with the lowest score is chosen.
+     * @param driver The scoring state of the Driver (D type).
+     * @param timeKey The time key of the new Delivery, see timeKeyOf (long type).
+     * @return Score of the Driver (double type).
+     */
+    abstract double score(D driver, long timeKey);
+
+    @Override
+    public void addDriver(Long driverId, Long cityId)
+    {
+        List<D> cityDrivers = map_cityId_drivers.computeIfAbsent(cityId, id -> new ArrayList<>());
+        D driver = map_driverId_driver.get(driverId);
+        if (driver == null)
+        {
+            synchronized (cityDrivers)
+            {
+                driver = newDriver(driverId);
+                driver.cityDrivers = cityDrivers;
+                if (map_driverId_driver.putIfAbsent(driverId, driver) == null)
+                {
+                    insert(cityDrivers, driver);
+                    return;
+                }
+            }
+            driver = map_driverId_driver.get(driverId);
+        }
+
+        // Case when the Driver moved to another City.
+        List<?> oldCityDrivers = driver.cityDrivers;
+        if (oldCityDrivers == cityDrivers)
+        {
+            return;
+        }
+        synchronized (oldCityDrivers)
+        {
+            if (driver.cityDrivers != oldCityDrivers)
+            {
+                return;
+            }
+            oldCityDrivers.remove(driver);
+            // Set under the old lock, so a Delivery that waited for it retries under the new lock.
+            driver.cityDrivers = cityDrivers;
+        }
+        synchronized (cityDrivers)
+        {
+            insert(cityDrivers, driver);
+        }
+    }
+
+    @Override
+    public void addDelivery(Long driverId, Date deliveryTime, double distance)
+    {
+        D driver = map_driverId_driver.get(driverId);
+        if (driver == null)
+        {
+            return;
+        }
+        while (true)
+        {
+            List<?> cityDrivers = driver.cityDrivers;
+            synchronized (cityDrivers)
+            {
+                // Case when the Driver moved to another City meanwhile.
+                if (driver.cityDrivers != cityDrivers)
+                {
+                    continue;
+                }
+                addDelivery(driver, deliveryTime, distance);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Long chooseDriver(Long cityId, Date deliveryTime)
+    {
+        List<D> cityDrivers = map_cityId_drivers.get(cityId);
+        if (cityDrivers == null)
+        {
+            return null;
+        }
+        long timeKey = timeKeyOf(deliveryTime);
+        synchronized (cityDrivers)
+        {
+            D chosenDriver = null;
+            double minimumScore = Double.MAX_VALUE;
+            for (D driver : cityDrivers)
+            {
+                // Case when the current Driver not available to take the new Delivery.
+                if ( ! (driverAvailabilityIndex.isAvailable(driver.driverId, deliveryTime)))
+                {
+                    continue;
+                }
+
+                double score = score(driver, timeKey);
+                if (chosenDriver == null || score < minimumScore)
+                {
+                    chosenDriver = driver;
+                    minimumScore = score;
+                }
+            }
+            return (chosenDriver == null) ? null : chosenDriver.driverId;
+        }
+    }
+
+    @Override
+    public List<Long> chooseDrivers(Long cityId, Date deliveryTime, int count)
+    {
+        List<D> cityDrivers = map_cityId_drivers.get(cityId);
+        if (cityDrivers == null)
+        {
+            return Collections.emptyList();
+        }
+
+        long timeKey = timeKeyOf(deliveryTime);
+        List<ScoredCandidate> candidates = new ArrayList<>();
+        synchronized (cityDrivers)
+        {
+            for (D driver : cityDrivers)
+            {
+                if (driverAvailabilityIndex.isAvailable(driver.driverId, deliveryTime))
+                {
+                    candidates.add(new ScoredCandidate(driver.driverId, score(driver, timeKey)));
+                }
+            }
+        }
+
+        // Stable sort, Drivers with the same score stay ordered by id.
+        candidates.sort(Comparator.comparingDouble(candidate -> candidate.score));
+
+        List<Long> chosenDriverIds = new ArrayList<>(Math.min(count, candidates.size()));
+        for (int i = 0; i < count && i < candidates.size(); i++)
+        {
+            chosenDriverIds.add(candidates.get(i).driverId);
+        }
+        return chosenDriverIds;
+    }
+
+    @Override
+    public void removeDriver(Long driverId)
+    {
+        D driver = map_driverId_driver.remove(driverId);
+        if (driver == null)
+        {
+            return;
+        }
+        while (true)
+        {
+            List<?> cityDrivers = driver.cityDrivers;
+            synchronized (cityDrivers)
+            {
+                // Case when the Driver moved to another City meanwhile.
+                if (driver.cityDrivers != cityDrivers)
+                {
+                    continue;
+                }
+                cityDrivers.remove(driver);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Insert the Driver into the Drivers of its City, ordered by Driver id.
+     * Note: Called under the lock of the City Drivers.
+     * @param cityDrivers The Drivers of the City (List<D> type).
+     * @param driver The scoring state of the Driver (D type).
+     */
+    private void insert(List<D> cityDrivers, D driver)
+    {
+        int index = Collections.binarySearch(cityDrivers, driver, Comparator.comparing(scoredDriver -> scoredDriver.driverId));
+        cityDrivers.add(-index - 1, driver);
+    }
+
+    @Override
+    public void clear()
+    {
+        map_cityId_drivers.clear();
+        map_driverId_driver.clear();
+    }
+
+    /**
+     * The scoring state of a single Driver.
+     */
+    abstract static class ScoredDriver
+    {
+        final Long driverId;
+
+        // The Drivers list of the Driver City, which also guards the scoring state.
+        volatile List<?> cityDrivers;
+
+        ScoredDriver(Long driverId)
+        {
+            this.driverId = driverId;
+        }
+    }
+
+    private static final class ScoredCandidate
+    {
+        private final Long driverId;
+        private final double score;
+
+        private ScoredCandidate(Long driverId, double score)
+        {
+            this.driverId = driverId;
+            this.score = score;
+        }
+    }
+}
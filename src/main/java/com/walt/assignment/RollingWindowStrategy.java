@@ -0,0 +1,94 @@
+package com.walt.assignment;
+
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.index.HourBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Choose the Driver with the least Deliveries in a rolling window ('walt.assignment.rolling-window', default 7 days)
+ * before the hour of the new Delivery, ties to the lowest Driver id.
+ * Unlike least-deliveries, an old history does not keep a Driver out of work forever.
+ * Note: Every Driver keeps its own bitmap of Delivery hours, a window of a week is counted with 3 popcounts,
+ * and the Deliveries beyond the first of an hour (a Driver with a capacity above one) are added from a sorted map.
+ */
+@Component
+@ConditionalOnProperty(name = "walt.assignment.strategy", havingValue = RollingWindowStrategy.NAME)
+public class RollingWindowStrategy extends LeastScoreStrategy<RollingWindowStrategy.WindowDriver>
+{
+    public static final String NAME = "rolling-window";
+
+    private final long windowHours;
+
+    public RollingWindowStrategy(DriverAvailabilityIndex driverAvailabilityIndex,
+                                 @Value("${walt.assignment.rolling-window:7d}") Duration window)
+    {
+        super(driverAvailabilityIndex);
+        this.windowHours = Math.max(1, window.toHours());
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    WindowDriver newDriver(Long driverId)
+    {
+        return new WindowDriver(driverId);
+    }
+
+    @Override
+    void addDelivery(WindowDriver driver, Date deliveryTime, double distance)
+    {
+        long hourSlot = DriverAvailabilityIndex.hourSlotOf(deliveryTime);
+        if ( ! (driver.deliveryHours.add(hourSlot)))
+        {
+            if (driver.map_hourSlot_extraDeliveries == null)
+            {
+                driver.map_hourSlot_extraDeliveries = new TreeMap<>();
+            }
+            driver.map_hourSlot_extraDeliveries.merge(hourSlot, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    long timeKeyOf(Date deliveryTime)
+    {
+        return DriverAvailabilityIndex.hourSlotOf(deliveryTime);
+    }
+
+    @Override
+    double score(WindowDriver driver, long hourSlot)
+    {
+        int deliveries = driver.deliveryHours.count(hourSlot - windowHours, hourSlot);
+        if (driver.map_hourSlot_extraDeliveries != null)
+        {
+            for (int extraDeliveries : driver.map_hourSlot_extraDeliveries.subMap(hourSlot - windowHours, hourSlot).values())
+            {
+                deliveries += extraDeliveries;
+            }
+        }
+        return deliveries;
+    }
+
+    static final class WindowDriver extends LeastScoreStrategy.ScoredDriver
+    {
+        private final HourBitmap deliveryHours = new HourBitmap();
+
+        // Hour slot and its Deliveries beyond the first, only for a Driver that took more than one Delivery in an hour.
+        private NavigableMap<Long, Integer> map_hourSlot_extraDeliveries;
+
+        private WindowDriver(Long driverId)
+        {
+            super(driverId);
+        }
+    }
+}
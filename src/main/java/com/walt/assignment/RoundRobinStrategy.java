@@ -0,0 +1,147 @@
+package com.walt.assignment;
+
+import com.walt.index.DriverAvailabilityIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Choose the Drivers of every City in turn (by Driver id), skipping the Drivers that are busy in the hour of the new Delivery.
+ * Note: The turn of every City is kept in memory only, it starts again from the lowest Driver id on restart.
+ */
+@Component
+@ConditionalOnProperty(name = "walt.assignment.strategy", havingValue = RoundRobinStrategy.NAME)
+public class RoundRobinStrategy implements DriverAssignmentStrategy
+{
+    public static final String NAME = "round-robin";
+
+    private final DriverAvailabilityIndex driverAvailabilityIndex;
+
+    // City id and the turn of its Drivers.
+    private final ConcurrentMap<Long, CityTurn> map_cityId_turn = new ConcurrentHashMap<>();
+
+    // Driver id and the City id of the Driver.
+    private final ConcurrentMap<Long, Long> map_driverId_cityId = new ConcurrentHashMap<>();
+
+    public RoundRobinStrategy(DriverAvailabilityIndex driverAvailabilityIndex)
+    {
+        this.driverAvailabilityIndex = driverAvailabilityIndex;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void addDriver(Long driverId, Long cityId)
+    {
+        // Case when the Driver moved to another City.
+        Long oldCityId = map_driverId_cityId.put(driverId, cityId);
+        if (oldCityId != null && ! (oldCityId.equals(cityId)))
+        {
+            removeFromTurn(oldCityId, driverId);
+        }
+
+        CityTurn turn = map_cityId_turn.computeIfAbsent(cityId, id -> new CityTurn());
+        synchronized (turn)
+        {
+            int index = Collections.binarySearch(turn.driverIds, driverId);
+            if (index < 0)
+            {
+                turn.driverIds.add(-index - 1, driverId);
+            }
+        }
+    }
+
+    @Override
+    public void addDelivery(Long driverId, Date deliveryTime, double distance)
+    {
+    }
+
+    @Override
+    public Long chooseDriver(Long cityId, Date deliveryTime)
+    {
+        List<Long> chosenDriverIds = chooseDrivers(cityId, deliveryTime, 1);
+        return chosenDriverIds.isEmpty() ? null : chosenDriverIds.get(0);
+    }
+
+    @Override
+    public List<Long> chooseDrivers(Long cityId, Date deliveryTime, int count)
+    {
+        CityTurn turn = map_cityId_turn.get(cityId);
+        if (turn == null)
+        {
+            return Collections.emptyList();
+        }
+
+        List<Long> chosenDriverIds = new ArrayList<>(Math.min(count, 16));
+        synchronized (turn)
+        {
+            int size = turn.driverIds.size();
+            int start = turn.next;
+            for (int i = 0; i < size && chosenDriverIds.size() < count; i++)
+            {
+                int index = (start + i) % size;
+                Long driverId = turn.driverIds.get(index);
+                if (driverAvailabilityIndex.isAvailable(driverId, deliveryTime))
+                {
+                    chosenDriverIds.add(driverId);
+                    // The next turn starts after the last chosen Driver.
+                    turn.next = (index + 1) % size;
+                }
+            }
+        }
+        return chosenDriverIds;
+    }
+
+    @Override
+    public void removeDriver(Long driverId)
+    {
+        Long cityId = map_driverId_cityId.remove(driverId);
+        if (cityId != null)
+        {
+            removeFromTurn(cityId, driverId);
+        }
+    }
+
+    private void removeFromTurn(Long cityId, Long driverId)
+    {
+        CityTurn turn = map_cityId_turn.get(cityId);
+        if (turn == null)
+        {
+            return;
+        }
+        synchronized (turn)
+        {
+            int index = Collections.binarySearch(turn.driverIds, driverId);
+            if (index >= 0)
+            {
+                turn.driverIds.remove(index);
+            }
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        map_cityId_turn.clear();
+        map_driverId_cityId.clear();
+    }
+
+    /**
+     * The Drivers of a City (ordered by id) and the position of the next turn.
+     */
+    private static final class CityTurn
+    {
+        private final List<Long> driverIds = new ArrayList<>();
+        private int next;
+    }
+}
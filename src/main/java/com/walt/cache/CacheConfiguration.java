@@ -0,0 +1,48 @@
+package com.walt.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-through caches of the name lookups of the repositories (see the @Cacheable repository methods).
+ * Every cache is a bounded LruCache ('walt.cache.max-entries' entries, 'walt.cache.ttl' time to live),
+ * invalidated when its entity is saved or deleted, and its hits and misses are exported to the actuator metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration
+{
+    public static final String CUSTOMERS_BY_NAME = "customersByName";
+    public static final String RESTAURANTS_BY_NAME = "restaurantsByName";
+    public static final String CITIES_BY_NAME = "citiesByName";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${walt.cache.max-entries:10000}") int maxEntries,
+                                     @Value("${walt.cache.ttl:10m}") Duration ttl)
+    {
+        List<LruCache> caches = new ArrayList<>();
+        for (String cacheName : new String[] {CUSTOMERS_BY_NAME, RESTAURANTS_BY_NAME, CITIES_BY_NAME})
+        {
+            caches.add(new LruCache(cacheName, maxEntries, ttl.toMillis()));
+        }
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+
+    @Bean
+    public CacheMeterBinderProvider<LruCache> lruCacheMeterBinderProvider()
+    {
+        return LruCacheMetrics::new;
+    }
+}
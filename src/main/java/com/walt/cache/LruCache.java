@@ -0,0 +1,174 @@
+package com.walt.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache with LRU eviction and a time to live for each entry.
+ * Note: The entries are kept in an access ordered LinkedHashMap, so the least recently used entry is evicted
+ * once the cache is full, and an expired entry is removed (counted as a miss) when it is read.
+ */
+public class LruCache extends AbstractValueAdaptingCache
+{
+    private final String name;
+    private final long ttlMillis;
+    private final Map<Object, CacheEntry> map_key_entry;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LruCache(String name, int maxEntries, long ttlMillis)
+    {
+        super(false);
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.map_key_entry = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest)
+            {
+                if (size() > maxEntries)
+                {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache()
+    {
+        return map_key_entry;
+    }
+
+    @Override
+    protected Object lookup(Object key)
+    {
+        synchronized (map_key_entry)
+        {
+            CacheEntry entry = map_key_entry.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis())
+            {
+                map_key_entry.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+
+            if (entry == null)
+            {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader)
+    {
+        Object value = lookup(key);
+        if (value != null)
+        {
+            return (T) fromStoreValue(value);
+        }
+
+        try
+        {
+            T loadedValue = valueLoader.call();
+            put(key, loadedValue);
+            return loadedValue;
+        }
+        catch (Exception e)
+        {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value)
+    {
+        if (value == null)
+        {
+            return;
+        }
+        synchronized (map_key_entry)
+        {
+            map_key_entry.put(key, new CacheEntry(toStoreValue(value), System.currentTimeMillis() + ttlMillis));
+        }
+        puts.increment();
+    }
+
+    @Override
+    public void evict(Object key)
+    {
+        synchronized (map_key_entry)
+        {
+            map_key_entry.remove(key);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        synchronized (map_key_entry)
+        {
+            map_key_entry.clear();
+        }
+    }
+
+    public long size()
+    {
+        synchronized (map_key_entry)
+        {
+            return map_key_entry.size();
+        }
+    }
+
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    public long missCount()
+    {
+        return misses.sum();
+    }
+
+    public long putCount()
+    {
+        return puts.sum();
+    }
+
+    public long evictionCount()
+    {
+        return evictions.sum();
+    }
+
+    private static final class CacheEntry
+    {
+        private final Object value;
+        private final long expiresAt;
+
+        private CacheEntry(Object value, long expiresAt)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
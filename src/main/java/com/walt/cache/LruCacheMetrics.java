@@ -0,0 +1,55 @@
+package com.walt.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Export the size, hits, misses, puts and evictions of a LruCache as the standard actuator cache metrics
+ * ('cache.gets', 'cache.puts', 'cache.evictions', 'cache.size').
+ */
+public class LruCacheMetrics extends CacheMeterBinder
+{
+    private final LruCache cache;
+
+    public LruCacheMetrics(LruCache cache, Iterable<Tag> tags)
+    {
+        super(cache, cache.getName(), tags);
+        this.cache = cache;
+    }
+
+    @Override
+    protected Long size()
+    {
+        return cache.size();
+    }
+
+    @Override
+    protected long hitCount()
+    {
+        return cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount()
+    {
+        return cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount()
+    {
+        return cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount()
+    {
+        return cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry)
+    {
+    }
+}
@@ -0,0 +1,233 @@
+package com.walt.controller;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.walt.ReactiveWaltService;
+import com.walt.dao.*;
+import com.walt.model.*;
+import com.walt.model.modelRequset.CreateOrder;
+import com.walt.model.modelResponse.CreateOrderResult;
+import com.walt.model.modelResponse.DriverDistanceResult;
+import com.walt.shard.CityShards;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Resource;
+
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+/**
+ * The reactive API, next to WaltController on the same data: the same orders and rank reports,
+ * from the ReactiveWaltService, so a waiting request never holds a thread.
+ * Spring MVC subscribes to the returned Mono and Flux and completes the request asynchronously.
+ * A report is a JSON array, or a stream of one event per Driver with 'Accept: text/event-stream'
+ * (or 'application/stream+json').
+ * Note: The reports are of the Drivers of this instance (like '/driverRankReport?local=true' when sharded).
+ */
+@RestController
+@RequestMapping("/reactive")
+public class ReactiveWaltController
+{
+    @Resource
+    ReactiveWaltService reactiveWaltService;
+
+    @Resource
+    CityRepository cityRepository;
+
+    @Resource
+    CustomerRepository customerRepository;
+
+    @Resource
+    RestaurantRepository restaurantRepository;
+
+    @Resource
+    CityShards cityShards;
+
+    /**
+     * A Post Request:
+     * The end point: '/reactive/createOrder'.
+     * The Request Body Parameters: CreateOrder.
+     * Create a new Delivery by the given order details and assign a Driver to its (see '/createOrder').
+     * Note: The order is created by the OrderPipeline, when the queue of its City is full it is rejected (429).
+     * When sharded by City, an order of a City of another shard is redirected to that shard (307).
+     * @param createOrder Given Order details: customer, restaurant and deliveryTime (CreateOrder type).
+     * @return The created order with its assigned Driver (CreateOrderResult), or an error.
+     */
+    @RequestMapping(value = "/createOrder", consumes = "application/json", method = POST)
+    public Mono<ResponseEntity<?>> createOrderAndAssignDriver(@RequestBody CreateOrder createOrder)
+    {
+        String customerName = createOrder.getCustomer();
+        String restaurantName = createOrder.getRestaurant();
+        String deliveryTimeName = createOrder.getDeliveryTime();
+
+        // Case when the order is of a City owned by another shard.
+        ResponseEntity<?> redirect = WaltController.otherShardRedirect(cityShards, createOrder.getCity());
+        if (redirect != null)
+        {
+            return Mono.just(redirect);
+        }
+
+        // Find the Customer by the given CustomerName.
+        Customer customer = customerRepository.findByName(customerName);
+        if (customer == null)
+        {
+            return Mono.just(ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - Customer does not exists!"));
+        }
+
+        // Case when the Customer City is owned by another shard.
+        redirect = WaltController.otherShardRedirect(cityShards,
+                WaltController.otherShardCity(cityShards, cityRepository, customer.getCity()));
+        if (redirect != null)
+        {
+            return Mono.just(redirect);
+        }
+
+        // Find the Restaurant by the given RestaurantName.
+        Restaurant restaurant = restaurantRepository.findByName(restaurantName);
+
+        Date deliveryTime;
+        try
+        {
+            // Format Delivery Date and Time: 'dd-MM-yyyy HH:mm'.
+            deliveryTime = DeliveryTime.parse(deliveryTimeName).toDate();
+        }
+        catch (ParseException e)
+        {
+            return Mono.just(ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - Delivery DateTime format need to be: 'dd-MM-yyyy HH:mm'!"));
+        }
+
+        return reactiveWaltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime)
+                .<ResponseEntity<?>>map(delivery -> ResponseEntity.ok(
+                        CreateOrderResult.created(customerName, restaurantName, deliveryTimeName, delivery.getDriver().getName())))
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body("Error - Too many orders, please try again later!")))
+                .onErrorResume(e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Error - Server failed to create new order!")));
+    }
+
+    /**
+     * A Get Request:
+     * The end point: '/reactive/driverRankReport'.
+     * The Request Parameters (optional): top, or page and size, from and to (see '/driverRankReport').
+     * Create a rank report of all Drivers and the total distance of the Delivery they made.
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param page Number of the report page, starting from 0 (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @param fromName First day of the report (String type).
+     * @param toName Last day of the report (String type).
+     * @return The rank report, order by total distance in descending order (Flux<DriverDistanceResult> type),
+     * or an error if a parameter is wrong.
+     */
+    @RequestMapping(value = "/driverRankReport", method = GET)
+    public Flux<DriverDistanceResult> getDriverRankReport(@RequestParam(value = "top", required = false) Integer top,
+                                                          @RequestParam(value = "page", required = false) Integer page,
+                                                          @RequestParam(value = "size", required = false) Integer size,
+                                                          @RequestParam(value = "from", required = false) String fromName,
+                                                          @RequestParam(value = "to", required = false) String toName)
+    {
+        return rankReport(null, top, page, size, fromName, toName);
+    }
+
+    /**
+     * A Get Request:
+     * The end point: '/reactive/driverRankReportByCity'.
+     * The Request Parameters: city, and optional top, or page and size, from and to (see '/driverRankReportByCity').
+     * Create a rank report of all Drivers in the given City and the total distance of the Delivery they made.
+     * @param city Given City of the Drivers (String type).
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param page Number of the report page, starting from 0 (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @param fromName First day of the report (String type).
+     * @param toName Last day of the report (String type).
+     * @return The rank report of the City, order by total distance in descending order (Flux<DriverDistanceResult> type),
+     * or an error if the City does not exists or a parameter is wrong.
+     */
+    @RequestMapping(value = "/driverRankReportByCity", method = GET)
+    public Flux<DriverDistanceResult> getDriverRankReportByCity(@RequestParam("city") String city,
+                                                                @RequestParam(value = "top", required = false) Integer top,
+                                                                @RequestParam(value = "page", required = false) Integer page,
+                                                                @RequestParam(value = "size", required = false) Integer size,
+                                                                @RequestParam(value = "from", required = false) String fromName,
+                                                                @RequestParam(value = "to", required = false) String toName)
+    {
+        // Find the City by the given CityName.
+        City givenCity = cityRepository.findByName(city);
+        if (givenCity == null)
+        {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Error - City does not exists in the system!");
+        }
+        return rankReport(givenCity, top, page, size, fromName, toName);
+    }
+
+    /**
+     * The rank report of all the Drivers, or of the Drivers of the given City.
+     * @param city The City, or null for all the Drivers (City type).
+     * @return The rank report (Flux<DriverDistanceResult> type).
+     * @throws ResponseStatusException If a parameter is wrong.
+     */
+    private Flux<DriverDistanceResult> rankReport(City city, Integer top, Integer page, Integer size, String fromName, String toName)
+    {
+        Date from;
+        Date to;
+        try
+        {
+            from = WaltController.reportDay(fromName);
+            to = WaltController.reportDay(toName);
+        }
+        catch (ParseException e)
+        {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Error - from and to format need to be: 'dd-MM-yyyy'!");
+        }
+
+        int offset = WaltController.pageOffset(top, page, size);
+        int limit = WaltController.pageLimit(top, size);
+        if (limit < 0 || offset < 0)
+        {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Error - top, page and size must not be negative!");
+        }
+
+        Flux<DriverDistance> driverDistances;
+        if (city == null)
+        {
+            driverDistances = (from == null && to == null)
+                    ? reactiveWaltService.getDriverRankReport(offset, limit)
+                    : reactiveWaltService.getDriverRankReport(from, to, offset, limit);
+        }
+        else
+        {
+            driverDistances = (from == null && to == null)
+                    ? reactiveWaltService.getDriverRankReportByCity(city, offset, limit)
+                    : reactiveWaltService.getDriverRankReportByCity(city, from, to, offset, limit);
+        }
+        return driverDistances.map(DriverDistanceResult::of);
+    }
+
+    /**
+     * The error of a wrong report parameter, as the errors of WaltController.
+     * Note: A report is declared as a Flux (so Spring MVC can stream it), its errors are thrown before it is returned.
+     * @param e The error (ResponseStatusException type).
+     * @return The error message with the error status.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> parameterError(ResponseStatusException e)
+    {
+        return ResponseEntity
+                .status(e.getStatus())
+                .body(e.getReason());
+    }
+}
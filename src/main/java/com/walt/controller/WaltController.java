@@ -1,19 +1,54 @@
 package com.walt.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.walt.WaltServiceImpl;
 import com.walt.dao.*;
 import com.walt.model.*;
 import com.walt.model.modelRequset.CreateOrder;
+import com.walt.model.modelResponse.CreateOrderResult;
+import com.walt.model.modelResponse.DriverDistanceResult;
+import com.walt.pipeline.AsyncOrder;
+import com.walt.pipeline.OrderPipeline;
+import com.walt.shard.CityShards;
+import com.walt.shard.ShardedRankReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
@@ -23,6 +58,8 @@ import static org.springframework.web.bind.annotation.RequestMethod.POST;
 @RequestMapping("/")
 public class WaltController
 {
+    private static final Logger log = LoggerFactory.getLogger(WaltController.class);
+
     @Autowired
     WaltServiceImpl waltService;
 
@@ -41,23 +78,74 @@ public class WaltController
     @Resource
     RestaurantRepository restaurantRepository;
 
+    @Resource
+    OrderPipeline orderPipeline;
+
+    @Resource
+    ObjectMapper objectMapper;
+
+    @Resource
+    CityShards cityShards;
+
+    @Resource
+    ShardedRankReport shardedRankReport;
+
+    // Rows written between two flushes of a streamed report.
+    private static final int EXPORT_FLUSH_ROWS = 1000;
+
+    // Longest wait of a request for a pending asynchronous order.
+    @Value("${walt.orders.async.max-wait:30s}")
+    Duration maxAsyncOrderWait;
+
+    // Error of an order of a City owned by another shard.
+    private static final String OTHER_SHARD_ERROR = "Error - The City of the order is owned by another shard!";
+
+    // Most delivery times suggested by one request.
+    private static final int MAX_AVAILABLE_DELIVERY_TIMES = 24;
+
+    // Start of this instance, part of the rank report ETags: the ranking version starts again from 0 on a restart.
+    private final long startMillis = System.currentTimeMillis();
+
+    // Writer of the rank reports, its serializer is resolved once instead of on every response.
+    private ObjectWriter rankReportWriter;
+
+    @PostConstruct
+    public void init()
+    {
+        rankReportWriter = objectMapper.writerFor(new TypeReference<List<DriverDistanceResult>>() {});
+    }
+
     /**
      * A Post Request:
      * The end point: '/createOrder'.
      * The Request Body Parameters: CreateOrder.
+     * The Request Parameters (optional): async.
      * Create a new Delivery by the given order details and assign a Driver to its.
-     * @param createOrder Given Order details: customer, restaurant and deliveryTime (CreateOrder type).
-     * @return A message if a new Delivery been created with an assigned Driver, or an error.
+     * Note: With 'async=true' the order is put on the OrderPipeline queue and accepted right away (202),
+     * its result is polled at '/orders/{id}'. When the queue is full the order is rejected (429).
+     * When sharded by City, an order of a City of another shard (its optional city, or the City of its Customer)
+     * is redirected to that shard (307), so the Delivery is written only to the database of its City.
+     * @param createOrder Given Order details: customer, restaurant, deliveryTime and optional city (CreateOrder type).
+     * @param async Create the Delivery asynchronously (boolean type).
+     * @return The created order with its assigned Driver (CreateOrderResult), or an error.
      */
     @RequestMapping(value = "/createOrder",consumes = "application/json", method = POST)
     @ResponseBody
-    public ResponseEntity<?> createOrderAndAssignDriver(@RequestBody CreateOrder createOrder)
+    public ResponseEntity<?> createOrderAndAssignDriver(@RequestBody CreateOrder createOrder,
+                                                        @RequestParam(value = "async", defaultValue = "false") boolean async)
     {
         // Request Body Parameters.
         String customerName = createOrder.getCustomer();
         String restaurantName = createOrder.getRestaurant();
         String deliveryTimeName = createOrder.getDeliveryTime();
 
+        // Case when the order is of a City owned by another shard.
+        ResponseEntity<?> redirect = otherShardRedirect(cityShards, createOrder.getCity());
+        if (redirect != null)
+        {
+            return redirect;
+        }
+
         // Find the Customer by the given CustomerName.
         Customer customer = customerRepository.findByName(customerName);
         if (customer == null)
@@ -67,6 +155,13 @@ public class WaltController
                     .body("Error - Customer does not exists!");
         }
 
+        // Case when the Customer City is owned by another shard.
+        redirect = otherShardRedirect(cityShards, otherShardCity(cityShards, cityRepository, customer.getCity()));
+        if (redirect != null)
+        {
+            return redirect;
+        }
+
         // Find the Restaurant by the given RestaurantName.
         Restaurant restaurant = restaurantRepository.findByName(restaurantName);
 
@@ -82,7 +177,7 @@ public class WaltController
         try
         {
             // Format Delivery Date and Time: 'dd-MM-yyyy HH:mm'.
-            deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse(deliveryTimeName);
+            deliveryTime = DeliveryTime.parse(deliveryTimeName).toDate();
         }
         catch (ParseException e)
         {
@@ -91,6 +186,23 @@ public class WaltController
                     .body("Error - Delivery DateTime format need to be: 'dd-MM-yyyy HH:mm'!");
         }
 
+        if (async)
+        {
+            // Put the order on the queue of its City, a worker will create the Delivery.
+            AsyncOrder asyncOrder = orderPipeline.submit(customer, restaurant, deliveryTime);
+            if (asyncOrder == null)
+            {
+                return ResponseEntity
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body("Error - Too many orders, please try again later!");
+            }
+            return ResponseEntity
+                    .accepted()
+                    .location(URI.create("/orders/" + asyncOrder.getId()))
+                    .body(asyncOrder);
+        }
+
         Delivery delivery;
         try
         {
@@ -104,40 +216,357 @@ public class WaltController
                     .body("Error - Server failed to create new order!");
         }
 
-        Object responseMessage = "New order created and a driver assigned!";
-        return (ResponseEntity<?>) responseMessage;
+        return ResponseEntity.ok(CreateOrderResult.created(customerName, restaurantName, deliveryTimeName, delivery.getDriver().getName()));
+    }
+
+    /**
+     * A Get Request:
+     * The end point: '/orders/{id}'.
+     * The Request Parameters (optional): wait.
+     * Find the status of an asynchronous order: PENDING, CREATED (with its Driver) or FAILED (with an error).
+     * Note: With 'wait' the request waits (without holding a request thread) up to the given milliseconds
+     * for a pending order to complete, so clients can subscribe instead of polling.
+     * The wait is clamped to 'walt.orders.async.max-wait', so a client cannot park a request for ever.
+     * @param id Id of the asynchronous order (String type).
+     * @param wait Milliseconds to wait for a pending order (long type).
+     * @return The asynchronous order, or an error if it does not exists.
+     */
+    @RequestMapping(value = "/orders/{id}", method = GET)
+    @ResponseBody
+    public DeferredResult<ResponseEntity<?>> getAsyncOrder(@PathVariable("id") String id,
+                                                           @RequestParam(value = "wait", defaultValue = "0") long wait)
+    {
+        AsyncOrder asyncOrder = orderPipeline.find(id);
+        if (asyncOrder == null)
+        {
+            DeferredResult<ResponseEntity<?>> notFound = new DeferredResult<>();
+            notFound.setResult(ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body("Error - Order does not exists!"));
+            return notFound;
+        }
+
+        wait = Math.min(wait, maxAsyncOrderWait.toMillis());
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(Math.max(1, wait), (Object) ResponseEntity.ok(asyncOrder));
+        if (wait <= 0 || asyncOrder.getStatus() != AsyncOrder.Status.PENDING)
+        {
+            result.setResult(ResponseEntity.ok(asyncOrder));
+            return result;
+        }
+
+        asyncOrder.completion().thenAccept(completedOrder -> result.setResult(ResponseEntity.ok(completedOrder)));
+        return result;
+    }
+
+    /**
+     * A Post Request:
+     * The end point: '/createOrders'.
+     * The Request Body Parameters: List of CreateOrder.
+     * Create a new Delivery for each of the given orders and assign a Driver to it, in one batch.
+     * Note: Each Customer and Restaurant name is looked up once per batch.
+     * When sharded by City, an order of a City of another shard fails (a batch is not redirected).
+     * @param createOrders Given Orders details: customer, restaurant and deliveryTime (List<CreateOrder> type).
+     * @return The result of each order (in the given order): created with its Driver, or failed with an error.
+     */
+    @RequestMapping(value = "/createOrders", consumes = "application/json", method = POST)
+    @ResponseBody
+    public ResponseEntity<?> createOrdersAndAssignDrivers(@RequestBody List<CreateOrder> createOrders)
+    {
+        CreateOrderResult[] results = new CreateOrderResult[createOrders.size()];
+        List<DeliveryOrder> orders = new ArrayList<>();
+        List<Integer> orderIndexes = new ArrayList<>();
+
+        Map<String, Customer> map_name_customer = new HashMap<>();
+        Map<String, Restaurant> map_name_restaurant = new HashMap<>();
+        Map<Long, Boolean> map_cityId_otherShard = new HashMap<>();
+
+        for (int i = 0; i < createOrders.size(); i++)
+        {
+            CreateOrder createOrder = createOrders.get(i);
+
+            if (createOrder.getCity() != null && ! (cityShards.isLocal(createOrder.getCity())))
+            {
+                results[i] = failedOrder(createOrder, OTHER_SHARD_ERROR);
+                continue;
+            }
+
+            Customer customer = map_name_customer.computeIfAbsent(createOrder.getCustomer(), customerRepository::findByName);
+            if (customer == null)
+            {
+                results[i] = failedOrder(createOrder, "Error - Customer does not exists!");
+                continue;
+            }
+
+            if (map_cityId_otherShard.computeIfAbsent(customer.getCity().getId(),
+                    cityId -> otherShardCity(cityShards, cityRepository, customer.getCity()) != null))
+            {
+                results[i] = failedOrder(createOrder, OTHER_SHARD_ERROR);
+                continue;
+            }
+
+            Restaurant restaurant = map_name_restaurant.computeIfAbsent(createOrder.getRestaurant(), restaurantRepository::findByName);
+            if (restaurant == null)
+            {
+                results[i] = failedOrder(createOrder, "Error - Restaurant does not exists!");
+                continue;
+            }
+
+            Date deliveryTime;
+            try
+            {
+                deliveryTime = DeliveryTime.parse(createOrder.getDeliveryTime()).toDate();
+            }
+            catch (ParseException e)
+            {
+                results[i] = failedOrder(createOrder, "Error - Delivery DateTime format need to be: 'dd-MM-yyyy HH:mm'!");
+                continue;
+            }
+
+            orders.add(new DeliveryOrder(customer, restaurant, deliveryTime));
+            orderIndexes.add(i);
+        }
+
+        // Create all the valid orders in one batch.
+        List<DeliveryOrderResult> orderResults = waltService.createOrdersAndAssignDrivers(orders);
+        for (int j = 0; j < orderResults.size(); j++)
+        {
+            DeliveryOrderResult orderResult = orderResults.get(j);
+            CreateOrder createOrder = createOrders.get(orderIndexes.get(j));
+            results[orderIndexes.get(j)] = orderResult.isCreated()
+                    ? CreateOrderResult.created(createOrder.getCustomer(), createOrder.getRestaurant(), createOrder.getDeliveryTime(),
+                            orderResult.getDelivery().getDriver().getName())
+                    : failedOrder(createOrder, "Error - " + orderResult.getError());
+        }
+
+        return ResponseEntity.ok(Arrays.asList(results));
+    }
+
+    /**
+     * Create the result of an order that failed.
+     * @param createOrder Given Order details (CreateOrder type).
+     * @param error The error message (String type).
+     * @return The failed order result (CreateOrderResult type).
+     */
+    private static CreateOrderResult failedOrder(CreateOrder createOrder, String error)
+    {
+        return CreateOrderResult.failed(createOrder.getCustomer(), createOrder.getRestaurant(), createOrder.getDeliveryTime(), error);
+    }
+
+    /**
+     * A Get Request:
+     * The end point: '/availableDeliveryTimes'.
+     * The Request Parameters: customer or restaurant, deliveryTime, and optional count.
+     * Suggest the delivery times nearest to the given deliveryTime in which a Driver of the Customer (or Restaurant) City is free,
+     * so a customer whose order found no Driver can choose another time instead of guessing.
+     * Note: Served by the in-memory free capacity of the City (no assignment attempt, no database access but the cached name lookup).
+     * Only times from now on, and up to a week before or after the given deliveryTime, are suggested.
+     * When sharded by City, the request of a City of another shard is redirected to that shard (307).
+     * @param customerName Given Customer name (String type).
+     * @param restaurantName Given Restaurant name (String type).
+     * @param deliveryTimeName Preferred Delivery Date and Time, 'dd-MM-yyyy HH:mm' (String type).
+     * @param count Number of delivery times to suggest, 1 to MAX_AVAILABLE_DELIVERY_TIMES (int type).
+     * @return The suggested delivery times ('dd-MM-yyyy HH:mm'), nearest first (List<String> type), or an error.
+     */
+    @RequestMapping(value = "/availableDeliveryTimes", method = GET)
+    @ResponseBody
+    public ResponseEntity<?> getAvailableDeliveryTimes(@RequestParam(value = "customer", required = false) String customerName,
+                                                       @RequestParam(value = "restaurant", required = false) String restaurantName,
+                                                       @RequestParam("deliveryTime") String deliveryTimeName,
+                                                       @RequestParam(value = "count", defaultValue = "3") int count)
+    {
+        if (count < 1 || count > MAX_AVAILABLE_DELIVERY_TIMES)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - count must be from 1 to " + MAX_AVAILABLE_DELIVERY_TIMES + "!");
+        }
+
+        // The City of the Delivery: the Customer City, or the Restaurant City.
+        City city;
+        if (customerName != null)
+        {
+            Customer customer = customerRepository.findByName(customerName);
+            if (customer == null)
+            {
+                return ResponseEntity
+                        .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .body("Error - Customer does not exists!");
+            }
+            city = customer.getCity();
+        }
+        else if (restaurantName != null)
+        {
+            Restaurant restaurant = restaurantRepository.findByName(restaurantName);
+            if (restaurant == null)
+            {
+                return ResponseEntity
+                        .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .body("Error - Restaurant does not exists!");
+            }
+            city = restaurant.getCity();
+        }
+        else
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - customer or restaurant is required!");
+        }
+
+        // Case when the City is owned by another shard.
+        ResponseEntity<?> redirect = otherShardRedirect(cityShards, otherShardCity(cityShards, cityRepository, city));
+        if (redirect != null)
+        {
+            return redirect;
+        }
+
+        Date preferredTime;
+        try
+        {
+            preferredTime = DeliveryTime.parse(deliveryTimeName).toDate();
+        }
+        catch (ParseException e)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - Delivery DateTime format need to be: 'dd-MM-yyyy HH:mm'!");
+        }
+
+        List<Date> deliveryTimes = waltService.getNearestAvailableDeliveryTimes(city, preferredTime, count);
+
+        List<String> results = new ArrayList<>(deliveryTimes.size());
+        for (Date deliveryTime : deliveryTimes)
+        {
+            results.add(DeliveryTime.of(deliveryTime).toString());
+        }
+        return ResponseEntity.ok(results);
     }
 
     /**
      * A Get Request:
      * The end point: '/driverRankReport'.
+     * The Request Parameters (all optional): top, or page and size, from and to.
      * Create a rank report of all Drivers and the total distance of the Delivery they made.
      * The rank report, order by total distance in descending order.
-     * @return List that represent the rank report.
+     * Note: Polling dashboards should ask for the top Drivers or a page, instead of the whole fleet.
+     * With from and/or to ('dd-MM-yyyy', inclusive) only the distance of the Deliveries in that range of days is counted.
+     * When sharded by City, the report merges the reports of all the shards, unless 'local=true' (how the shards ask each other).
+     * Note: A report of this instance has the ranking version as ETag, a poll of an unchanged ranking answers 304
+     * without creating the report.
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param page Number of the report page, starting from 0 (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @param fromName First day of the report (String type).
+     * @param toName Last day of the report (String type).
+     * @param local Only the Drivers of this shard (boolean type).
+     * @param webRequest The request, for its If-None-Match header (WebRequest type).
+     * @return List that represent the rank report (List<DriverDistanceResult> type).
      */
     @RequestMapping(value = "/driverRankReport", method = GET)
     @ResponseBody
-    public ResponseEntity<?> getDriverRankReport()
+    public ResponseEntity<?> getDriverRankReport(@RequestParam(value = "top", required = false) Integer top,
+                                                 @RequestParam(value = "page", required = false) Integer page,
+                                                 @RequestParam(value = "size", required = false) Integer size,
+                                                 @RequestParam(value = "from", required = false) String fromName,
+                                                 @RequestParam(value = "to", required = false) String toName,
+                                                 @RequestParam(value = "local", defaultValue = "false") boolean local,
+                                                 WebRequest webRequest)
     {
-        // Create a rank report of all Drivers and the total distance of the Delivery they made.
-        List<DriverDistance> driverDistances = waltService.getDriverRankReport();
+        Date from;
+        Date to;
+        try
+        {
+            from = reportDay(fromName);
+            to = reportDay(toName);
+        }
+        catch (ParseException e)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - from and to format need to be: 'dd-MM-yyyy'!");
+        }
+
+        int offset = pageOffset(top, page, size);
+        int limit = pageLimit(top, size);
+        if (limit < 0 || offset < 0)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - top, page and size must not be negative!");
+        }
+
+        if (cityShards.isSharded() && ! local)
+        {
+            // Scatter-gather: the top Drivers of every shard, merged.
+            int shardTop = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+            // Note: No ETag, the other shards may have changed.
+            try
+            {
+                return rankReportResponse(shardedRankReport.report(
+                        () -> rankReportResults((from == null && to == null)
+                                ? waltService.getDriverRankReport(0, shardTop)
+                                : waltService.getDriverRankReport(from, to, 0, shardTop)),
+                        fromName, toName, offset, limit), null);
+            }
+            catch (Exception e)
+            {
+                // The cause (addresses of the shards) is logged, not sent to the client.
+                log.warn("Sharded rank report failed", e);
+                return ResponseEntity
+                        .status(HttpStatus.BAD_GATEWAY)
+                        .body("Error - The rank report of another shard is not available!");
+            }
+        }
 
-        return (ResponseEntity<?>) driverDistances;
+        // Case when the ranking did not change since the report the client has (304 is set by checkNotModified).
+        String eTag = rankReportETag();
+        if (webRequest.checkNotModified(eTag))
+        {
+            return null;
+        }
+
+        // Create a rank report of all Drivers and the total distance of the Delivery they made (in the range of days, if given).
+        List<DriverDistance> driverDistances = (from == null && to == null)
+                ? waltService.getDriverRankReport(offset, limit)
+                : waltService.getDriverRankReport(from, to, offset, limit);
+
+        return rankReportResponse(rankReportResults(driverDistances), eTag);
     }
 
     /**
      * A Get Request:
      * The end point: '/driverRankReportByCity'.
-     * The Request Body Parameters: city.
+     * The Request Parameters: city, and optional top, or page and size, from and to.
      * Create a rank report of all Drivers in the given City and the total distance of the Delivery they made.
      * The rank report, order by total distance in descending order.
+     * Note: With from and/or to ('dd-MM-yyyy', inclusive) only the distance of the Deliveries in that range of days is counted.
+     * When sharded by City, the request of a City of another shard is redirected to that shard (307).
+     * Note: The report has the ranking version as ETag, a poll of an unchanged ranking answers 304 without creating the report.
      * @param city Given City of the Drivers (String type).
-     * @return List that represent the rank report from the given City.
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param page Number of the report page, starting from 0 (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @param fromName First day of the report (String type).
+     * @param toName Last day of the report (String type).
+     * @param webRequest The request, for its If-None-Match header (WebRequest type).
+     * @return List that represent the rank report from the given City (List<DriverDistanceResult> type).
      */
     @RequestMapping(value = "/driverRankReportByCity", method = GET)
     @ResponseBody
-    public ResponseEntity<?> getDriverRankReportByCity(@RequestParam("city") String city)
+    public ResponseEntity<?> getDriverRankReportByCity(@RequestParam("city") String city,
+                                                       @RequestParam(value = "top", required = false) Integer top,
+                                                       @RequestParam(value = "page", required = false) Integer page,
+                                                       @RequestParam(value = "size", required = false) Integer size,
+                                                       @RequestParam(value = "from", required = false) String fromName,
+                                                       @RequestParam(value = "to", required = false) String toName,
+                                                       WebRequest webRequest)
     {
+        // Case when the City is owned by another shard.
+        ResponseEntity<?> redirect = otherShardRedirect(cityShards, city);
+        if (redirect != null)
+        {
+            return redirect;
+        }
+
         // Find the City by the given CityName.
         City givenCity = cityRepository.findByName(city);
         if (givenCity == null)
@@ -147,9 +576,325 @@ public class WaltController
                     .body("Error - City does not exists in the system!");
         }
 
-        // Create a rank report of all Drivers in the given City and the total distance of the Delivery they made.
-        List<DriverDistance> driverDistances = waltService.getDriverRankReportByCity(givenCity);
+        Date from;
+        Date to;
+        try
+        {
+            from = reportDay(fromName);
+            to = reportDay(toName);
+        }
+        catch (ParseException e)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - from and to format need to be: 'dd-MM-yyyy'!");
+        }
+
+        int offset = pageOffset(top, page, size);
+        int limit = pageLimit(top, size);
+        if (limit < 0 || offset < 0)
+        {
+            return ResponseEntity
+                    .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Error - top, page and size must not be negative!");
+        }
+
+        // Case when the ranking did not change since the report the client has (304 is set by checkNotModified).
+        String eTag = rankReportETag();
+        if (webRequest.checkNotModified(eTag))
+        {
+            return null;
+        }
+
+        // Create a rank report of all Drivers in the given City and the total distance of the Delivery they made (in the range of days, if given).
+        List<DriverDistance> driverDistances = (from == null && to == null)
+                ? waltService.getDriverRankReportByCity(givenCity, offset, limit)
+                : waltService.getDriverRankReportByCity(givenCity, from, to, offset, limit);
+
+        return rankReportResponse(rankReportResults(driverDistances), eTag);
+    }
+
+    /**
+     * The ETag of the rank reports of this instance, the same as long as the ranking did not change.
+     * Note: Weak, so the gzip encoding of a report (see 'server.compression') is the same report.
+     * @return The ETag (String type).
+     */
+    private String rankReportETag()
+    {
+        return "W/\"" + startMillis + "-" + waltService.getDriverRankReportVersion() + "\"";
+    }
+
+    /**
+     * The rows of a rank report response.
+     * @param driverDistances The rank report (List<DriverDistance> type).
+     * @return The rows of the response, in the report order (List<DriverDistanceResult> type).
+     */
+    private static List<DriverDistanceResult> rankReportResults(List<DriverDistance> driverDistances)
+    {
+        List<DriverDistanceResult> results = new ArrayList<>(driverDistances.size());
+        for (DriverDistance driverDistance : driverDistances)
+        {
+            results.add(DriverDistanceResult.of(driverDistance));
+        }
+        return results;
+    }
+
+    /**
+     * The response of a rank report, serialized by the rank report writer.
+     * Note: Revalidated by every client (no-cache), with its ETag if given.
+     * @param results The rows of the rank report (List<DriverDistanceResult> type).
+     * @param eTag The ETag of the report, or null (String type).
+     * @return The JSON response of the report.
+     */
+    private ResponseEntity<?> rankReportResponse(List<DriverDistanceResult> results, String eTag)
+    {
+        byte[] body;
+        try
+        {
+            body = rankReportWriter.writeValueAsBytes(results);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache());
+        if (eTag != null)
+        {
+            response.eTag(eTag);
+        }
+        return response.body(body);
+    }
 
-        return (ResponseEntity<?>) driverDistances;
+    /**
+     * A Get Request:
+     * The end point: '/driverRankReport/export'.
+     * The Request Parameters (all optional): format ('ndjson' or 'csv'), city.
+     * Export the rank report of all Drivers (or of the Drivers of the given City), order by total distance in descending order.
+     * Note: The rows are written to the response as they are read from a database cursor, so the memory used
+     * does not depend on the fleet size, and the first bytes are sent right away.
+     * When sharded by City, the export of a City of another shard is redirected to that shard (307),
+     * and the export of all the Drivers is of the Drivers of this shard.
+     * @param format Format of the report: 'ndjson' (one JSON object per line) or 'csv' (String type).
+     * @param city Given City of the Drivers, all the Drivers if not given (String type).
+     * @return The streamed rank report.
+     */
+    @RequestMapping(value = "/driverRankReport/export", method = GET)
+    public ResponseEntity<StreamingResponseBody> exportDriverRankReport(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                                        @RequestParam(value = "city", required = false) String city)
+    {
+        boolean csv = "csv".equals(format);
+        if ( ! (csv) && ! ("ndjson".equals(format)))
+        {
+            return streamedError("Error - format must be 'ndjson' or 'csv'!");
+        }
+
+        // Case when the City is owned by another shard.
+        ResponseEntity<StreamingResponseBody> redirect = otherShardRedirect(cityShards, city);
+        if (redirect != null)
+        {
+            return redirect;
+        }
+
+        // Find the City by the given CityName.
+        City givenCity = null;
+        if (city != null)
+        {
+            givenCity = cityRepository.findByName(city);
+            if (givenCity == null)
+            {
+                return streamedError("Error - City does not exists in the system!");
+            }
+        }
+
+        City reportCity = givenCity;
+        StreamingResponseBody body = outputStream ->
+        {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            JsonGenerator generator = null;
+            if (csv)
+            {
+                writer.write("id,name,city,totalDistance\n");
+            }
+            else
+            {
+                // One JSON object per line, without the default space between root values.
+                generator = objectMapper.getFactory().createGenerator(writer);
+                generator.setRootValueSeparator(null);
+            }
+            JsonGenerator ndjsonGenerator = generator;
+            // Send the first bytes before the query runs.
+            writer.flush();
+
+            int[] rows = {0};
+            waltService.exportDriverRankReport(reportCity, driverRank ->
+            {
+                try
+                {
+                    if (csv)
+                    {
+                        writer.write(driverRank.getDriverId() + "," + csvField(driverRank.getName()) + ","
+                                + csvField(driverRank.getCityName()) + "," + driverRank.getDistance() + "\n");
+                    }
+                    else
+                    {
+                        ndjsonGenerator.writeStartObject();
+                        ndjsonGenerator.writeNumberField("id", driverRank.getDriverId());
+                        ndjsonGenerator.writeStringField("name", driverRank.getName());
+                        ndjsonGenerator.writeStringField("city", driverRank.getCityName());
+                        ndjsonGenerator.writeNumberField("totalDistance", driverRank.getDistance());
+                        ndjsonGenerator.writeEndObject();
+                        ndjsonGenerator.writeRaw('\n');
+                    }
+
+                    // Send the first row right away, then every EXPORT_FLUSH_ROWS rows.
+                    if (++rows[0] % EXPORT_FLUSH_ROWS == 1)
+                    {
+                        if (ndjsonGenerator != null)
+                        {
+                            ndjsonGenerator.flush();
+                        }
+                        writer.flush();
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (generator != null)
+            {
+                generator.flush();
+            }
+            writer.flush();
+        };
+
+        return ResponseEntity
+                .ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : new MediaType("application", "x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * An error response of a streamed report.
+     * @param message The error message (String type).
+     * @return The error response (ResponseEntity<StreamingResponseBody> type).
+     */
+    private static ResponseEntity<StreamingResponseBody> streamedError(String message)
+    {
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(outputStream -> outputStream.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * The redirect of a request of a City owned by another shard to the same request on that shard.
+     * Note: 307, so a redirected order is posted again with its body.
+     * @param cityShards The City shards (CityShards type).
+     * @param cityName Name of the City of the request, or null (String type).
+     * @return The redirect, or null if the City is not given or owned by this instance (ResponseEntity type).
+     */
+    static <T> ResponseEntity<T> otherShardRedirect(CityShards cityShards, String cityName)
+    {
+        if (cityName == null || cityShards.isLocal(cityName))
+        {
+            return null;
+        }
+        UriComponents request = ServletUriComponentsBuilder.fromCurrentRequest().build();
+        return ResponseEntity
+                .status(HttpStatus.TEMPORARY_REDIRECT)
+                .location(UriComponentsBuilder.fromHttpUrl(cityShards.peerOf(cityShards.shardOf(cityName)))
+                        .path(request.getPath())
+                        .query(request.getQuery())
+                        .build(true)
+                        .toUri())
+                .build();
+    }
+
+    /**
+     * The name of the City of a Customer or Restaurant, when it is owned by another shard.
+     * Note: Not sharded, every City is local and its name is not read.
+     * @param cityShards The City shards (CityShards type).
+     * @param cityRepository The City repository, for the name of a lazy City (CityRepository type).
+     * @param city The City of the Customer or Restaurant (City type).
+     * @return The name of the City, or null if the City is owned by this instance (String type).
+     */
+    static String otherShardCity(CityShards cityShards, CityRepository cityRepository, City city)
+    {
+        if ( ! (cityShards.isSharded()) || city == null)
+        {
+            return null;
+        }
+        String cityName = cityRepository.nameOf(city);
+        return (cityName == null || cityShards.isLocal(cityName)) ? null : cityName;
+    }
+
+    /**
+     * Quote a CSV field if needed.
+     * @param value The field value (String type).
+     * @return The CSV field (String type).
+     */
+    private static String csvField(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+        {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Parse a day of a report range.
+     * Note: Strict, as the Delivery DateTime of an order: '31-02-2021' or '1-10-2021' is rejected, not rolled over.
+     * @param dayName The day, format: 'dd-MM-yyyy' (String type).
+     * @return The start of the day, or null if not given (Date type).
+     * @throws ParseException If the day format is wrong, or not a valid day.
+     */
+    static Date reportDay(String dayName) throws ParseException
+    {
+        if (dayName == null || dayName.isEmpty())
+        {
+            return null;
+        }
+        return DeliveryTime.parse(dayName + " 00:00").toDate();
+    }
+
+    /**
+     * The number of top Drivers to skip, by the report paging parameters.
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param page Number of the report page (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @return Number of top Drivers to skip (int type).
+     */
+    static int pageOffset(Integer top, Integer page, Integer size)
+    {
+        if (top != null || size == null || page == null)
+        {
+            return 0;
+        }
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, (long) page * size));
+    }
+
+    /**
+     * The maximum number of Drivers in the report, by the report paging parameters.
+     * @param top Number of top Drivers in the report (Integer type).
+     * @param size Number of Drivers in a report page (Integer type).
+     * @return Maximum number of Drivers in the report, all the Drivers if no parameter given (int type).
+     */
+    static int pageLimit(Integer top, Integer size)
+    {
+        if (top != null)
+        {
+            return top;
+        }
+        return (size == null) ? Integer.MAX_VALUE : size;
     }
 }
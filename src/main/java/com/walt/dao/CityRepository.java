@@ -1,10 +1,45 @@
 package com.walt.dao;
 
 import com.walt.model.City;
+import org.hibernate.Hibernate;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import static com.walt.cache.CacheConfiguration.CITIES_BY_NAME;
+
 @Repository
 public interface CityRepository extends CrudRepository<City, Long> {
+    @Cacheable(cacheNames = CITIES_BY_NAME, unless = "#result == null")
     City findByName(String cityName);
+
+    // The name of the given City, read by its id when it is a lazy City that was not loaded
+    // (e.g. the City of a cached Customer or Restaurant, whose session is closed).
+    default String nameOf(City city)
+    {
+        if (Hibernate.isInitialized(city))
+        {
+            return city.getName();
+        }
+        return findById(city.getId()).map(City::getName).orElse(null);
+    }
+
+    // Saving or deleting a City invalidates the cached name lookups: the entity may have been renamed,
+    // and its old name is not known any more (saves and deletes are rare, the lookups are the hot path).
+    @Override
+    @CacheEvict(cacheNames = CITIES_BY_NAME, allEntries = true)
+    <S extends City> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CITIES_BY_NAME, allEntries = true)
+    <S extends City> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CITIES_BY_NAME, allEntries = true)
+    void delete(City entity);
+
+    @Override
+    @CacheEvict(cacheNames = CITIES_BY_NAME, allEntries = true)
+    void deleteAll();
 }
@@ -1,10 +1,33 @@
 package com.walt.dao;
 
 import com.walt.model.Customer;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import static com.walt.cache.CacheConfiguration.CUSTOMERS_BY_NAME;
+
 @Repository
 public interface CustomerRepository extends CrudRepository<Customer, Long> {
+    @Cacheable(cacheNames = CUSTOMERS_BY_NAME, unless = "#result == null")
     Customer findByName(String name);
+
+    // Saving or deleting a Customer invalidates the cached name lookups: the entity may have been renamed,
+    // and its old name is not known any more (saves and deletes are rare, the lookups are the hot path).
+    @Override
+    @CacheEvict(cacheNames = CUSTOMERS_BY_NAME, allEntries = true)
+    <S extends Customer> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CUSTOMERS_BY_NAME, allEntries = true)
+    <S extends Customer> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CUSTOMERS_BY_NAME, allEntries = true)
+    void delete(Customer entity);
+
+    @Override
+    @CacheEvict(cacheNames = CUSTOMERS_BY_NAME, allEntries = true)
+    void deleteAll();
 }
@@ -3,19 +3,66 @@ package com.walt.dao;
 import com.walt.model.City;
 import com.walt.model.Driver;
 import com.walt.model.Delivery;
+import com.walt.model.DriverDeliveryCount;
+import com.walt.model.DriverDeliveryTime;
 import com.walt.model.DriverDistance;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface DeliveryRepository extends CrudRepository<Delivery, Long> {
     List<Delivery> findByDriver(Driver driver);
 
+    /**
+     * Stream the Driver, time and distance of all the Deliveries from a database cursor.
+     * Note: No entity is loaded, the stream must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select d.driver.id as driverId, d.deliveryTime as deliveryTime, d.distance as distance from Delivery d")
+    Stream<DriverDeliveryTime> streamAllDriverDeliveryTimes();
+
+    /**
+     * Find the Driver, time and distance of all the Deliveries of the given Drivers.
+     * Note: No entity is loaded.
+     */
+    @Query("select d.driver.id as driverId, d.deliveryTime as deliveryTime, d.distance as distance from Delivery d"
+            + " where d.driver.id in :driverIds")
+    List<DriverDeliveryTime> findDriverDeliveryTimes(@Param("driverIds") Collection<Long> driverIds);
+
+    /**
+     * Count the Deliveries of every Driver in the given range of Driver ids, next to its stored delivery count.
+     * Note: One statement reads both counts, so a Delivery committed meanwhile can not show as a drift.
+     * @param fromId First Driver id, inclusive (Long type).
+     * @param toId Last Driver id, exclusive (Long type).
+     */
+    @Query("select d.id as driverId, d.deliveryCount as deliveryCount, count(b.id) as actualCount"
+            + " from Driver d left join Delivery b on b.driver = d"
+            + " where d.id >= :fromId and d.id < :toId group by d.id, d.deliveryCount")
+    List<DriverDeliveryCount> countDeliveriesOfDrivers(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Count the Deliveries of the given Driver in the given range of time.
+     * Note: Served by the index on delivery(driver_id, delivery_time).
+     * @param driverId Id of the Driver (Long type).
+     * @param hourStart Start of the range, inclusive (Date type).
+     * @param hourEnd End of the range, exclusive (Date type).
+     */
+    @Query("select count(b) from Delivery b where b.driver.id = :driverId"
+            + " and b.deliveryTime >= :hourStart and b.deliveryTime < :hourEnd")
+    long countDeliveriesOfDriverInRange(@Param("driverId") Long driverId,
+                                        @Param("hourStart") Date hourStart,
+                                        @Param("hourEnd") Date hourEnd);
 
 }
 
@@ -2,14 +2,106 @@ package com.walt.dao;
 
 import com.walt.model.City;
 import com.walt.model.Driver;
+import com.walt.model.DriverCity;
+import com.walt.model.DriverRank;
+import com.walt.model.DriverState;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import javax.persistence.TemporalType;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface DriverRepository extends CrudRepository<Driver,Long> {
     List<Driver> findAllDriversByCity(City city);
 
     Driver findByName(String name);
+
+    @Query("select d.id as driverId, d.city.id as cityId, d.shiftStart as shiftStart, d.shiftEnd as shiftEnd,"
+            + " d.capacity as capacity from Driver d")
+    List<DriverCity> findAllDriverCities();
+
+    @Query("select d.id as driverId, d.city.id as cityId, d.shiftStart as shiftStart, d.shiftEnd as shiftEnd,"
+            + " d.capacity as capacity from Driver d where d.id in :driverIds")
+    List<DriverCity> findDriverCities(@Param("driverIds") Collection<Long> driverIds);
+
+    /**
+     * Find the ranking columns of all the Drivers, with the name of their City.
+     * Note: No Driver or City entity is loaded.
+     */
+    @Query("select d.id as driverId, d.name as name, c.id as cityId, c.name as cityName, d.distance as distance,"
+            + " d.deliveryCount as deliveryCount, d.version as version from Driver d left join d.city c")
+    List<DriverState> findAllDriverStates();
+
+    /**
+     * Find the ranking columns of the given Drivers, with the name of their City.
+     * Note: No Driver or City entity is loaded.
+     */
+    @Query("select d.id as driverId, d.name as name, c.id as cityId, c.name as cityName, d.distance as distance,"
+            + " d.deliveryCount as deliveryCount, d.version as version from Driver d left join d.city c where d.id in :driverIds")
+    List<DriverState> findDriverStates(@Param("driverIds") Collection<Long> driverIds);
+
+    @Query("select min(d.id) from Driver d")
+    Long findMinDriverId();
+
+    @Query("select max(d.id) from Driver d")
+    Long findMaxDriverId();
+
+    /**
+     * Set the delivery count of the given Driver to the number of its Deliveries.
+     * Note: The version is increased too, so a Driver loaded before can not overwrite the new count.
+     */
+    @Modifying
+    @Query("update Driver d set d.deliveryCount = (select count(b.id) from Delivery b where b.driver.id = :driverId),"
+            + " d.version = d.version + 1 where d.id = :driverId")
+    int recountDeliveries(@Param("driverId") Long driverId);
+
+    /**
+     * Stream all the Drivers ranked by total distance (descending, ties by Driver id) from a database cursor.
+     * Note: Only the report columns are read (no entity is loaded), the stream must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select d.id as driverId, d.name as name, c.name as cityName, d.distance as distance"
+            + " from Driver d left join d.city c order by d.distance desc, d.id")
+    Stream<DriverRank> streamDriverRanks();
+
+    /**
+     * Stream the Drivers of the given City ranked by total distance (descending, ties by Driver id) from a database cursor.
+     * Note: Only the report columns are read (no entity is loaded), the stream must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select d.id as driverId, d.name as name, c.name as cityName, d.distance as distance"
+            + " from Driver d join d.city c where c.id = :cityId order by d.distance desc, d.id")
+    Stream<DriverRank> streamDriverRanksByCity(@Param("cityId") Long cityId);
+
+    /**
+     * Find in one round trip the least busy Driver of the given City (by total Deliveries),
+     * on shift in the given hour of the day and with fewer Deliveries than its capacity in the given hour.
+     * Ties are broken by the lowest Driver id.
+     * Note: Served by the indexes on named_entity(city_id) and delivery(driver_id, delivery_time),
+     * the total Deliveries are the Driver delivery_count column, only the Deliveries of the hour are counted.
+     */
+    @Query(value = "select * from named_entity d"
+            + " where d.dtype = 'Driver' and d.city_id = :cityId"
+            + " and ((d.shift_start < d.shift_end and :hourOfDay >= d.shift_start and :hourOfDay < d.shift_end)"
+            + " or (d.shift_start >= d.shift_end and (:hourOfDay >= d.shift_start or :hourOfDay < d.shift_end)))"
+            + " and (select count(*) from delivery b where b.driver_id = d.id"
+            + " and b.delivery_time >= :hourStart and b.delivery_time < :hourEnd) < d.capacity"
+            + " order by d.delivery_count, d.id limit 1",
+            nativeQuery = true)
+    Driver findLeastBusyAvailableDriver(@Param("cityId") Long cityId,
+                                        @Param("hourOfDay") int hourOfDay,
+                                        @Param("hourStart") @Temporal(TemporalType.TIMESTAMP) Date hourStart,
+                                        @Param("hourEnd") @Temporal(TemporalType.TIMESTAMP) Date hourEnd);
 }
@@ -1,10 +1,33 @@
 package com.walt.dao;
 
 import com.walt.model.Restaurant;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import static com.walt.cache.CacheConfiguration.RESTAURANTS_BY_NAME;
+
 @Repository
 public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
+    @Cacheable(cacheNames = RESTAURANTS_BY_NAME, unless = "#result == null")
     Restaurant findByName(String name);
+
+    // Saving or deleting a Restaurant invalidates the cached name lookups: the entity may have been renamed,
+    // and its old name is not known any more (saves and deletes are rare, the lookups are the hot path).
+    @Override
+    @CacheEvict(cacheNames = RESTAURANTS_BY_NAME, allEntries = true)
+    <S extends Restaurant> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = RESTAURANTS_BY_NAME, allEntries = true)
+    <S extends Restaurant> Iterable<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = RESTAURANTS_BY_NAME, allEntries = true)
+    void delete(Restaurant entity);
+
+    @Override
+    @CacheEvict(cacheNames = RESTAURANTS_BY_NAME, allEntries = true)
+    void deleteAll();
 }
@@ -0,0 +1,674 @@
+package com.walt.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.dao.DriverRepository;
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.model.DeliveryTime;
+import com.walt.model.DriverState;
+import com.walt.model.NamedEntity;
+import com.walt.ranking.DriverRanking;
+import com.walt.shard.CityShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk import of Cities, Customers, Restaurants, Drivers and historical Deliveries from CSV or NDJSON files.
+ * Every file is streamed through a single reader thread, which parses the rows, resolves the names they refer to
+ * (a City, Driver, Restaurant or Customer) through in-memory maps and gives each row an id from the pooled sequence
+ * of its table. The rows are written by a pool of writer threads ('walt.import.writers') in JDBC batches
+ * ('walt.import.batch-size'), one transaction per batch, so no entity is created and nothing goes through Hibernate.
+ * Since no listener sees the rows, every written batch is added to the derived state (the availability index,
+ * the assignment strategy and the ranking) by the importer itself, the same way the listeners add a saved entity.
+ * When the import is done, the Driver distances and delivery counts are increased by their imported Deliveries,
+ * and the Drivers are ranked again.
+ * Note: Meant for onboarding (e.g. a whole City at once), nothing is rebuilt from the database.
+ * A name that already exists (for its kind) is rejected, so a file can be imported again after a partial failure,
+ * and the name caches (which never keep a missing name) stay valid.
+ * When sharded by City, a City, Customer, Restaurant or Driver of a City owned by another shard is rejected too,
+ * it is imported on that shard (see CityShards).
+ */
+@Component
+public class BulkImporter
+{
+    private static final Logger log = LoggerFactory.getLogger(BulkImporter.class);
+
+    @Resource
+    JdbcTemplate jdbcTemplate;
+
+    @Resource
+    PlatformTransactionManager transactionManager;
+
+    @Resource
+    ObjectMapper objectMapper;
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    DriverAvailabilityIndex driverAvailabilityIndex;
+
+    @Resource
+    DriverAssignmentStrategy driverAssignmentStrategy;
+
+    @Resource
+    DriverRanking driverRanking;
+
+    @Resource
+    CityShards cityShards;
+
+    @Value("${walt.import.batch-size:5000}")
+    int batchSize;
+
+    @Value("${walt.import.writers:4}")
+    int writers;
+
+    TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init()
+    {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Import the given files, in the order of their ImportType, then update the Drivers totals and ranking.
+     * @param map_type_file The file of each kind of rows to import (Map<ImportType, Path> type).
+     * @return The result of each file, in the import order (List<ImportResult> type).
+     * @throws IOException if a file can not be read, or its header is invalid.
+     */
+    public List<ImportResult> importFiles(Map<ImportType, Path> map_type_file) throws IOException
+    {
+        List<ImportResult> results = new ArrayList<>();
+        ConcurrentMap<Long, DriverTotals> map_driverId_totals = new ConcurrentHashMap<>();
+        Set<Long> driverIds = ConcurrentHashMap.newKeySet();
+        try
+        {
+            for (Map.Entry<ImportType, Path> entry : new EnumMap<>(map_type_file).entrySet())
+            {
+                ImportResult result = importFile(entry.getKey(), entry.getValue(), map_driverId_totals, driverIds);
+                log.info("Imported {}", result);
+                results.add(result);
+            }
+        }
+        finally
+        {
+            // Whatever was imported until a failure is part of the system now.
+            addDriverTotals(map_driverId_totals);
+            driverIds.addAll(map_driverId_totals.keySet());
+            rankDrivers(driverIds);
+        }
+        return results;
+    }
+
+    /**
+     * Import a single file.
+     * @param type Kind of the rows (ImportType type).
+     * @param file The file, '.csv' or else NDJSON (Path type).
+     * @param map_driverId_totals Total distance and number of the Deliveries imported for each Driver (ConcurrentMap<Long, DriverTotals> type).
+     * @param driverIds Ids of the imported Drivers (Set<Long> type).
+     * @return The result of the file (ImportResult type).
+     * @throws IOException if the file can not be read, or its header is invalid.
+     */
+    private ImportResult importFile(ImportType type, Path file, ConcurrentMap<Long, DriverTotals> map_driverId_totals,
+                                    Set<Long> driverIds) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult(type);
+
+        // A large read buffer over the file channel: the file is read sequentially, once.
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ)), StandardCharsets.UTF_8), 1 << 20);
+        boolean csv = file.getFileName().toString().toLowerCase().endsWith(".csv");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, writers), runnable ->
+        {
+            Thread thread = new Thread(runnable, "import-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // At most two batches per writer wait in memory, the reader waits for the writers beyond that.
+        Semaphore inFlight = new Semaphore(Math.max(1, writers) * 2);
+
+        try (RowReader rowReader = csv ? RowReader.csv(reader, type.getColumns()) : RowReader.ndjson(reader, type.getColumns(), objectMapper))
+        {
+            RowWriter rowWriter = (type == ImportType.DELIVERIES)
+                    ? new DeliveryWriter(map_driverId_totals)
+                    : new NamedEntityWriter(type, driverIds);
+
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            List<Long> batchLines = new ArrayList<>(batchSize);
+            String[] values;
+            while ((values = rowReader.next()) != null)
+            {
+                Object[] row;
+                try
+                {
+                    row = rowWriter.toRow(values);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    result.rejected(rowReader.line(), e.getMessage());
+                    continue;
+                }
+                batch.add(row);
+                batchLines.add(rowReader.line());
+
+                if (batch.size() == batchSize)
+                {
+                    submit(executor, inFlight, rowWriter, batch, batchLines, result);
+                    batch = new ArrayList<>(batchSize);
+                    batchLines = new ArrayList<>(batchSize);
+                }
+            }
+            if ( ! (batch.isEmpty()))
+            {
+                submit(executor, inFlight, rowWriter, batch, batchLines, result);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            awaitWriters(executor);
+        }
+
+        result.finished(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Hand a batch to the writers, waiting while too many batches are in flight.
+     */
+    private void submit(ExecutorService executor, Semaphore inFlight, RowWriter rowWriter,
+                        List<Object[]> batch, List<Long> batchLines, ImportResult result) throws IOException
+    {
+        try
+        {
+            inFlight.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+        executor.execute(() ->
+        {
+            try
+            {
+                write(rowWriter, batch, batchLines, result);
+            }
+            finally
+            {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Write a batch in one transaction, or row by row if the batch fails (e.g. a Driver seat booked twice in the same hour),
+     * so only the invalid rows are rejected.
+     */
+    private void write(RowWriter rowWriter, List<Object[]> batch, List<Long> batchLines, ImportResult result)
+    {
+        try
+        {
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(rowWriter.sql(), batch));
+            rowWriter.written(batch);
+            result.imported(batch.size());
+        }
+        catch (DataAccessException batchException)
+        {
+            for (int i = 0; i < batch.size(); i++)
+            {
+                Object[] row = batch.get(i);
+                try
+                {
+                    jdbcTemplate.update(rowWriter.sql(), row);
+                    rowWriter.written(Collections.singletonList(row));
+                    result.imported(1);
+                }
+                catch (DataAccessException e)
+                {
+                    rowWriter.rejected(row);
+                    result.rejected(batchLines.get(i), e.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void awaitWriters(ExecutorService executor) throws IOException
+    {
+        try
+        {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+    }
+
+    /**
+     * Increase the distance and the delivery count of every Driver by its imported Deliveries, in JDBC batches.
+     * Note: The version is increased too, so a Driver loaded before the import can not overwrite its new totals.
+     */
+    private void addDriverTotals(Map<Long, DriverTotals> map_driverId_totals)
+    {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (Map.Entry<Long, DriverTotals> entry : map_driverId_totals.entrySet())
+        {
+            batch.add(new Object[] {entry.getValue().distance.sum(), entry.getValue().deliveries.sum(), entry.getKey()});
+            if (batch.size() == batchSize)
+            {
+                updateDriverTotals(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if ( ! (batch.isEmpty()))
+        {
+            updateDriverTotals(batch);
+        }
+    }
+
+    private void updateDriverTotals(List<Object[]> batch)
+    {
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "update named_entity set distance = distance + ?, delivery_count = delivery_count + ?, version = version + 1"
+                        + " where id = ?", batch));
+    }
+
+    /**
+     * Rank the given Drivers again, with their new distances.
+     * Note: The ranking columns of the Drivers are read in pages (no entity is loaded), whatever the number of imported Drivers.
+     */
+    private void rankDrivers(Set<Long> driverIds)
+    {
+        List<Long> page = new ArrayList<>(batchSize);
+        for (Long driverId : driverIds)
+        {
+            page.add(driverId);
+            if (page.size() == batchSize)
+            {
+                rankDriversPage(page);
+                page.clear();
+            }
+        }
+        if ( ! (page.isEmpty()))
+        {
+            rankDriversPage(page);
+        }
+    }
+
+    private void rankDriversPage(List<Long> driverIds)
+    {
+        for (DriverState driverState : driverRepository.findDriverStates(driverIds))
+        {
+            driverRanking.update(driverState);
+        }
+    }
+
+    /**
+     * Names of the existing entities of the given kind, and their ids.
+     * @param entityName The entity name (String type).
+     * @return Map of name to id (Map<String, Long> type).
+     */
+    private Map<String, Long> idsByName(String entityName)
+    {
+        Map<String, Long> map_name_id = new HashMap<>();
+        jdbcTemplate.query("select id, name from named_entity where dtype = ?",
+                resultSet -> { map_name_id.put(resultSet.getString(2), resultSet.getLong(1)); },
+                entityName);
+        return map_name_id;
+    }
+
+    /**
+     * Ids from a pooled sequence, in blocks of NamedEntity.ID_ALLOCATION_SIZE.
+     * Note: A sequence value N stands for the ids (N - ID_ALLOCATION_SIZE, N], the same block Hibernate takes for it,
+     * so the imported rows never get the id of an entity saved by the application.
+     */
+    private final class SequenceIds
+    {
+        private final String sequenceName;
+        private long next = 1;
+        private long last = 0;
+
+        private SequenceIds(String sequenceName)
+        {
+            this.sequenceName = sequenceName;
+        }
+
+        long nextId()
+        {
+            if (next > last)
+            {
+                last = jdbcTemplate.queryForObject("select next value for " + sequenceName, Long.class);
+                next = Math.max(1, last - NamedEntity.ID_ALLOCATION_SIZE + 1);
+            }
+            return next++;
+        }
+    }
+
+    /**
+     * Turns the values of a row to the parameters of its insert statement.
+     * Note: toRow is called by the reader thread only, written by the writer threads.
+     */
+    private interface RowWriter
+    {
+        String sql();
+
+        Object[] toRow(String[] values);
+
+        void written(List<Object[]> rows);
+
+        default void rejected(Object[] row)
+        {
+        }
+    }
+
+    /**
+     * Rows of the 'named_entity' table: Cities, Customers, Restaurants and Drivers.
+     */
+    private final class NamedEntityWriter implements RowWriter
+    {
+        private final ImportType type;
+        private final Set<Long> driverIds;
+        private final Map<String, Long> map_name_id;
+        private final Map<String, Long> map_cityName_id;
+        private final SequenceIds ids = new SequenceIds("named_entity_seq");
+
+        private NamedEntityWriter(ImportType type, Set<Long> driverIds)
+        {
+            this.type = type;
+            this.driverIds = driverIds;
+            this.map_name_id = idsByName(type.getEntityName());
+            this.map_cityName_id = (type == ImportType.CITIES) ? map_name_id : idsByName(ImportType.CITIES.getEntityName());
+        }
+
+        @Override
+        public String sql()
+        {
+            return "insert into named_entity (dtype, id, name, version, city_id, address, distance, delivery_count)"
+                    + " values (?, ?, ?, 0, ?, ?, ?, ?)";
+        }
+
+        @Override
+        public Object[] toRow(String[] values)
+        {
+            String name = required(values[0], "name");
+            if (map_name_id.containsKey(name))
+            {
+                throw new IllegalArgumentException(type.getEntityName() + " '" + name + "' already exists");
+            }
+
+            String cityName = (type == ImportType.CITIES) ? name : required(values[1], "city");
+            if ( ! (cityShards.isLocal(cityName)))
+            {
+                throw new IllegalArgumentException("City '" + cityName + "' is owned by shard " + cityShards.shardOf(cityName));
+            }
+
+            Long cityId = null;
+            if (type != ImportType.CITIES)
+            {
+                cityId = idOf(map_cityName_id, cityName, "City");
+            }
+            String address = (type == ImportType.CUSTOMERS || type == ImportType.RESTAURANTS) ? values[2] : null;
+            Double distance = (type == ImportType.DRIVERS) ? 0.0 : null;
+            Long deliveryCount = (type == ImportType.DRIVERS) ? 0L : null;
+
+            long id = ids.nextId();
+            map_name_id.put(name, id);
+            return new Object[] {type.getEntityName(), id, name, cityId, address, distance, deliveryCount};
+        }
+
+        @Override
+        public void written(List<Object[]> rows)
+        {
+            if (type != ImportType.DRIVERS)
+            {
+                return;
+            }
+            for (Object[] row : rows)
+            {
+                Long driverId = (Long) row[1];
+                Long cityId = (Long) row[3];
+                driverAvailabilityIndex.addDriver(driverId, cityId);
+                driverAssignmentStrategy.addDriver(driverId, cityId);
+                driverIds.add(driverId);
+            }
+        }
+    }
+
+    /**
+     * Rows of the 'delivery' table, and the distance and count they add to their Drivers.
+     * Every row gets its hour slot and the next seat of its Driver in that hour (the unique driver, hour slot and seat),
+     * a row beyond the capacity of its Driver in the hour is rejected.
+     * Note: Deliveries are added to the derived state only once written, a rejected Delivery never books its Driver.
+     * The seat counts the Deliveries of the index, and the rows of the import given a seat but not written yet.
+     */
+    private final class DeliveryWriter implements RowWriter
+    {
+        private final ConcurrentMap<Long, DriverTotals> map_driverId_totals;
+        private final Map<String, Long> map_driverName_id = idsByName(ImportType.DRIVERS.getEntityName());
+        private final Map<String, Long> map_restaurantName_id = idsByName(ImportType.RESTAURANTS.getEntityName());
+        private final Map<String, Long> map_customerName_id = idsByName(ImportType.CUSTOMERS.getEntityName());
+        private final SequenceIds ids = new SequenceIds("delivery_seq");
+
+        // Driver and hour slot, and the number of its rows given a seat but not written (or rejected) yet.
+        // Note: The reader thread gives the seats and the writer threads add the written rows to the index under its lock,
+        // so a row is always counted once, in the index or here.
+        private final Map<DriverHour, Integer> map_driverHour_pending = new HashMap<>();
+
+        private DeliveryWriter(ConcurrentMap<Long, DriverTotals> map_driverId_totals)
+        {
+            this.map_driverId_totals = map_driverId_totals;
+        }
+
+        @Override
+        public String sql()
+        {
+            return "insert into delivery (id, driver_id, restaurant_id, customer_id, delivery_time, hour_slot, seat, distance)"
+                    + " values (?, ?, ?, ?, ?, ?, ?, ?)";
+        }
+
+        @Override
+        public Object[] toRow(String[] values)
+        {
+            Long driverId = idOf(map_driverName_id, required(values[0], "driver"), "Driver");
+            Long restaurantId = idOf(map_restaurantName_id, required(values[1], "restaurant"), "Restaurant");
+            Long customerId = idOf(map_customerName_id, required(values[2], "customer"), "Customer");
+
+            DeliveryTime deliveryTime;
+            try
+            {
+                deliveryTime = DeliveryTime.parse(required(values[3], "deliveryTime"));
+            }
+            catch (ParseException e)
+            {
+                throw new IllegalArgumentException("deliveryTime format need to be: '" + DeliveryTime.FORMAT + "'");
+            }
+
+            double distance;
+            try
+            {
+                distance = Double.parseDouble(required(values[4], "distance"));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("distance is not a number");
+            }
+
+            int seat = nextSeat(driverId, deliveryTime);
+            if (seat < 0)
+            {
+                throw new IllegalArgumentException("Driver '" + values[0] + "' has no capacity left at " + values[3]);
+            }
+
+            return new Object[] {ids.nextId(), driverId, restaurantId, customerId, new Timestamp(deliveryTime.getEpochMillis()),
+                    deliveryTime.getHourSlot(), seat, distance};
+        }
+
+        @Override
+        public void written(List<Object[]> rows)
+        {
+            synchronized (map_driverHour_pending)
+            {
+                for (Object[] row : rows)
+                {
+                    driverAvailabilityIndex.addDelivery((Long) row[1], (Timestamp) row[4]);
+                    removePending(row);
+                }
+            }
+            for (Object[] row : rows)
+            {
+                Long driverId = (Long) row[1];
+                Timestamp deliveryTime = (Timestamp) row[4];
+                double distance = (Double) row[7];
+                driverAssignmentStrategy.addDelivery(driverId, deliveryTime, distance);
+                driverRanking.addDelivery(driverId, deliveryTime, distance);
+                DriverTotals driverTotals = map_driverId_totals.computeIfAbsent(driverId, id -> new DriverTotals());
+                driverTotals.distance.add(distance);
+                driverTotals.deliveries.increment();
+            }
+        }
+
+        @Override
+        public void rejected(Object[] row)
+        {
+            synchronized (map_driverHour_pending)
+            {
+                removePending(row);
+            }
+        }
+
+        /**
+         * Give a row the next seat of its Driver in its hour slot.
+         * @param driverId Id of the Driver (Long type).
+         * @param deliveryTime Date and Time of the Delivery (DeliveryTime type).
+         * @return The seat, or -1 if the Driver has no capacity left in the hour slot (int type).
+         */
+        private int nextSeat(Long driverId, DeliveryTime deliveryTime)
+        {
+            DriverHour driverHour = new DriverHour(driverId, deliveryTime.getHourSlot());
+            synchronized (map_driverHour_pending)
+            {
+                int pending = map_driverHour_pending.getOrDefault(driverHour, 0);
+                int seat = driverAvailabilityIndex.getDeliveriesInHour(driverId, deliveryTime.toDate()) + pending;
+                if (seat >= driverAvailabilityIndex.getCapacity(driverId))
+                {
+                    return -1;
+                }
+                map_driverHour_pending.put(driverHour, pending + 1);
+                return seat;
+            }
+        }
+
+        /**
+         * Stop counting a row that was written or rejected.
+         * Note: Called under the lock of map_driverHour_pending.
+         */
+        private void removePending(Object[] row)
+        {
+            DriverHour driverHour = new DriverHour((Long) row[1], (Long) row[5]);
+            int pending = map_driverHour_pending.getOrDefault(driverHour, 0) - 1;
+            if (pending > 0)
+            {
+                map_driverHour_pending.put(driverHour, pending);
+            }
+            else
+            {
+                map_driverHour_pending.remove(driverHour);
+            }
+        }
+    }
+
+    /**
+     * A Driver and an hour slot.
+     */
+    private static final class DriverHour
+    {
+        private final long driverId;
+        private final long hourSlot;
+
+        private DriverHour(long driverId, long hourSlot)
+        {
+            this.driverId = driverId;
+            this.hourSlot = hourSlot;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof DriverHour && ((DriverHour) o).driverId == driverId && ((DriverHour) o).hourSlot == hourSlot;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(driverId) * 31 + Long.hashCode(hourSlot);
+        }
+    }
+
+    /**
+     * Total distance and number of the Deliveries imported for a Driver, added by all the writer threads.
+     */
+    private static final class DriverTotals
+    {
+        private final DoubleAdder distance = new DoubleAdder();
+        private final LongAdder deliveries = new LongAdder();
+    }
+
+    private static String required(String value, String column)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("missing " + column);
+        }
+        return value;
+    }
+
+    private static Long idOf(Map<String, Long> map_name_id, String name, String entityName)
+    {
+        Long id = map_name_id.get(name);
+        if (id == null)
+        {
+            throw new IllegalArgumentException(entityName + " '" + name + "' does not exists");
+        }
+        return id;
+    }
+}
@@ -0,0 +1,82 @@
+package com.walt.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The result of importing a file: the number of rows imported and rejected, and the first errors.
+ */
+public class ImportResult
+{
+    // Errors kept per file, the rest are only counted.
+    private static final int MAX_ERRORS = 100;
+
+    private final ImportType type;
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+    private long millis;
+
+    ImportResult(ImportType type)
+    {
+        this.type = type;
+    }
+
+    public ImportType getType()
+    {
+        return type;
+    }
+
+    public long getImported()
+    {
+        return imported.get();
+    }
+
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    public List<String> getErrors()
+    {
+        synchronized (errors)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(errors));
+        }
+    }
+
+    public long getMillis()
+    {
+        return millis;
+    }
+
+    void imported(long rows)
+    {
+        imported.addAndGet(rows);
+    }
+
+    void rejected(long line, String error)
+    {
+        rejected.incrementAndGet();
+        synchronized (errors)
+        {
+            if (errors.size() < MAX_ERRORS)
+            {
+                errors.add("line " + line + ": " + error);
+            }
+        }
+    }
+
+    void finished(long millis)
+    {
+        this.millis = millis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + ": " + imported + " imported, " + rejected + " rejected in " + millis + " ms";
+    }
+}
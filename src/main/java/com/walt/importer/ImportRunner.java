@@ -0,0 +1,45 @@
+package com.walt.importer;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run the BulkImporter on the files given in the command line, once the application started:
+ * '--import.cities=cities.csv --import.customers=... --import.restaurants=... --import.drivers=... --import.deliveries=deliveries.ndjson'.
+ * Note: With '--spring.main.web-application-type=none' the application exits when the import is done.
+ */
+@Component
+public class ImportRunner implements ApplicationRunner
+{
+    private static final String OPTION_PREFIX = "import.";
+
+    @Resource
+    BulkImporter bulkImporter;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception
+    {
+        Map<ImportType, Path> map_type_file = new EnumMap<>(ImportType.class);
+        for (ImportType type : ImportType.values())
+        {
+            List<String> files = args.getOptionValues(OPTION_PREFIX + type.name().toLowerCase());
+            if (files != null && ! (files.isEmpty()))
+            {
+                map_type_file.put(type, Paths.get(files.get(0)));
+            }
+        }
+
+        if ( ! (map_type_file.isEmpty()))
+        {
+            bulkImporter.importFiles(map_type_file);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.walt.importer;
+
+/**
+ * The kinds of rows the BulkImporter loads, in the order they must be imported
+ * (every kind only refers to the kinds before it), and the columns of each.
+ * Note: Cities, Customers, Restaurants and Drivers refer to each other by name.
+ */
+public enum ImportType
+{
+    CITIES("City", "name"),
+    CUSTOMERS("Customer", "name", "city", "address"),
+    RESTAURANTS("Restaurant", "name", "city", "address"),
+    DRIVERS("Driver", "name", "city"),
+    DELIVERIES(null, "driver", "restaurant", "customer", "deliveryTime", "distance");
+
+    private final String entityName;
+    private final String[] columns;
+
+    ImportType(String entityName, String... columns)
+    {
+        this.entityName = entityName;
+        this.columns = columns;
+    }
+
+    /**
+     * The entity name of the rows in the 'named_entity' table (its 'dtype').
+     * @return The entity name, or null for Deliveries (String type).
+     */
+    public String getEntityName()
+    {
+        return entityName;
+    }
+
+    /**
+     * The columns of a row, by the CSV header or the NDJSON field names.
+     * @return The column names (String[] type).
+     */
+    public String[] getColumns()
+    {
+        return columns.clone();
+    }
+}
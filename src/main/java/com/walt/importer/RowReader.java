@@ -0,0 +1,209 @@
+package com.walt.importer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of the rows of an import file, one row at a time, as the values of the columns of its ImportType.
+ * CSV files start with a header line naming the columns (in any order, '"' quoted fields, no line breaks in a field),
+ * NDJSON files have one JSON object per line with the columns as its fields.
+ * Note: Only the current row is held in memory, whatever the size of the file.
+ */
+abstract class RowReader implements Closeable
+{
+    protected final String[] columns;
+    protected long line;
+
+    private RowReader(String[] columns)
+    {
+        this.columns = columns;
+    }
+
+    /**
+     * Read the next row.
+     * @return The values of the columns (missing values are null), or null at the end of the file (String[] type).
+     * @throws IOException if the file can not be read or parsed.
+     */
+    abstract String[] next() throws IOException;
+
+    /**
+     * The line of the last row read.
+     * @return Line number, starting from 1 (long type).
+     */
+    long line()
+    {
+        return line;
+    }
+
+    /**
+     * A reader of a CSV file.
+     * @param reader The file (BufferedReader type).
+     * @param columns The columns of the ImportType (String[] type).
+     * @return The row reader (RowReader type).
+     * @throws IOException if the header can not be read, or a column is missing from it.
+     */
+    static RowReader csv(BufferedReader reader, String[] columns) throws IOException
+    {
+        String header = reader.readLine();
+        if (header == null)
+        {
+            throw new IOException("Empty CSV file, a header line is required");
+        }
+        List<String> headerFields = parseCsvLine(header);
+
+        // Index of each column in the lines of the file.
+        int[] fieldIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++)
+        {
+            fieldIndexes[i] = headerFields.indexOf(columns[i]);
+            if (fieldIndexes[i] < 0)
+            {
+                throw new IOException("CSV header is missing the column '" + columns[i] + "'");
+            }
+        }
+
+        return new RowReader(columns)
+        {
+            {
+                line = 1;
+            }
+
+            @Override
+            String[] next() throws IOException
+            {
+                String csvLine;
+                do
+                {
+                    csvLine = reader.readLine();
+                    line++;
+                    if (csvLine == null)
+                    {
+                        return null;
+                    }
+                }
+                while (csvLine.isEmpty());
+
+                List<String> fields = parseCsvLine(csvLine);
+                String[] values = new String[columns.length];
+                for (int i = 0; i < columns.length; i++)
+                {
+                    values[i] = (fieldIndexes[i] < fields.size()) ? emptyToNull(fields.get(fieldIndexes[i])) : null;
+                }
+                return values;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * A reader of an NDJSON file.
+     * @param reader The file (BufferedReader type).
+     * @param columns The columns of the ImportType (String[] type).
+     * @param objectMapper The JSON mapper (ObjectMapper type).
+     * @return The row reader (RowReader type).
+     * @throws IOException if the file can not be read.
+     */
+    static RowReader ndjson(BufferedReader reader, String[] columns, ObjectMapper objectMapper) throws IOException
+    {
+        MappingIterator<JsonNode> iterator = objectMapper.readerFor(JsonNode.class).readValues(reader);
+
+        return new RowReader(columns)
+        {
+            @Override
+            String[] next() throws IOException
+            {
+                try
+                {
+                    if ( ! (iterator.hasNextValue()))
+                    {
+                        return null;
+                    }
+                    JsonNode row = iterator.nextValue();
+                    line = iterator.getCurrentLocation().getLineNr();
+
+                    String[] values = new String[columns.length];
+                    for (int i = 0; i < columns.length; i++)
+                    {
+                        JsonNode value = row.get(columns[i]);
+                        values[i] = (value == null || value.isNull()) ? null : emptyToNull(value.asText());
+                    }
+                    return values;
+                }
+                catch (RuntimeException e)
+                {
+                    throw new IOException("Invalid JSON near line " + line, e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                iterator.close();
+            }
+        };
+    }
+
+    /**
+     * Split a CSV line to its fields.
+     * @param csvLine The line (String type).
+     * @return The fields, unquoted (List<String> type).
+     */
+    static List<String> parseCsvLine(String csvLine)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < csvLine.length(); i++)
+        {
+            char c = csvLine.charAt(i);
+            if (quoted)
+            {
+                if (c == '"' && i + 1 < csvLine.length() && csvLine.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                }
+                else if (c == '"')
+                {
+                    quoted = false;
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static String emptyToNull(String value)
+    {
+        return (value == null || value.isEmpty()) ? null : value;
+    }
+}
@@ -0,0 +1,397 @@
+package com.walt.index;
+
+import com.walt.model.DeliveryTime;
+import com.walt.model.Driver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Availability index of the Drivers of a single City.
+ * Keeps for each Driver its schedule (its shift, its capacity, the hour slots it is booked in) and its running total of Deliveries,
+ * a min-heap of the schedules by total Deliveries for every hour of the day (the Drivers on shift in that hour),
+ * and the free capacity of the City in every hour slot (FreeCapacityTree).
+ * Choosing a Driver pops the least busy Drivers on shift until one has capacity left in the hour, then pushes the others back:
+ * O((b + 1) log n) for b fully booked Drivers ahead of the chosen one, without allocation.
+ * Note: All the methods are synchronized on the City index, so Cities never block each other.
+ */
+class CityDriverIndex
+{
+    // Driver id and its schedule.
+    private final Map<Long, DriverSchedule> map_driverId_schedule = new HashMap<>();
+
+    // The schedules on shift in each hour of the day, the least busy Driver on top.
+    private final DriverHeap[] heaps = new DriverHeap[Driver.HOURS_OF_DAY];
+
+    // The free capacity of the City in every hour slot.
+    private final FreeCapacityTree freeCapacity = new FreeCapacityTree();
+
+    // Reused buffer of the schedules popped during a selection, until they are pushed back.
+    private DriverSchedule[] popped = new DriverSchedule[16];
+
+    CityDriverIndex()
+    {
+        for (int hourOfDay = 0; hourOfDay < Driver.HOURS_OF_DAY; hourOfDay++)
+        {
+            heaps[hourOfDay] = new DriverHeap(hourOfDay);
+        }
+    }
+
+    /**
+     * Add a Driver to the City index (if not exists already), on shift all day with a capacity of one Delivery an hour.
+     * @param driverId Id of the Driver (Long type).
+     */
+    synchronized void addDriver(Long driverId)
+    {
+        schedule(driverId);
+    }
+
+    /**
+     * Remove the given Driver from the City index (e.g. the Driver moved to another City).
+     * @param driverId Id of the Driver (Long type).
+     * @return The schedule of the Driver, or null if the Driver is not in the City index (DriverSchedule type).
+     */
+    synchronized DriverSchedule removeDriver(Long driverId)
+    {
+        DriverSchedule schedule = map_driverId_schedule.remove(driverId);
+        if (schedule != null)
+        {
+            removeShift(schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Add the schedule of a Driver that moved from another City, with its shift, capacity and Deliveries.
+     * @param schedule The schedule of the Driver, removed from the index of its old City (DriverSchedule type).
+     */
+    synchronized void moveDriver(DriverSchedule schedule)
+    {
+        if (map_driverId_schedule.putIfAbsent(schedule.driverId, schedule) == null)
+        {
+            addShift(schedule);
+        }
+    }
+
+    /**
+     * Set the shift and the capacity of the given Driver (added to the City index if not exists already).
+     * @param driverId Id of the Driver (Long type).
+     * @param shiftStart First hour of the shift (int type).
+     * @param shiftEnd Hour the shift ends, at or before shiftStart for a shift that ends on the next day (int type).
+     * @param capacity Deliveries the Driver can take in an hour (int type).
+     */
+    synchronized void setShift(Long driverId, int shiftStart, int shiftEnd, int capacity)
+    {
+        DriverSchedule schedule = schedule(driverId);
+        if (schedule.shiftStart == shiftStart && schedule.shiftEnd == shiftEnd && schedule.capacity == capacity)
+        {
+            return;
+        }
+        removeShift(schedule);
+        schedule.shiftStart = shiftStart;
+        schedule.shiftEnd = shiftEnd;
+        schedule.capacity = capacity;
+        addShift(schedule);
+    }
+
+    /**
+     * Book the given Driver in the given hour slot, and count the Delivery in its total Deliveries.
+     * Note: A Driver that has no capacity left in the hour slot is not counted twice.
+     * @param driverId Id of the Driver (Long type).
+     * @param hourSlot Hour slot of the Delivery (long type).
+     */
+    synchronized void addDelivery(Long driverId, long hourSlot)
+    {
+        DriverSchedule schedule = schedule(driverId);
+        if (schedule.deliveriesIn(hourSlot) >= schedule.capacity)
+        {
+            return;
+        }
+        schedule.book(hourSlot);
+        schedule.totalDeliveries++;
+        for (int hourOfDay = 0; hourOfDay < Driver.HOURS_OF_DAY; hourOfDay++)
+        {
+            if (schedule.heapIndexes[hourOfDay] >= 0)
+            {
+                heaps[hourOfDay].increased(schedule);
+            }
+        }
+
+        // A Delivery out of the shift (e.g. of an older shift) takes none of the capacity of the City.
+        if (schedule.isOnShift(DeliveryTime.hourOfDayOf(hourSlot)))
+        {
+            freeCapacity.book(hourSlot);
+        }
+    }
+
+    /**
+     * Check if the given Driver is on shift in the given hour slot, and has capacity left in it.
+     * @param driverId Id of the Driver (Long type).
+     * @param hourSlot Hour slot (long type).
+     * @return True if the Driver is in the City index and can take a Delivery in the hour slot (boolean type).
+     */
+    synchronized boolean isAvailable(Long driverId, long hourSlot)
+    {
+        DriverSchedule schedule = map_driverId_schedule.get(driverId);
+        return schedule != null
+                && schedule.isOnShift(DeliveryTime.hourOfDayOf(hourSlot))
+                && schedule.deliveriesIn(hourSlot) < schedule.capacity;
+    }
+
+    /**
+     * Find the least busy Driver (by total Deliveries) on shift in the given hour slot, that has capacity left in it.
+     * Note: If more then one Driver has the minimum total Deliveries, the Driver with the lowest id is chosen.
+     * @param hourSlot Hour slot of the Delivery (long type).
+     * @return Id of the available Driver (if exists) or null (Long type).
+     */
+    synchronized Long findLeastBusyAvailableDriver(long hourSlot)
+    {
+        DriverHeap heap = heaps[DeliveryTime.hourOfDayOf(hourSlot)];
+        int poppedCount = 0;
+        DriverSchedule chosenSchedule = null;
+        while (heap.size() > 0)
+        {
+            DriverSchedule schedule = heap.poll();
+            poppedCount = push(poppedCount, schedule);
+
+            // Case when the current Driver available to take the new Delivery.
+            if (schedule.deliveriesIn(hourSlot) < schedule.capacity)
+            {
+                chosenSchedule = schedule;
+                break;
+            }
+        }
+
+        restore(heap, poppedCount);
+        return (chosenSchedule == null) ? null : chosenSchedule.driverId;
+    }
+
+    /**
+     * Find the given number of least busy Drivers (by total Deliveries) on shift in the given hour slot, that have capacity left in it.
+     * Note: The same Drivers (in the same order) that findLeastBusyAvailableDriver would choose one after the other,
+     * each Driver at most once.
+     * @param hourSlot Hour slot of the Deliveries (long type).
+     * @param count Number of Drivers to find (int type).
+     * @return Ids of the available Drivers, least busy first, at most count (List<Long> type).
+     */
+    synchronized List<Long> findLeastBusyAvailableDrivers(long hourSlot, int count)
+    {
+        DriverHeap heap = heaps[DeliveryTime.hourOfDayOf(hourSlot)];
+        List<Long> chosenDriverIds = new ArrayList<>(Math.min(count, heap.size()));
+
+        int poppedCount = 0;
+        while (heap.size() > 0 && chosenDriverIds.size() < count)
+        {
+            DriverSchedule schedule = heap.poll();
+            poppedCount = push(poppedCount, schedule);
+
+            if (schedule.deliveriesIn(hourSlot) < schedule.capacity)
+            {
+                chosenDriverIds.add(schedule.driverId);
+            }
+        }
+
+        restore(heap, poppedCount);
+        return chosenDriverIds;
+    }
+
+    /**
+     * The Deliveries of the given Driver in the given hour slot.
+     * @param driverId Id of the Driver (Long type).
+     * @param hourSlot Hour slot (long type).
+     * @return Number of Deliveries, 0 if the Driver is not in the City index (int type).
+     */
+    synchronized int getDeliveries(Long driverId, long hourSlot)
+    {
+        DriverSchedule schedule = map_driverId_schedule.get(driverId);
+        return (schedule == null) ? 0 : schedule.deliveriesIn(hourSlot);
+    }
+
+    /**
+     * The free capacity of the City in the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     * @return Number of Deliveries the Drivers of the City can still take in the hour slot (int type).
+     */
+    synchronized int getFreeCapacity(long hourSlot)
+    {
+        return freeCapacity.freeCapacity(hourSlot);
+    }
+
+    /**
+     * Find the first hour slots with free capacity in the given range.
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @param count Number of hour slots to find (int type).
+     * @return The hour slots with free capacity, in ascending order, at most count (List<Long> type).
+     */
+    synchronized List<Long> findFreeHourSlots(long fromHourSlot, long toHourSlot, int count)
+    {
+        List<Long> freeHourSlots = new ArrayList<>(Math.min(count, 16));
+        long hourSlot = fromHourSlot;
+        while (freeHourSlots.size() < count)
+        {
+            Long freeHourSlot = freeCapacity.nextFreeHourSlot(hourSlot, toHourSlot);
+            if (freeHourSlot == null)
+            {
+                break;
+            }
+            freeHourSlots.add(freeHourSlot);
+            hourSlot = freeHourSlot + 1;
+        }
+        return freeHourSlots;
+    }
+
+    /**
+     * Find the hour slots with free capacity nearest to the given hour slot, in the given range.
+     * Note: Two cursors, one forward and one backward from the preferred hour slot, each step O(log n).
+     * Of two hour slots as near, the later one comes first.
+     * @param preferredHourSlot The preferred hour slot (long type).
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @param count Number of hour slots to find (int type).
+     * @return The hour slots with free capacity, nearest first, at most count (List<Long> type).
+     */
+    synchronized List<Long> findNearestFreeHourSlots(long preferredHourSlot, long fromHourSlot, long toHourSlot, int count)
+    {
+        List<Long> freeHourSlots = new ArrayList<>(Math.min(count, 16));
+        Long after = freeCapacity.nextFreeHourSlot(Math.max(preferredHourSlot, fromHourSlot), toHourSlot);
+        Long before = freeCapacity.previousFreeHourSlot(fromHourSlot, Math.min(preferredHourSlot, toHourSlot));
+        while (freeHourSlots.size() < count && (after != null || before != null))
+        {
+            if (before == null || (after != null && after - preferredHourSlot <= preferredHourSlot - before))
+            {
+                freeHourSlots.add(after);
+                after = freeCapacity.nextFreeHourSlot(after + 1, toHourSlot);
+            }
+            else
+            {
+                freeHourSlots.add(before);
+                before = freeCapacity.previousFreeHourSlot(fromHourSlot, before);
+            }
+        }
+        return freeHourSlots;
+    }
+
+    /**
+     * The capacity of the given Driver.
+     * @param driverId Id of the Driver (Long type).
+     * @return Deliveries the Driver can take in an hour, 0 if the Driver is not in the City index (int type).
+     */
+    synchronized int getCapacity(Long driverId)
+    {
+        DriverSchedule schedule = map_driverId_schedule.get(driverId);
+        return (schedule == null) ? 0 : schedule.capacity;
+    }
+
+    /**
+     * Total Deliveries of the given Driver.
+     * @param driverId Id of the Driver (Long type).
+     * @return Total Deliveries of the Driver, or -1 if the Driver is not in the City index (int type).
+     */
+    synchronized int getTotalDeliveries(Long driverId)
+    {
+        DriverSchedule schedule = map_driverId_schedule.get(driverId);
+        return (schedule == null) ? -1 : schedule.totalDeliveries;
+    }
+
+    /**
+     * The schedule of the given Driver, added to the City index if not exists already.
+     * @param driverId Id of the Driver (Long type).
+     * @return The schedule of the Driver (DriverSchedule type).
+     */
+    private DriverSchedule schedule(Long driverId)
+    {
+        DriverSchedule schedule = map_driverId_schedule.get(driverId);
+        if (schedule == null)
+        {
+            schedule = new DriverSchedule(driverId);
+            map_driverId_schedule.put(driverId, schedule);
+            addShift(schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Add the schedule to the heaps of the hours of its shift, and its capacity (and its Deliveries) to the free capacity of the City.
+     * @param schedule The schedule (DriverSchedule type).
+     */
+    private void addShift(DriverSchedule schedule)
+    {
+        for (int hourOfDay = 0; hourOfDay < Driver.HOURS_OF_DAY; hourOfDay++)
+        {
+            if (schedule.isOnShift(hourOfDay))
+            {
+                heaps[hourOfDay].add(schedule);
+            }
+        }
+        freeCapacity.addShift(schedule, 1);
+        addBooked(schedule, 1);
+    }
+
+    /**
+     * Remove the schedule from the heaps of the hours of its shift, and its capacity (and its Deliveries) from the free capacity of the City.
+     * @param schedule The schedule (DriverSchedule type).
+     */
+    private void removeShift(DriverSchedule schedule)
+    {
+        for (int hourOfDay = 0; hourOfDay < Driver.HOURS_OF_DAY; hourOfDay++)
+        {
+            if (schedule.heapIndexes[hourOfDay] >= 0)
+            {
+                heaps[hourOfDay].remove(schedule);
+            }
+        }
+        freeCapacity.addShift(schedule, -1);
+        addBooked(schedule, -1);
+    }
+
+    /**
+     * Add (or remove) the booked Deliveries of the schedule in the hours of its shift, up to its capacity in each hour,
+     * to the free capacity of the City: O(Deliveries of the Driver), only when its shift changes.
+     * @param schedule The schedule (DriverSchedule type).
+     * @param sign 1 to add the Deliveries, -1 to remove them (int type).
+     */
+    private void addBooked(DriverSchedule schedule, int sign)
+    {
+        schedule.busyHours.forEach(hourSlot ->
+        {
+            if (schedule.isOnShift(DeliveryTime.hourOfDayOf(hourSlot)))
+            {
+                freeCapacity.addBooked(hourSlot, sign * Math.min(schedule.deliveriesIn(hourSlot), schedule.capacity));
+            }
+        });
+    }
+
+    /**
+     * Keep a popped schedule in the popped buffer.
+     * @param poppedCount Number of schedules in the buffer (int type).
+     * @param schedule The popped schedule (DriverSchedule type).
+     * @return The new number of schedules in the buffer (int type).
+     */
+    private int push(int poppedCount, DriverSchedule schedule)
+    {
+        if (poppedCount == popped.length)
+        {
+            popped = Arrays.copyOf(popped, poppedCount * 2);
+        }
+        popped[poppedCount] = schedule;
+        return poppedCount + 1;
+    }
+
+    /**
+     * Push all the popped schedules back to their heap.
+     * @param heap The heap the schedules were popped from (DriverHeap type).
+     * @param poppedCount Number of schedules in the buffer (int type).
+     */
+    private void restore(DriverHeap heap, int poppedCount)
+    {
+        for (int i = 0; i < poppedCount; i++)
+        {
+            heap.add(popped[i]);
+            popped[i] = null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.walt.index;
+
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.model.Delivery;
+import com.walt.model.Driver;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hibernate listener which keeps the DriverAvailabilityIndex (and the state of the DriverAssignmentStrategy)
+ * up to date with every saved Driver and Delivery, and with the City, shift and capacity of every updated Driver.
+ * Note: The listener is called only after the transaction commits,
+ * so a rolled back Delivery never makes its Driver busy.
+ */
+@Component
+public class DriverAvailabilityEventListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener
+{
+    @Resource
+    EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    DriverAvailabilityIndex driverAvailabilityIndex;
+
+    @Resource
+    DriverAssignmentStrategy driverAssignmentStrategy;
+
+    /**
+     * Register the listener on the Hibernate post commit insert and update events.
+     */
+    @PostConstruct
+    public void register()
+    {
+        SessionFactoryImpl sessionFactory = entityManagerFactory.unwrap(SessionFactoryImpl.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    /**
+     * Add a new saved Driver or Delivery to the index.
+     * @param event The committed insert event (PostInsertEvent type).
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event)
+    {
+        Object entity = event.getEntity();
+        if (entity instanceof Driver)
+        {
+            driverSaved((Driver) entity);
+        }
+        else if (entity instanceof Delivery)
+        {
+            deliverySaved((Delivery) entity);
+        }
+    }
+
+    /**
+     * Update the shift and capacity of an updated Driver in the index (a no-op when they did not change).
+     * Note: A Driver saved with a new City is moved, with its Deliveries, to the index and the strategy of the new City.
+     * @param event The committed update event (PostUpdateEvent type).
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event)
+    {
+        if ( ! (event.getEntity() instanceof Driver))
+        {
+            return;
+        }
+        Driver driver = (Driver) event.getEntity();
+        Long indexedCityId = driverAvailabilityIndex.getCityId(driver.getId());
+        if (driver.getCity() != null && indexedCityId != null && ! (driver.getCity().getId().equals(indexedCityId)))
+        {
+            driverSaved(driver);
+            return;
+        }
+        driverAvailabilityIndex.setDriverShift(driver.getId(), driver.getShiftStart(), driver.getShiftEnd(), driver.getCapacity());
+    }
+
+    /**
+     * Nothing to undo when the insert transaction fails, the index was not updated yet.
+     * @param event The failed insert event (PostInsertEvent type).
+     */
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event)
+    {
+    }
+
+    /**
+     * Nothing to undo when the update transaction fails, the index was not updated yet.
+     * @param event The failed update event (PostUpdateEvent type).
+     */
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event)
+    {
+    }
+
+    /**
+     * Only Drivers and Deliveries are indexed.
+     * @param persister The persister of the inserted entity (EntityPersister type).
+     * @return True if the entity is a Driver or a Delivery (boolean type).
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister)
+    {
+        Class<?> entityClass = persister.getMappedClass();
+        return Driver.class.isAssignableFrom(entityClass) || Delivery.class.isAssignableFrom(entityClass);
+    }
+
+    /**
+     * Add a saved Driver to the index of its City, moving it from the index of its old City if it had one.
+     * @param driver The saved Driver (Driver type).
+     */
+    private void driverSaved(Driver driver)
+    {
+        if (driver.getCity() == null)
+        {
+            return;
+        }
+        driverAvailabilityIndex.addDriver(driver.getId(), driver.getCity().getId(),
+                driver.getShiftStart(), driver.getShiftEnd(), driver.getCapacity());
+        driverAssignmentStrategy.addDriver(driver.getId(), driver.getCity().getId());
+    }
+
+    /**
+     * Add a new saved Delivery to the index of its Driver City.
+     * @param delivery The saved Delivery (Delivery type).
+     */
+    private void deliverySaved(Delivery delivery)
+    {
+        if (delivery.getDriver() == null || delivery.getDeliveryTime() == null)
+        {
+            return;
+        }
+        driverAvailabilityIndex.addDelivery(delivery.getDriver().getId(), delivery.getDeliveryTime());
+        driverAssignmentStrategy.addDelivery(delivery.getDriver().getId(), delivery.getDeliveryTime(), delivery.getDistance());
+    }
+}
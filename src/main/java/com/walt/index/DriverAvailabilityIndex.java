@@ -0,0 +1,323 @@
+package com.walt.index;
+
+import com.walt.model.DeliveryTime;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory availability index of all the Drivers, split per City.
+ * Each City index keeps the schedule of every Driver (its daily shift, its capacity of Deliveries an hour,
+ * a bitmap of its booked hour slots) and its running total of Deliveries, so choosing a Driver for a new Delivery never goes to the database,
+ * and the free capacity of the City in every hour slot, so the next hour slots with a free Driver are found in O(log n).
+ * The index is rebuilt from the repositories at startup (DriverAvailabilityIndexLoader)
+ * and updated whenever a Driver or a Delivery is saved (DriverAvailabilityEventListener).
+ */
+@Component
+public class DriverAvailabilityIndex
+{
+    // City id and the availability index of its Drivers.
+    private final ConcurrentMap<Long, CityDriverIndex> map_cityId_cityIndex = new ConcurrentHashMap<>();
+
+    // Driver id and the City id of the Driver.
+    private final ConcurrentMap<Long, Long> map_driverId_cityId = new ConcurrentHashMap<>();
+
+    /**
+     * Convert a Delivery Date and Time to its hour slot (hours since epoch).
+     * Note: Each drive takes a full hour, so all the Deliveries inside the same hour share the same slot (see DeliveryTime).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Hour slot of the Delivery (long type).
+     */
+    public static long hourSlotOf(Date deliveryTime)
+    {
+        return DeliveryTime.hourSlotOf(deliveryTime.getTime());
+    }
+
+    /**
+     * The start of the hour slot of a Delivery Date and Time.
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Date and Time of the start of the hour slot (Date type).
+     */
+    public static Date hourStartOf(Date deliveryTime)
+    {
+        return new Date(DeliveryTime.hourStartMillisOf(hourSlotOf(deliveryTime)));
+    }
+
+    /**
+     * The end of the hour slot of a Delivery Date and Time: the start of the next hour slot.
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Date and Time of the end of the hour slot, exclusive (Date type).
+     */
+    public static Date hourEndOf(Date deliveryTime)
+    {
+        return new Date(DeliveryTime.hourStartMillisOf(hourSlotOf(deliveryTime) + 1));
+    }
+
+    /**
+     * Add a Driver to the index of its City.
+     * @param driverId Id of the Driver (Long type).
+     * @param cityId Id of the Driver City (Long type).
+     */
+    public void addDriver(Long driverId, Long cityId)
+    {
+        setCity(driverId, cityId);
+        cityIndex(cityId).addDriver(driverId);
+    }
+
+    /**
+     * Add a Driver to the index of its City, with its shift and capacity.
+     * @param driverId Id of the Driver (Long type).
+     * @param cityId Id of the Driver City (Long type).
+     * @param shiftStart First hour of the Driver shift (int type).
+     * @param shiftEnd Hour the Driver shift ends, at or before shiftStart for a shift that ends on the next day (int type).
+     * @param capacity Deliveries the Driver can take in an hour (int type).
+     */
+    public void addDriver(Long driverId, Long cityId, int shiftStart, int shiftEnd, int capacity)
+    {
+        setCity(driverId, cityId);
+        cityIndex(cityId).setShift(driverId, shiftStart, shiftEnd, capacity);
+    }
+
+    /**
+     * Remove the given Driver (and its Deliveries) from the index, e.g. before it is indexed again from the database.
+     * @param driverId Id of the Driver (Long type).
+     */
+    public void removeDriver(Long driverId)
+    {
+        map_driverId_cityId.computeIfPresent(driverId, (id, cityId) ->
+        {
+            CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+            if (cityIndex != null)
+            {
+                cityIndex.removeDriver(driverId);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Set the City of the given Driver.
+     * Note: A Driver that moved to another City takes its schedule (and its Deliveries) from the index of its old City.
+     * @param driverId Id of the Driver (Long type).
+     * @param cityId Id of the Driver City (Long type).
+     */
+    private void setCity(Long driverId, Long cityId)
+    {
+        map_driverId_cityId.compute(driverId, (id, oldCityId) ->
+        {
+            CityDriverIndex oldCityIndex = (oldCityId == null || oldCityId.equals(cityId)) ? null : map_cityId_cityIndex.get(oldCityId);
+            DriverSchedule schedule = (oldCityIndex == null) ? null : oldCityIndex.removeDriver(driverId);
+            if (schedule != null)
+            {
+                cityIndex(cityId).moveDriver(schedule);
+            }
+            return cityId;
+        });
+    }
+
+    /**
+     * The City of the given Driver in the index.
+     * @param driverId Id of the Driver (Long type).
+     * @return Id of the indexed Driver City, null for an unknown Driver (Long type).
+     */
+    public Long getCityId(Long driverId)
+    {
+        return map_driverId_cityId.get(driverId);
+    }
+
+    /**
+     * Set the shift and the capacity of an indexed Driver.
+     * Note: Unknown Drivers are ignored, they will be indexed when they are saved.
+     * @param driverId Id of the Driver (Long type).
+     * @param shiftStart First hour of the Driver shift (int type).
+     * @param shiftEnd Hour the Driver shift ends, at or before shiftStart for a shift that ends on the next day (int type).
+     * @param capacity Deliveries the Driver can take in an hour (int type).
+     */
+    public void setDriverShift(Long driverId, int shiftStart, int shiftEnd, int capacity)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return;
+        }
+        cityIndex(cityId).setShift(driverId, shiftStart, shiftEnd, capacity);
+    }
+
+    /**
+     * Add a Delivery of the given Driver to the index of the Driver City.
+     * Note: Unknown Drivers are ignored, they will be indexed when they are saved.
+     * @param driverId Id of the Driver of the Delivery (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     */
+    public void addDelivery(Long driverId, Date deliveryTime)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return;
+        }
+        cityIndex(cityId).addDelivery(driverId, hourSlotOf(deliveryTime));
+    }
+
+    /**
+     * Check if the given Driver can take a Delivery at the given time: on shift, with capacity left in the hour.
+     * @param driverId Id of the Driver (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return True if the Driver is indexed and free in the hour of the Delivery (boolean type).
+     */
+    public boolean isAvailable(Long driverId, Date deliveryTime)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return false;
+        }
+        return cityIndex(cityId).isAvailable(driverId, hourSlotOf(deliveryTime));
+    }
+
+    /**
+     * The Deliveries of the given Driver in the hour of the given time.
+     * @param driverId Id of the Driver (Long type).
+     * @param deliveryTime Date And Time in the hour (Date type).
+     * @return Number of Deliveries, 0 if the Driver is not indexed (int type).
+     */
+    public int getDeliveriesInHour(Long driverId, Date deliveryTime)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return 0;
+        }
+        return cityIndex(cityId).getDeliveries(driverId, hourSlotOf(deliveryTime));
+    }
+
+    /**
+     * The capacity of the given Driver.
+     * @param driverId Id of the Driver (Long type).
+     * @return Deliveries the Driver can take in an hour, 0 if the Driver is not indexed (int type).
+     */
+    public int getCapacity(Long driverId)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return 0;
+        }
+        return cityIndex(cityId).getCapacity(driverId);
+    }
+
+    /**
+     * Find the least busy Driver of the given City, that can take a Delivery at the given time.
+     * @param cityId Id of the Delivery City (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return Id of the available Driver (if exists) or null (Long type).
+     */
+    public Long findLeastBusyAvailableDriver(Long cityId, Date deliveryTime)
+    {
+        CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+        if (cityIndex == null)
+        {
+            return null;
+        }
+        return cityIndex.findLeastBusyAvailableDriver(hourSlotOf(deliveryTime));
+    }
+
+    /**
+     * Find the given number of least busy Drivers of the given City, that can take a Delivery at the given time.
+     * @param cityId Id of the Delivery City (Long type).
+     * @param deliveryTime Date And Time of the Deliveries (Date type).
+     * @param count Number of Drivers to find (int type).
+     * @return Ids of the available Drivers, least busy first, at most count (List<Long> type).
+     */
+    public List<Long> findLeastBusyAvailableDrivers(Long cityId, Date deliveryTime, int count)
+    {
+        CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+        if (cityIndex == null)
+        {
+            return Collections.emptyList();
+        }
+        return cityIndex.findLeastBusyAvailableDrivers(hourSlotOf(deliveryTime), count);
+    }
+
+    /**
+     * The free capacity of the given City in the given hour slot.
+     * @param cityId Id of the City (Long type).
+     * @param hourSlot Hour slot (long type).
+     * @return Number of Deliveries the Drivers of the City can still take in the hour slot (int type).
+     */
+    public int getFreeCapacity(Long cityId, long hourSlot)
+    {
+        CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+        return (cityIndex == null) ? 0 : cityIndex.getFreeCapacity(hourSlot);
+    }
+
+    /**
+     * Find the first hour slots of the given City in which a Driver can take a Delivery, O(log n) for each.
+     * @param cityId Id of the City (Long type).
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @param count Number of hour slots to find (int type).
+     * @return The hour slots with free capacity, in ascending order, at most count (List<Long> type).
+     */
+    public List<Long> findFreeHourSlots(Long cityId, long fromHourSlot, long toHourSlot, int count)
+    {
+        CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+        if (cityIndex == null)
+        {
+            return Collections.emptyList();
+        }
+        return cityIndex.findFreeHourSlots(fromHourSlot, toHourSlot, count);
+    }
+
+    /**
+     * Find the hour slots of the given City nearest to the given hour slot, in which a Driver can take a Delivery.
+     * @param cityId Id of the City (Long type).
+     * @param preferredHourSlot The preferred hour slot (long type).
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @param count Number of hour slots to find (int type).
+     * @return The hour slots with free capacity, nearest first, at most count (List<Long> type).
+     */
+    public List<Long> findNearestFreeHourSlots(Long cityId, long preferredHourSlot, long fromHourSlot, long toHourSlot, int count)
+    {
+        CityDriverIndex cityIndex = map_cityId_cityIndex.get(cityId);
+        if (cityIndex == null)
+        {
+            return Collections.emptyList();
+        }
+        return cityIndex.findNearestFreeHourSlots(preferredHourSlot, fromHourSlot, toHourSlot, count);
+    }
+
+    /**
+     * Total Deliveries of the given Driver, as known by the index.
+     * @param driverId Id of the Driver (Long type).
+     * @return Total Deliveries of the Driver, or -1 if the Driver is not indexed (int type).
+     */
+    public int getTotalDeliveries(Long driverId)
+    {
+        Long cityId = map_driverId_cityId.get(driverId);
+        if (cityId == null)
+        {
+            return -1;
+        }
+        return cityIndex(cityId).getTotalDeliveries(driverId);
+    }
+
+    /**
+     * Remove all the Drivers and Deliveries from the index.
+     */
+    public void clear()
+    {
+        map_cityId_cityIndex.clear();
+        map_driverId_cityId.clear();
+    }
+
+    private CityDriverIndex cityIndex(Long cityId)
+    {
+        return map_cityId_cityIndex.computeIfAbsent(cityId, id -> new CityDriverIndex());
+    }
+}
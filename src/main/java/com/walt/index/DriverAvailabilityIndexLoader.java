@@ -0,0 +1,134 @@
+package com.walt.index;
+
+import com.walt.assignment.DriverAssignmentStrategy;
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.model.DriverCity;
+import com.walt.model.DriverDeliveryTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Rebuild the DriverAvailabilityIndex (and the state of the DriverAssignmentStrategy) from the repositories when the application starts,
+ * and index single Drivers again on demand (DeliveryCountReconciler).
+ * Note: Only the Driver and Delivery columns the index needs are read, no entity is loaded.
+ */
+@Component
+public class DriverAvailabilityIndexLoader implements SmartInitializingSingleton
+{
+    private static final Logger log = LoggerFactory.getLogger(DriverAvailabilityIndexLoader.class);
+
+    @Resource
+    DriverAvailabilityIndex driverAvailabilityIndex;
+
+    @Resource
+    DriverAssignmentStrategy driverAssignmentStrategy;
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    DeliveryRepository deliveryRepository;
+
+    @Resource
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    public void init()
+    {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Rebuild once all the beans are created (the listeners are registered), before the web server starts accepting requests,
+     * so no order sees a partly loaded index, and no Delivery saved meanwhile is added twice.
+     */
+    @Override
+    public void afterSingletonsInstantiated()
+    {
+        rebuild();
+    }
+
+    /**
+     * Rebuild the index from all the Drivers and Deliveries in the system.
+     * Note: The Deliveries are streamed from a database cursor, so the rebuild memory does not grow with their number.
+     * The index is cleared first, so a later call must not run while orders are served (e.g. only in a benchmark setup).
+     */
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        driverAvailabilityIndex.clear();
+        driverAssignmentStrategy.clear();
+
+        int totalDrivers = 0;
+        for (DriverCity driverCity : driverRepository.findAllDriverCities())
+        {
+            driverAvailabilityIndex.addDriver(driverCity.getDriverId(), driverCity.getCityId(),
+                    driverCity.getShiftStart(), driverCity.getShiftEnd(), driverCity.getCapacity());
+            driverAssignmentStrategy.addDriver(driverCity.getDriverId(), driverCity.getCityId());
+            totalDrivers++;
+        }
+
+        long totalDeliveries = readOnlyTransactionTemplate.execute(status ->
+        {
+            try (Stream<DriverDeliveryTime> driverDeliveryTimes = deliveryRepository.streamAllDriverDeliveryTimes())
+            {
+                long count = 0;
+                Iterator<DriverDeliveryTime> iterator = driverDeliveryTimes.iterator();
+                while (iterator.hasNext())
+                {
+                    DriverDeliveryTime driverDeliveryTime = iterator.next();
+                    driverAvailabilityIndex.addDelivery(driverDeliveryTime.getDriverId(), driverDeliveryTime.getDeliveryTime());
+                    driverAssignmentStrategy.addDelivery(driverDeliveryTime.getDriverId(), driverDeliveryTime.getDeliveryTime(), driverDeliveryTime.getDistance());
+                    count++;
+                }
+                return count;
+            }
+        });
+
+        log.info("Driver availability index ({} assignment) rebuilt with {} drivers and {} deliveries in {} ms",
+                driverAssignmentStrategy.getName(), totalDrivers, totalDeliveries, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Index the given Drivers again from the database (e.g. their Deliveries were changed by hand), leaving the other Drivers as they are.
+     * Note: The Drivers are not chosen until they are indexed again, and a Delivery of one of them committed during the reload
+     * may be counted twice (it takes at most a seat too many in the index, the database still enforces the capacity).
+     * @param driverIds Ids of the Drivers (Collection<Long> type).
+     */
+    public void reload(Collection<Long> driverIds)
+    {
+        for (Long driverId : driverIds)
+        {
+            driverAvailabilityIndex.removeDriver(driverId);
+            driverAssignmentStrategy.removeDriver(driverId);
+        }
+        for (DriverCity driverCity : driverRepository.findDriverCities(driverIds))
+        {
+            driverAvailabilityIndex.addDriver(driverCity.getDriverId(), driverCity.getCityId(),
+                    driverCity.getShiftStart(), driverCity.getShiftEnd(), driverCity.getCapacity());
+            driverAssignmentStrategy.addDriver(driverCity.getDriverId(), driverCity.getCityId());
+        }
+        List<DriverDeliveryTime> driverDeliveryTimes = readOnlyTransactionTemplate.execute(status ->
+                deliveryRepository.findDriverDeliveryTimes(driverIds));
+        for (DriverDeliveryTime driverDeliveryTime : driverDeliveryTimes)
+        {
+            driverAvailabilityIndex.addDelivery(driverDeliveryTime.getDriverId(), driverDeliveryTime.getDeliveryTime());
+            driverAssignmentStrategy.addDelivery(driverDeliveryTime.getDriverId(), driverDeliveryTime.getDeliveryTime(), driverDeliveryTime.getDistance());
+        }
+    }
+}
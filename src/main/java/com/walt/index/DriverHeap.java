@@ -0,0 +1,140 @@
+package com.walt.index;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of the Driver schedules of a City on shift in an hour of the day,
+ * the least busy Driver on top (see DriverSchedule.isBefore).
+ * Every schedule knows its index in the heap of each hour of the day, so a Driver whose total Deliveries grew
+ * is moved down in O(log n), and a Driver whose shift changed is removed in O(log n).
+ * Note: Not thread safe, the owner (the City index) synchronizes the access.
+ */
+class DriverHeap
+{
+    // The hour of the day of the heap, the index of the schedules in it is heapIndexes[hourOfDay].
+    private final int hourOfDay;
+
+    private DriverSchedule[] heap = new DriverSchedule[16];
+    private int size;
+
+    DriverHeap(int hourOfDay)
+    {
+        this.hourOfDay = hourOfDay;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Add a new schedule to the heap.
+     * @param schedule Given schedule, not in the heap yet (DriverSchedule type).
+     */
+    void add(DriverSchedule schedule)
+    {
+        if (size == heap.length)
+        {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = schedule;
+        schedule.heapIndexes[hourOfDay] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Remove and return the least busy schedule.
+     * @return The schedule on top of the heap, or null if the heap is empty (DriverSchedule type).
+     */
+    DriverSchedule poll()
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+        DriverSchedule top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * Remove the given schedule from the heap.
+     * @param schedule Given schedule, in the heap (DriverSchedule type).
+     */
+    void remove(DriverSchedule schedule)
+    {
+        removeAt(schedule.heapIndexes[hourOfDay]);
+    }
+
+    /**
+     * Restore the heap order after the total Deliveries of the given schedule grew.
+     * @param schedule Given schedule, in the heap (DriverSchedule type).
+     */
+    void increased(DriverSchedule schedule)
+    {
+        siftDown(schedule.heapIndexes[hourOfDay]);
+    }
+
+    private void removeAt(int index)
+    {
+        DriverSchedule removed = heap[index];
+        size--;
+        if (index < size)
+        {
+            // The last schedule takes the place of the removed one, and moves down or up from there.
+            DriverSchedule moved = heap[size];
+            heap[size] = null;
+            heap[index] = moved;
+            moved.heapIndexes[hourOfDay] = index;
+            siftDown(index);
+            siftUp(moved.heapIndexes[hourOfDay]);
+        }
+        else
+        {
+            heap[size] = null;
+        }
+        removed.heapIndexes[hourOfDay] = -1;
+    }
+
+    private void siftUp(int index)
+    {
+        DriverSchedule schedule = heap[index];
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+            if ( ! (schedule.isBefore(heap[parent])))
+            {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].heapIndexes[hourOfDay] = index;
+            index = parent;
+        }
+        heap[index] = schedule;
+        schedule.heapIndexes[hourOfDay] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        DriverSchedule schedule = heap[index];
+        int half = size >>> 1;
+        while (index < half)
+        {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].isBefore(heap[child]))
+            {
+                child++;
+            }
+            if ( ! (heap[child].isBefore(schedule)))
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].heapIndexes[hourOfDay] = index;
+            index = child;
+        }
+        heap[index] = schedule;
+        schedule.heapIndexes[hourOfDay] = index;
+    }
+}
@@ -0,0 +1,94 @@
+package com.walt.index;
+
+import com.walt.model.Driver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The schedule of a single Driver: its shift, its capacity, its booked hour slots and its total Deliveries.
+ * Note: Owned and synchronized by the index of the Driver City.
+ */
+final class DriverSchedule
+{
+    final Long driverId;
+    final HourBitmap busyHours = new HourBitmap();
+    int totalDeliveries;
+
+    // The daily shift [shiftStart, shiftEnd) in hours of the day, and the Deliveries the Driver can take in an hour.
+    int shiftStart = 0;
+    int shiftEnd = Driver.HOURS_OF_DAY;
+    int capacity = 1;
+
+    // Hour slot and its Deliveries beyond the first, only for a Driver that took more than one Delivery in an hour.
+    private Map<Long, Integer> map_hourSlot_extraDeliveries;
+
+    // Position of the schedule in the DriverHeap of each hour of the day (-1 when off shift).
+    final int[] heapIndexes = new int[Driver.HOURS_OF_DAY];
+
+    DriverSchedule(Long driverId)
+    {
+        this.driverId = driverId;
+        Arrays.fill(heapIndexes, -1);
+    }
+
+    /**
+     * Check if the given hour of the day is in the shift of the Driver.
+     * @param hourOfDay Hour of the day, 0 to 23 (int type).
+     * @return True if the Driver works in that hour (boolean type).
+     */
+    boolean isOnShift(int hourOfDay)
+    {
+        if (shiftStart < shiftEnd)
+        {
+            return hourOfDay >= shiftStart && hourOfDay < shiftEnd;
+        }
+        // A shift that ends on the next day.
+        return hourOfDay >= shiftStart || hourOfDay < shiftEnd;
+    }
+
+    /**
+     * The Deliveries of the Driver in the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     * @return Number of Deliveries (int type).
+     */
+    int deliveriesIn(long hourSlot)
+    {
+        if ( ! (busyHours.contains(hourSlot)))
+        {
+            return 0;
+        }
+        return (map_hourSlot_extraDeliveries == null) ? 1 : 1 + map_hourSlot_extraDeliveries.getOrDefault(hourSlot, 0);
+    }
+
+    /**
+     * Book one more Delivery of the Driver in the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     */
+    void book(long hourSlot)
+    {
+        if ( ! (busyHours.add(hourSlot)))
+        {
+            if (map_hourSlot_extraDeliveries == null)
+            {
+                map_hourSlot_extraDeliveries = new HashMap<>();
+            }
+            map_hourSlot_extraDeliveries.merge(hourSlot, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Order of the least busy Drivers: by total Deliveries, and by Driver id for Drivers with the same total.
+     * @param other Other schedule (DriverSchedule type).
+     * @return True if this Driver is chosen before the other Driver (boolean type).
+     */
+    boolean isBefore(DriverSchedule other)
+    {
+        if (totalDeliveries != other.totalDeliveries)
+        {
+            return totalDeliveries < other.totalDeliveries;
+        }
+        return driverId < other.driverId;
+    }
+}
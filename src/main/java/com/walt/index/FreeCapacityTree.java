@@ -0,0 +1,311 @@
+package com.walt.index;
+
+import com.walt.model.DeliveryTime;
+import com.walt.model.Driver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The free capacity of the Drivers of a City in every hour slot: the Deliveries the City can still take in the hour,
+ * which is the capacity of its Drivers on shift in that hour of the day, less the Deliveries they booked in the hour slot.
+ * The hour slots are split into pages of PAGE_HOURS hours (like HourBitmap), each page a segment tree of the maximum
+ * free capacity of its hours, so booking a Delivery is O(log PAGE_HOURS), and finding the next (or previous) hour slot
+ * with free capacity is O(log PAGE_HOURS) for each page it passes.
+ * Only the pages with booked Deliveries are allocated, the free capacity of any other hour is the capacity of its hour of the day.
+ * Note: A page is rebuilt (O(PAGE_HOURS)) the first time it is used after a shift changed.
+ * Only the Deliveries of the Drivers on shift in an hour count (up to their capacity), the owner moves the booked Deliveries
+ * of a Driver whose shift changes (see addBooked), so a Driver off shift never hides the capacity of the others.
+ * Not thread safe, the owner (the City index) synchronizes the access.
+ */
+class FreeCapacityTree
+{
+    // Hours of a page (about 170 days).
+    static final int PAGE_HOURS = 4096;
+
+    private static final int PAGE_SHIFT = 12;
+
+    // Capacity of the Drivers on shift in each hour of the day, and its sum over the day.
+    private final int[] hourCapacity = new int[Driver.HOURS_OF_DAY];
+    private long dayCapacity;
+
+    // Increased with every change of the capacities, a page built for an older version is rebuilt.
+    private long version;
+
+    // Page number and its page, only the pages with booked Deliveries.
+    private final Map<Long, Page> map_pageNumber_page = new HashMap<>();
+
+    /**
+     * Add (or remove) the capacity of a Driver to the hours of the day of its shift.
+     * @param schedule The schedule of the Driver (DriverSchedule type).
+     * @param sign 1 to add the capacity, -1 to remove it (int type).
+     */
+    void addShift(DriverSchedule schedule, int sign)
+    {
+        for (int hourOfDay = 0; hourOfDay < Driver.HOURS_OF_DAY; hourOfDay++)
+        {
+            if (schedule.isOnShift(hourOfDay))
+            {
+                hourCapacity[hourOfDay] += sign * schedule.capacity;
+                dayCapacity += sign * schedule.capacity;
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Book a Delivery, of a Driver on shift with capacity left, in the given hour slot.
+     * @param hourSlot Hour slot of the Delivery (long type).
+     */
+    void book(long hourSlot)
+    {
+        addBooked(hourSlot, 1);
+    }
+
+    /**
+     * Add (or remove) booked Deliveries of the Drivers on shift in the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     * @param deliveries Number of Deliveries, negative to remove them (int type).
+     */
+    void addBooked(long hourSlot, int deliveries)
+    {
+        if (deliveries == 0)
+        {
+            return;
+        }
+        long pageNumber = hourSlot >> PAGE_SHIFT;
+        Page page = map_pageNumber_page.get(pageNumber);
+        if (page == null)
+        {
+            page = new Page(pageNumber << PAGE_SHIFT);
+            map_pageNumber_page.put(pageNumber, page);
+        }
+        fresh(page);
+
+        int hour = (int) (hourSlot & (PAGE_HOURS - 1));
+        page.booked[hour] += deliveries;
+        page.set(hour, Math.max(0, hourCapacity[DeliveryTime.hourOfDayOf(hourSlot)] - page.booked[hour]));
+    }
+
+    /**
+     * The free capacity of the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     * @return Number of Deliveries the City can still take in the hour slot (int type).
+     */
+    int freeCapacity(long hourSlot)
+    {
+        Page page = freshPage(hourSlot >> PAGE_SHIFT);
+        if (page == null)
+        {
+            return hourCapacity[DeliveryTime.hourOfDayOf(hourSlot)];
+        }
+        return page.tree[PAGE_HOURS + (int) (hourSlot & (PAGE_HOURS - 1))];
+    }
+
+    /**
+     * Find the first hour slot with free capacity in the given range.
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @return The first hour slot with free capacity, or null if none in the range (Long type).
+     */
+    Long nextFreeHourSlot(long fromHourSlot, long toHourSlot)
+    {
+        if (dayCapacity <= 0)
+        {
+            return null;
+        }
+
+        long hourSlot = fromHourSlot;
+        while (hourSlot < toHourSlot)
+        {
+            long pageNumber = hourSlot >> PAGE_SHIFT;
+            long pageEnd = (pageNumber + 1) << PAGE_SHIFT;
+            Page page = freshPage(pageNumber);
+            if (page == null)
+            {
+                // No Delivery booked in the page: the first hour of the day with capacity (a day at most).
+                for (long end = Math.min(pageEnd, toHourSlot); hourSlot < end; hourSlot++)
+                {
+                    if (hourCapacity[DeliveryTime.hourOfDayOf(hourSlot)] > 0)
+                    {
+                        return hourSlot;
+                    }
+                }
+                continue;
+            }
+
+            int hour = page.firstFree((int) (hourSlot & (PAGE_HOURS - 1)));
+            if (hour >= 0)
+            {
+                long freeHourSlot = page.firstHourSlot + hour;
+                return (freeHourSlot < toHourSlot) ? freeHourSlot : null;
+            }
+            hourSlot = pageEnd;
+        }
+        return null;
+    }
+
+    /**
+     * Find the last hour slot with free capacity in the given range.
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @return The last hour slot with free capacity, or null if none in the range (Long type).
+     */
+    Long previousFreeHourSlot(long fromHourSlot, long toHourSlot)
+    {
+        if (dayCapacity <= 0)
+        {
+            return null;
+        }
+
+        long hourSlot = toHourSlot - 1;
+        while (hourSlot >= fromHourSlot)
+        {
+            long pageNumber = hourSlot >> PAGE_SHIFT;
+            long pageStart = pageNumber << PAGE_SHIFT;
+            Page page = freshPage(pageNumber);
+            if (page == null)
+            {
+                // No Delivery booked in the page: the last hour of the day with capacity (a day at most).
+                for (long start = Math.max(pageStart, fromHourSlot); hourSlot >= start; hourSlot--)
+                {
+                    if (hourCapacity[DeliveryTime.hourOfDayOf(hourSlot)] > 0)
+                    {
+                        return hourSlot;
+                    }
+                }
+                continue;
+            }
+
+            int hour = page.lastFree((int) (hourSlot & (PAGE_HOURS - 1)));
+            if (hour >= 0)
+            {
+                long freeHourSlot = page.firstHourSlot + hour;
+                return (freeHourSlot >= fromHourSlot) ? freeHourSlot : null;
+            }
+            hourSlot = pageStart - 1;
+        }
+        return null;
+    }
+
+    /**
+     * The page of the given page number, rebuilt if the capacities changed since it was built.
+     * @param pageNumber Page number (long type).
+     * @return The page, or null if no Delivery is booked in it (Page type).
+     */
+    private Page freshPage(long pageNumber)
+    {
+        Page page = map_pageNumber_page.get(pageNumber);
+        if (page != null)
+        {
+            fresh(page);
+        }
+        return page;
+    }
+
+    private void fresh(Page page)
+    {
+        if (page.version == version)
+        {
+            return;
+        }
+        for (int hour = 0; hour < PAGE_HOURS; hour++)
+        {
+            int capacity = hourCapacity[DeliveryTime.hourOfDayOf(page.firstHourSlot + hour)];
+            page.tree[PAGE_HOURS + hour] = Math.max(0, capacity - page.booked[hour]);
+        }
+        for (int node = PAGE_HOURS - 1; node > 0; node--)
+        {
+            page.tree[node] = Math.max(page.tree[2 * node], page.tree[2 * node + 1]);
+        }
+        page.version = version;
+    }
+
+    /**
+     * The booked Deliveries of PAGE_HOURS hour slots, and the segment tree of their free capacity:
+     * tree[1] is the root, the children of node n are 2n and 2n + 1, and the leaf of hour h is PAGE_HOURS + h.
+     */
+    private static final class Page
+    {
+        private final long firstHourSlot;
+        private final int[] booked = new int[PAGE_HOURS];
+        private final int[] tree = new int[2 * PAGE_HOURS];
+        private long version = -1;
+
+        private Page(long firstHourSlot)
+        {
+            this.firstHourSlot = firstHourSlot;
+        }
+
+        /**
+         * Set the free capacity of an hour, and the maximum of its ranges up to the root.
+         */
+        private void set(int hour, int freeCapacity)
+        {
+            int node = PAGE_HOURS + hour;
+            tree[node] = freeCapacity;
+            for (node >>>= 1; node > 0; node >>>= 1)
+            {
+                tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        /**
+         * The first hour of the page from the given hour on with free capacity.
+         * Goes up from the leaf until a right sibling has free capacity, then down to its first free leaf: O(log PAGE_HOURS).
+         * @param fromHour First hour, inclusive (int type).
+         * @return The hour in the page, or -1 if none (int type).
+         */
+        private int firstFree(int fromHour)
+        {
+            int node = PAGE_HOURS + fromHour;
+            if (tree[node] > 0)
+            {
+                return fromHour;
+            }
+            while (node > 1)
+            {
+                if ((node & 1) == 0 && tree[node + 1] > 0)
+                {
+                    node++;
+                    while (node < PAGE_HOURS)
+                    {
+                        node = (tree[2 * node] > 0) ? 2 * node : 2 * node + 1;
+                    }
+                    return node - PAGE_HOURS;
+                }
+                node >>>= 1;
+            }
+            return -1;
+        }
+
+        /**
+         * The last hour of the page up to the given hour with free capacity.
+         * Goes up from the leaf until a left sibling has free capacity, then down to its last free leaf: O(log PAGE_HOURS).
+         * @param toHour Last hour, inclusive (int type).
+         * @return The hour in the page, or -1 if none (int type).
+         */
+        private int lastFree(int toHour)
+        {
+            int node = PAGE_HOURS + toHour;
+            if (tree[node] > 0)
+            {
+                return toHour;
+            }
+            while (node > 1)
+            {
+                if ((node & 1) == 1 && tree[node - 1] > 0)
+                {
+                    node--;
+                    while (node < PAGE_HOURS)
+                    {
+                        node = (tree[2 * node + 1] > 0) ? 2 * node + 1 : 2 * node;
+                    }
+                    return node - PAGE_HOURS;
+                }
+                node >>>= 1;
+            }
+            return -1;
+        }
+    }
+}
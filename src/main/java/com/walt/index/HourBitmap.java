@@ -0,0 +1,151 @@
+package com.walt.index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Compact set of hour slots (hours since epoch), e.g. the hours in which a Driver is busy.
+ * The hours are kept as a bitmap split into pages of PAGE_HOURS bits, and only the pages with at least one hour are allocated,
+ * so testing an hour is O(1) and a year of history takes about 2 pages (1 KB) whatever the number of Deliveries.
+ * Note: Not thread safe, the owner (e.g. the City index) synchronizes the access.
+ */
+public class HourBitmap
+{
+    // Hours of a page (64 words of 64 bits, about 170 days).
+    static final int PAGE_HOURS = 4096;
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int WORDS_PER_PAGE = PAGE_HOURS / Long.SIZE;
+
+    // Page number of pages[0], and the pages from it on (null for a page without hours).
+    private long firstPage;
+    private long[][] pages;
+
+    /**
+     * Add the given hour slot.
+     * @param hourSlot Hour slot (long type).
+     * @return False if the hour slot already exists (boolean type).
+     */
+    public boolean add(long hourSlot)
+    {
+        long[] page = pageFor(hourSlot >> PAGE_SHIFT);
+        int bit = (int) (hourSlot & (PAGE_HOURS - 1));
+        long mask = 1L << bit;
+        long word = page[bit >>> 6];
+        page[bit >>> 6] = word | mask;
+        return (word & mask) == 0;
+    }
+
+    /**
+     * Check if the given hour slot exists.
+     * @param hourSlot Hour slot (long type).
+     * @return True if the hour slot exists (boolean type).
+     */
+    public boolean contains(long hourSlot)
+    {
+        if (pages == null)
+        {
+            return false;
+        }
+        long index = (hourSlot >> PAGE_SHIFT) - firstPage;
+        if (index < 0 || index >= pages.length || pages[(int) index] == null)
+        {
+            return false;
+        }
+        int bit = (int) (hourSlot & (PAGE_HOURS - 1));
+        return (pages[(int) index][bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Count the hour slots in the given range.
+     * Note: Whole words are counted with a popcount, a week is 3 words at most.
+     * @param fromHourSlot First hour slot of the range, inclusive (long type).
+     * @param toHourSlot Last hour slot of the range, exclusive (long type).
+     * @return Number of hour slots in the range (int type).
+     */
+    public int count(long fromHourSlot, long toHourSlot)
+    {
+        int count = 0;
+        long hourSlot = fromHourSlot;
+        while (pages != null && hourSlot < toHourSlot)
+        {
+            long index = (hourSlot >> PAGE_SHIFT) - firstPage;
+            int bit = (int) (hourSlot & (PAGE_HOURS - 1));
+            // Bits of the current word from hourSlot on, cut at toHourSlot.
+            int bits = (int) Math.min(Long.SIZE - (bit & 63), toHourSlot - hourSlot);
+            if (index >= 0 && index < pages.length && pages[(int) index] != null)
+            {
+                long word = pages[(int) index][bit >>> 6] >>> (bit & 63);
+                if (bits < Long.SIZE)
+                {
+                    word &= (1L << bits) - 1;
+                }
+                count += Long.bitCount(word);
+            }
+            hourSlot += bits;
+        }
+        return count;
+    }
+
+    /**
+     * Perform the given action for every hour slot, in ascending order.
+     * @param action The action (LongConsumer type).
+     */
+    public void forEach(LongConsumer action)
+    {
+        if (pages == null)
+        {
+            return;
+        }
+        for (int index = 0; index < pages.length; index++)
+        {
+            long[] page = pages[index];
+            if (page == null)
+            {
+                continue;
+            }
+            long firstHourSlot = (firstPage + index) << PAGE_SHIFT;
+            for (int w = 0; w < WORDS_PER_PAGE; w++)
+            {
+                for (long word = page[w]; word != 0; word &= word - 1)
+                {
+                    action.accept(firstHourSlot + w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+    }
+
+    /**
+     * The page of the given page number, allocated (and the page array grown) if needed.
+     * @param pageNumber Page number (long type).
+     * @return The words of the page (long[] type).
+     */
+    private long[] pageFor(long pageNumber)
+    {
+        if (pages == null)
+        {
+            firstPage = pageNumber;
+            pages = new long[1][];
+        }
+        else if (pageNumber < firstPage)
+        {
+            // Grow towards the past, the existing pages move to the end of the new array.
+            int shift = (int) (firstPage - pageNumber);
+            long[][] grownPages = new long[pages.length + shift][];
+            System.arraycopy(pages, 0, grownPages, shift, pages.length);
+            pages = grownPages;
+            firstPage = pageNumber;
+        }
+        else if (pageNumber - firstPage >= pages.length)
+        {
+            pages = Arrays.copyOf(pages, (int) (pageNumber - firstPage) + 1);
+        }
+
+        int index = (int) (pageNumber - firstPage);
+        if (pages[index] == null)
+        {
+            pages[index] = new long[WORDS_PER_PAGE];
+        }
+        return pages[index];
+    }
+}
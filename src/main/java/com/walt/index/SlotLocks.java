@@ -0,0 +1,68 @@
+package com.walt.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks per (City, hour slot).
+ * Two orders for the same City and hour always get the same lock, so they can not choose the same Driver,
+ * while orders of other Cities or other hours almost always get a different lock and run in parallel.
+ * Note: The number of stripes is fixed ('walt.assignment.lock-stripes', rounded up to a power of two),
+ * so the memory used does not grow with the number of Cities or hours.
+ */
+@Component
+public class SlotLocks
+{
+    private final Lock[] locks;
+    private final int mask;
+
+    public SlotLocks(@Value("${walt.assignment.lock-stripes:1024}") int stripes)
+    {
+        int size = (stripes <= 1) ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new Lock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The lock of the given City and hour slot.
+     * @param cityId Id of the City (Long type).
+     * @param hourSlot Hour slot (long type).
+     * @return The lock of the stripe (Lock type).
+     */
+    public Lock lockFor(Long cityId, long hourSlot)
+    {
+        return locks[stripeOf(cityId, hourSlot)];
+    }
+
+    /**
+     * The stripe of the given City and hour slot.
+     * Note: Code which locks several stripes must lock them in ascending stripe order, to avoid deadlocks.
+     * @param cityId Id of the City (Long type).
+     * @param hourSlot Hour slot (long type).
+     * @return The stripe number (int type).
+     */
+    public int stripeOf(Long cityId, long hourSlot)
+    {
+        long hash = cityId * 0x9E3779B97F4A7C15L + hourSlot;
+        hash ^= (hash >>> 32);
+        hash ^= (hash >>> 16);
+        return (int) hash & mask;
+    }
+
+    /**
+     * The lock of the given stripe.
+     * @param stripe The stripe number, as returned by stripeOf (int type).
+     * @return The lock of the stripe (Lock type).
+     */
+    public Lock lockOfStripe(int stripe)
+    {
+        return locks[stripe];
+    }
+}
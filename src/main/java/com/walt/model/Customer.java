@@ -1,12 +1,13 @@
 package com.walt.model;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
 
 @Entity
 public class Customer extends  NamedEntity{
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     City city;
     String address;
 
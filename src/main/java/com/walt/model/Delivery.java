@@ -1,28 +1,43 @@
 package com.walt.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 import java.util.Date;
 import java.util.Random;
 
 @Entity
+@Table(indexes = {@Index(name = "idx_delivery_driver_time", columnList = "driver_id, deliveryTime"),
+        @Index(name = "idx_delivery_driver_hour_seat", columnList = "driver_id, hourSlot, seat", unique = true)})
 public class Delivery {
 
+    // Pooled sequence: one round trip to the sequence for every 50 new Deliveries, instead of one for each.
     @Id
-    @GeneratedValue(strategy= GenerationType.AUTO)
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "delivery_seq")
+    @SequenceGenerator(name = "delivery_seq", sequenceName = "delivery_seq", allocationSize = NamedEntity.ID_ALLOCATION_SIZE)
     private Long id;
 
-    @ManyToOne
+    // Lazy: reading a Delivery never joins (or selects) its Driver, Restaurant, Customer and their Cities.
+    @ManyToOne(fetch = FetchType.LAZY)
     Driver driver;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     Restaurant restaurant;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     Customer customer;
 
     Date deliveryTime;
     double distance;
 
+    // The hour slot of the deliveryTime (see DeliveryTime), kept by setDeliveryTime: a Delivery at 12:30 is in the hour of 12:00.
+    long hourSlot;
+
+    // Place of the Delivery among the Deliveries of its Driver in the same hour slot (0 for the first, up to the Driver capacity),
+    // so the unique index rejects a double booking of the same place, and still lets a Driver take several Deliveries an hour.
+    @ColumnDefault("0")
+    int seat;
+
     public Delivery() {
     }
 
@@ -30,7 +45,7 @@ public class Delivery {
         this.driver = driver;
         this.restaurant = restaurant;
         this.customer = customer;
-        this.deliveryTime = deliveryTime;
+        setDeliveryTime(deliveryTime);
 
         Random rand = new Random();
         int int_random = rand.nextInt(20);
@@ -73,6 +88,11 @@ public class Delivery {
 
     public void setDeliveryTime(Date deliveryTime) {
         this.deliveryTime = deliveryTime;
+        this.hourSlot = (deliveryTime == null) ? 0 : DeliveryTime.hourSlotOf(deliveryTime.getTime());
+    }
+
+    public long getHourSlot() {
+        return hourSlot;
     }
 
     public double getDistance() {
@@ -82,4 +102,12 @@ public class Delivery {
     public void setDistance(double distance) {
         this.distance = distance;
     }
+
+    public int getSeat() {
+        return seat;
+    }
+
+    public void setSeat(int seat) {
+        this.seat = seat;
+    }
 }
@@ -0,0 +1,32 @@
+package com.walt.model;
+
+import java.util.Date;
+
+public class DeliveryOrder
+{
+    private final Customer customer;
+    private final Restaurant restaurant;
+    private final Date deliveryTime;
+
+    public DeliveryOrder(Customer customer, Restaurant restaurant, Date deliveryTime)
+    {
+        this.customer = customer;
+        this.restaurant = restaurant;
+        this.deliveryTime = deliveryTime;
+    }
+
+    public Customer getCustomer()
+    {
+        return customer;
+    }
+
+    public Restaurant getRestaurant()
+    {
+        return restaurant;
+    }
+
+    public Date getDeliveryTime()
+    {
+        return deliveryTime;
+    }
+}
@@ -0,0 +1,45 @@
+package com.walt.model;
+
+public class DeliveryOrderResult
+{
+    private final DeliveryOrder order;
+    private final Delivery delivery;
+    private final String error;
+
+    private DeliveryOrderResult(DeliveryOrder order, Delivery delivery, String error)
+    {
+        this.order = order;
+        this.delivery = delivery;
+        this.error = error;
+    }
+
+    public static DeliveryOrderResult created(DeliveryOrder order, Delivery delivery)
+    {
+        return new DeliveryOrderResult(order, delivery, null);
+    }
+
+    public static DeliveryOrderResult failed(DeliveryOrder order, String error)
+    {
+        return new DeliveryOrderResult(order, null, error);
+    }
+
+    public DeliveryOrder getOrder()
+    {
+        return order;
+    }
+
+    public Delivery getDelivery()
+    {
+        return delivery;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public boolean isCreated()
+    {
+        return delivery != null;
+    }
+}
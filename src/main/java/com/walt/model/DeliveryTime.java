@@ -0,0 +1,212 @@
+package com.walt.model;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Date and Time of a Delivery, as given in an order ('dd-MM-yyyy HH:mm', in the default time zone),
+ * with its hour slot: the local hour it is in, counted in hours since the local epoch (1970-01-01 00:00 in the default time zone).
+ * Each drive takes a full hour, so two Deliveries of a Driver clash when they are in the same hour slot
+ * (a Delivery at 12:30 clashes with a Delivery at 12:00), the availability checks and indexes key on the hour slot.
+ * Note: The slot is of the local hour, so in a zone with a sub-hour offset (e.g. +05:30) 12:00 and 12:30 still share a slot,
+ * and the hour of the day of a slot is plain arithmetic. In a daylight saving overlap the repeated local hour is one slot.
+ * Note: Parsed by hand, with no formatter per request: the text must be exactly 'dd-MM-yyyy HH:mm' of a valid date.
+ * The default time zone is read once, when the class is loaded.
+ * Immutable and thread safe.
+ */
+public final class DeliveryTime
+{
+    public static final String FORMAT = "dd-MM-yyyy HH:mm";
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final ZoneRules ZONE_RULES = ZONE.getRules();
+
+    // The offset of a zone that has no daylight saving (e.g. UTC), so its offset is never looked up.
+    private static final boolean FIXED_OFFSET = ZONE_RULES.isFixedOffset();
+    private static final long FIXED_OFFSET_MILLIS = FIXED_OFFSET ? ZONE_RULES.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L : 0;
+
+    // Only for toString, the parsing does not need a formatter.
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(FORMAT).withZone(ZONE);
+
+    private final long epochMillis;
+    private final long hourSlot;
+
+    private DeliveryTime(long epochMillis)
+    {
+        this.epochMillis = epochMillis;
+        this.hourSlot = hourSlotOf(epochMillis);
+    }
+
+    /**
+     * Parse a Delivery Date and Time of an order.
+     * @param text Given Date and Time, format: 'dd-MM-yyyy HH:mm' (String type).
+     * @return The Delivery Date and Time (DeliveryTime type).
+     * @throws ParseException If the text is not in the format, or not a valid Date and Time.
+     */
+    public static DeliveryTime parse(String text) throws ParseException
+    {
+        if (text == null || text.length() != FORMAT.length())
+        {
+            throw new ParseException("Delivery DateTime format need to be: '" + FORMAT + "'", 0);
+        }
+        checkSeparator(text, 2, '-');
+        checkSeparator(text, 5, '-');
+        checkSeparator(text, 10, ' ');
+        checkSeparator(text, 13, ':');
+
+        int day = digits(text, 0, 2);
+        int month = digits(text, 3, 5);
+        int year = digits(text, 6, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+
+        LocalDateTime localDateTime;
+        try
+        {
+            localDateTime = LocalDateTime.of(year, month, day, hour, minute);
+        }
+        catch (RuntimeException e)
+        {
+            throw new ParseException("Delivery DateTime is not valid: '" + text + "'", 0);
+        }
+
+        // The offset of the default time zone at that local time (the earlier one in a daylight saving overlap).
+        ZoneOffset offset = ZONE_RULES.getOffset(localDateTime);
+        return new DeliveryTime(localDateTime.toEpochSecond(offset) * 1000);
+    }
+
+    /**
+     * The Delivery Date and Time of the given Date.
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return The Delivery Date and Time (DeliveryTime type).
+     */
+    public static DeliveryTime of(Date deliveryTime)
+    {
+        return new DeliveryTime(deliveryTime.getTime());
+    }
+
+    /**
+     * Convert a Delivery time to its hour slot: the local hour it is in, in hours since the local epoch.
+     * @param epochMillis Delivery time, milliseconds since epoch (long type).
+     * @return Hour slot of the Delivery (long type).
+     */
+    public static long hourSlotOf(long epochMillis)
+    {
+        return Math.floorDiv(epochMillis + offsetMillisAt(epochMillis), HOUR_MILLIS);
+    }
+
+    /**
+     * The start of an hour slot: the instant of its local hour (the earlier one in a daylight saving overlap).
+     * Note: The inverse of hourSlotOf, hourSlotOf(hourStartMillisOf(s)) is s for every local hour that exists.
+     * @param hourSlot Hour slot (long type).
+     * @return Milliseconds since epoch of the start of the hour slot (long type).
+     */
+    public static long hourStartMillisOf(long hourSlot)
+    {
+        long localMillis = hourSlot * HOUR_MILLIS;
+        if (FIXED_OFFSET)
+        {
+            return localMillis - FIXED_OFFSET_MILLIS;
+        }
+        // The offset near the local time, then the offset at the instant it gives.
+        long offsetMillis = offsetMillisAt(localMillis - offsetMillisAt(localMillis));
+        return localMillis - offsetMillis;
+    }
+
+    /**
+     * The hour of the day of an hour slot, in the default time zone (e.g. to check the shifts of the Drivers).
+     * Note: The slots count local hours, so no time zone is looked up and nothing is allocated.
+     * @param hourSlot Hour slot (long type).
+     * @return Hour of the day, 0 to 23 (int type).
+     */
+    public static int hourOfDayOf(long hourSlot)
+    {
+        return (int) Math.floorMod(hourSlot, 24L);
+    }
+
+    /**
+     * The offset of the default time zone at the given instant.
+     * @param epochMillis Milliseconds since epoch (long type).
+     * @return The offset, in milliseconds (long type).
+     */
+    private static long offsetMillisAt(long epochMillis)
+    {
+        if (FIXED_OFFSET)
+        {
+            return FIXED_OFFSET_MILLIS;
+        }
+        return ZONE_RULES.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+    }
+
+    public long getEpochMillis()
+    {
+        return epochMillis;
+    }
+
+    public long getHourSlot()
+    {
+        return hourSlot;
+    }
+
+    /**
+     * The Delivery Date and Time as a Date, e.g. for a new Delivery.
+     * @return A new Date of the Delivery time (Date type).
+     */
+    public Date toDate()
+    {
+        return new Date(epochMillis);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o instanceof DeliveryTime && ((DeliveryTime) o).epochMillis == epochMillis;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(epochMillis);
+    }
+
+    @Override
+    public String toString()
+    {
+        return FORMATTER.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    private static void checkSeparator(String text, int index, char separator) throws ParseException
+    {
+        if (text.charAt(index) != separator)
+        {
+            throw new ParseException("Delivery DateTime format need to be: '" + FORMAT + "'", index);
+        }
+    }
+
+    /**
+     * The number of the decimal digits of the text from beginIndex to endIndex (exclusive).
+     */
+    private static int digits(String text, int beginIndex, int endIndex) throws ParseException
+    {
+        int value = 0;
+        for (int i = beginIndex; i < endIndex; i++)
+        {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                throw new ParseException("Delivery DateTime format need to be: '" + FORMAT + "'", i);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
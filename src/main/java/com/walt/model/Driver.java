@@ -1,21 +1,46 @@
 package com.walt.model;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
 
 @Entity
 public class Driver extends NamedEntity {
 
-    @ManyToOne
+    // Hours in a day, also the end of a shift that lasts until midnight.
+    public static final int HOURS_OF_DAY = 24;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     City city;
 
     double distance;
 
+    // Number of Deliveries of the Driver, kept next to its distance so it is never counted from the Deliveries.
+    long deliveryCount;
+
+    // The daily shift, hours of the day in the default time zone: from shiftStart (inclusive) to shiftEnd (exclusive).
+    // A shift that ends at or before its start ends on the next day (e.g. 22 to 6). By default all day.
+    // Note: The column defaults also apply to the Drivers written by the BulkImporter.
+    @ColumnDefault("0")
+    int shiftStart;
+
+    @ColumnDefault("24")
+    int shiftEnd;
+
+    // Number of Deliveries the Driver can take in the same hour.
+    @ColumnDefault("1")
+    int capacity;
+
     public Driver(){}
 
     public Driver(String name, City city){
         super(name);
         this.city = city;
         this.distance = 0;
+        this.deliveryCount = 0;
+        this.shiftStart = 0;
+        this.shiftEnd = HOURS_OF_DAY;
+        this.capacity = 1;
     }
 
     public City getCity() {
@@ -32,4 +57,47 @@ public class Driver extends NamedEntity {
     {
         this.distance = this.distance + distance;
     }
+
+    public long getDeliveryCount() { return deliveryCount; }
+
+    public void updateDeliveryCount(long deliveries)
+    {
+        this.deliveryCount = this.deliveryCount + deliveries;
+    }
+
+    public int getShiftStart() { return shiftStart; }
+
+    public int getShiftEnd() { return shiftEnd; }
+
+    /**
+     * Set the daily shift of the Driver.
+     * @param shiftStart First hour of the shift, 0 to 23 (int type).
+     * @param shiftEnd Hour the shift ends, 1 to 24, at or before shiftStart for a shift that ends on the next day (int type).
+     * @throws IllegalArgumentException If an hour is out of range, or the shift is empty.
+     */
+    public void setShift(int shiftStart, int shiftEnd)
+    {
+        if (shiftStart < 0 || shiftStart >= HOURS_OF_DAY || shiftEnd < 1 || shiftEnd > HOURS_OF_DAY || shiftStart == shiftEnd)
+        {
+            throw new IllegalArgumentException("Shift must be from an hour 0 to 23, to another hour 1 to 24");
+        }
+        this.shiftStart = shiftStart;
+        this.shiftEnd = shiftEnd;
+    }
+
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Set the number of Deliveries the Driver can take in the same hour.
+     * @param capacity Deliveries in an hour, at least 1 (int type).
+     * @throws IllegalArgumentException If the capacity is less than 1.
+     */
+    public void setCapacity(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be at least 1 Delivery an hour");
+        }
+        this.capacity = capacity;
+    }
 }
@@ -0,0 +1,9 @@
+package com.walt.model;
+
+public interface DriverCity {
+    Long getDriverId();
+    Long getCityId();
+    int getShiftStart();
+    int getShiftEnd();
+    int getCapacity();
+}
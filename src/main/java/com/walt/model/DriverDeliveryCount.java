@@ -0,0 +1,7 @@
+package com.walt.model;
+
+public interface DriverDeliveryCount {
+    Long getDriverId();
+    long getDeliveryCount();
+    long getActualCount();
+}
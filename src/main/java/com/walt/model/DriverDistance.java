@@ -3,4 +3,9 @@ package com.walt.model;
 public interface DriverDistance {
     Driver getDriver();
     Long getTotalDistance();
+
+    // The exact total distance, which the ranking sorts by (the total distance is rounded down).
+    default double getDistance() {
+        return getTotalDistance();
+    }
 }
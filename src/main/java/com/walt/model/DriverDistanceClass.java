@@ -4,11 +4,20 @@ public class DriverDistanceClass implements DriverDistance
 {
     private Driver driver;
     private Long totalDistance;
+    private double distance;
 
     public DriverDistanceClass(Driver driver, Long totalDistance)
     {
         this.driver = driver;
         this.totalDistance = totalDistance;
+        this.distance = totalDistance;
+    }
+
+    public DriverDistanceClass(Driver driver, double distance)
+    {
+        this.driver = driver;
+        this.totalDistance = (long) distance;
+        this.distance = distance;
     }
 
     @Override
@@ -20,7 +29,13 @@ public class DriverDistanceClass implements DriverDistance
     @Override
     public Long getTotalDistance()
     {
-        return this.getTotalDistance();
+        return this.totalDistance;
+    }
+
+    @Override
+    public double getDistance()
+    {
+        return this.distance;
     }
 
 
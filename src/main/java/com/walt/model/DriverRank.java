@@ -0,0 +1,8 @@
+package com.walt.model;
+
+public interface DriverRank {
+    Long getDriverId();
+    String getName();
+    String getCityName();
+    double getDistance();
+}
@@ -0,0 +1,11 @@
+package com.walt.model;
+
+public interface DriverState {
+    Long getDriverId();
+    String getName();
+    Long getCityId();
+    String getCityName();
+    double getDistance();
+    long getDeliveryCount();
+    Long getVersion();
+}
@@ -6,6 +6,9 @@ public class CreateOrder
     String restaurant;
     String deliveryTime;
 
+    // The City of the order (optional), so a sharded deployment can send the order to the shard of its City.
+    String city;
+
     public CreateOrder(String customer, String restaurant, String deliveryTime)
     {
         this.customer = customer;
@@ -42,4 +45,14 @@ public class CreateOrder
     {
         this.deliveryTime = deliveryTime;
     }
+
+    public String getCity()
+    {
+        return city;
+    }
+
+    public void setCity(String city)
+    {
+        this.city = city;
+    }
 }
@@ -0,0 +1,61 @@
+package com.walt.model.modelResponse;
+
+public class CreateOrderResult
+{
+    String customer;
+    String restaurant;
+    String deliveryTime;
+    boolean created;
+    String driver;
+    String error;
+
+    public CreateOrderResult(String customer, String restaurant, String deliveryTime, boolean created, String driver, String error)
+    {
+        this.customer = customer;
+        this.restaurant = restaurant;
+        this.deliveryTime = deliveryTime;
+        this.created = created;
+        this.driver = driver;
+        this.error = error;
+    }
+
+    public static CreateOrderResult created(String customer, String restaurant, String deliveryTime, String driver)
+    {
+        return new CreateOrderResult(customer, restaurant, deliveryTime, true, driver, null);
+    }
+
+    public static CreateOrderResult failed(String customer, String restaurant, String deliveryTime, String error)
+    {
+        return new CreateOrderResult(customer, restaurant, deliveryTime, false, null, error);
+    }
+
+    public String getCustomer()
+    {
+        return customer;
+    }
+
+    public String getRestaurant()
+    {
+        return restaurant;
+    }
+
+    public String getDeliveryTime()
+    {
+        return deliveryTime;
+    }
+
+    public boolean isCreated()
+    {
+        return created;
+    }
+
+    public String getDriver()
+    {
+        return driver;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+}
@@ -0,0 +1,66 @@
+package com.walt.model.modelResponse;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.walt.model.Driver;
+import com.walt.model.DriverDistance;
+
+/**
+ * A row of a Driver rank report: the Driver id and name, the name of its City and its total distance
+ * (rounded down, and the exact distance the report is sorted by, so the reports of the shards can be merged).
+ * Note: Immutable and flat, no Driver entity graph is serialized.
+ */
+public final class DriverDistanceResult
+{
+    private final long driverId;
+    private final String driverName;
+    private final String city;
+    private final long totalDistance;
+    private final double distance;
+
+    @JsonCreator
+    public DriverDistanceResult(@JsonProperty("driverId") long driverId,
+                                @JsonProperty("driverName") String driverName,
+                                @JsonProperty("city") String city,
+                                @JsonProperty("totalDistance") long totalDistance,
+                                @JsonProperty("distance") double distance)
+    {
+        this.driverId = driverId;
+        this.driverName = driverName;
+        this.city = city;
+        this.totalDistance = totalDistance;
+        this.distance = distance;
+    }
+
+    public static DriverDistanceResult of(DriverDistance driverDistance)
+    {
+        Driver driver = driverDistance.getDriver();
+        String city = (driver.getCity() == null) ? null : driver.getCity().getName();
+        return new DriverDistanceResult(driver.getId(), driver.getName(), city, driverDistance.getTotalDistance(), driverDistance.getDistance());
+    }
+
+    public long getDriverId()
+    {
+        return driverId;
+    }
+
+    public String getDriverName()
+    {
+        return driverName;
+    }
+
+    public String getCity()
+    {
+        return city;
+    }
+
+    public long getTotalDistance()
+    {
+        return totalDistance;
+    }
+
+    public double getDistance()
+    {
+        return distance;
+    }
+}
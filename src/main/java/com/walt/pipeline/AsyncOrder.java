@@ -0,0 +1,140 @@
+package com.walt.pipeline;
+
+import com.walt.model.Customer;
+import com.walt.model.Delivery;
+import com.walt.model.Restaurant;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An order of the asynchronous order pipeline, and its result once a worker handled it.
+ * Note: Only the id, status, Driver name and error are serialized to the clients.
+ * A handled order keeps only its Driver id and name (no Delivery, Customer or Restaurant),
+ * as the pipeline retains up to 'walt.orders.async.retained-results' handled orders.
+ */
+public class AsyncOrder
+{
+    public enum Status { PENDING, CREATED, FAILED }
+
+    private final String id;
+    private final Date deliveryTime;
+    private final long submittedNanos;
+    private final CompletableFuture<AsyncOrder> completion = new CompletableFuture<>();
+
+    // Only until the order is handled.
+    private volatile Customer customer;
+    private volatile Restaurant restaurant;
+    private volatile CompletableFuture<Delivery> createdDelivery;
+
+    private volatile Status status = Status.PENDING;
+    private volatile Long driverId;
+    private volatile String driver;
+    private volatile String error;
+
+    AsyncOrder(String id, Customer customer, Restaurant restaurant, Date deliveryTime, CompletableFuture<Delivery> createdDelivery)
+    {
+        this.id = id;
+        this.customer = customer;
+        this.restaurant = restaurant;
+        this.deliveryTime = deliveryTime;
+        this.createdDelivery = createdDelivery;
+        this.submittedNanos = System.nanoTime();
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    public String getDriver()
+    {
+        return driver;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * The id of the Driver of the created Delivery.
+     * @return The Driver id, or null if the order is pending or failed (Long type).
+     */
+    public Long driverId()
+    {
+        return driverId;
+    }
+
+    Customer customer()
+    {
+        return customer;
+    }
+
+    Restaurant restaurant()
+    {
+        return restaurant;
+    }
+
+    Date deliveryTime()
+    {
+        return deliveryTime;
+    }
+
+    long submittedNanos()
+    {
+        return submittedNanos;
+    }
+
+    /**
+     * Future which completes when a worker created the order Delivery or failed to.
+     * @return The completion of the order (CompletableFuture<AsyncOrder> type).
+     */
+    public CompletableFuture<AsyncOrder> completion()
+    {
+        return completion;
+    }
+
+    void created(Delivery delivery)
+    {
+        this.driverId = delivery.getDriver().getId();
+        this.driver = delivery.getDriver().getName();
+        this.status = Status.CREATED;
+        CompletableFuture<Delivery> createdDelivery = handled();
+        if (createdDelivery != null)
+        {
+            createdDelivery.complete(delivery);
+        }
+        completion.complete(this);
+    }
+
+    void failed(String error)
+    {
+        this.error = error;
+        this.status = Status.FAILED;
+        CompletableFuture<Delivery> createdDelivery = handled();
+        if (createdDelivery != null)
+        {
+            createdDelivery.completeExceptionally(new Exception(error));
+        }
+        completion.complete(this);
+    }
+
+    /**
+     * Forget the entities of the handled order.
+     * @return The future of the created Delivery, or null if none was given (CompletableFuture<Delivery> type).
+     */
+    private CompletableFuture<Delivery> handled()
+    {
+        CompletableFuture<Delivery> handedDelivery = createdDelivery;
+        customer = null;
+        restaurant = null;
+        createdDelivery = null;
+        return handedDelivery;
+    }
+}
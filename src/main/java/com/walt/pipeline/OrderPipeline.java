@@ -0,0 +1,201 @@
+package com.walt.pipeline;
+
+import com.walt.WaltService;
+import com.walt.model.Customer;
+import com.walt.model.Delivery;
+import com.walt.model.Restaurant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous order pipeline.
+ * Orders are put on a bounded queue and a pool of assignment workers creates their Deliveries.
+ * Every worker has its own queue and the orders are partitioned by City, so orders of the same City
+ * are handled one after the other by the same worker, and workers never contend on the same City.
+ * When the queue of a City is full the order is rejected right away (backpressure),
+ * instead of holding a request thread while it waits for the database.
+ * Throughput, queue depth and assignment latency are exported to the actuator metrics ('walt.orders.async.*').
+ */
+@Component
+public class OrderPipeline
+{
+    private static final Logger log = LoggerFactory.getLogger(OrderPipeline.class);
+
+    @Autowired
+    WaltService waltService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${walt.orders.async.workers:4}")
+    int workers;
+
+    @Value("${walt.orders.async.queue-capacity:1000}")
+    int queueCapacity;
+
+    @Value("${walt.orders.async.retained-results:100000}")
+    int retainedResults;
+
+    private final List<BlockingQueue<AsyncOrder>> queues = new ArrayList<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+
+    // Order id and the order, the oldest orders are forgotten first.
+    private Map<String, AsyncOrder> map_id_order;
+
+    private Counter submittedCounter;
+    private Counter rejectedCounter;
+    private Counter createdCounter;
+    private Counter failedCounter;
+    private Timer assignmentTimer;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void start()
+    {
+        map_id_order = Collections.synchronizedMap(new LinkedHashMap<String, AsyncOrder>()
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AsyncOrder> eldest)
+            {
+                return size() > retainedResults;
+            }
+        });
+
+        submittedCounter = meterRegistry.counter("walt.orders.async.submitted");
+        rejectedCounter = meterRegistry.counter("walt.orders.async.rejected");
+        createdCounter = meterRegistry.counter("walt.orders.async.completed", "result", "created");
+        failedCounter = meterRegistry.counter("walt.orders.async.completed", "result", "failed");
+        assignmentTimer = Timer.builder("walt.orders.async.latency")
+                .description("Time from order submission until its Delivery is created or failed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        for (int i = 0; i < workers; i++)
+        {
+            BlockingQueue<AsyncOrder> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            Gauge.builder("walt.orders.async.queue.depth", queue, BlockingQueue::size)
+                    .tag("worker", String.valueOf(i))
+                    .register(meterRegistry);
+
+            Thread workerThread = new Thread(() -> work(queue), "order-worker-" + i);
+            workerThread.setDaemon(true);
+            workerThread.start();
+            workerThreads.add(workerThread);
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        running = false;
+        for (Thread workerThread : workerThreads)
+        {
+            workerThread.interrupt();
+        }
+    }
+
+    /**
+     * Put a new order on the queue of its City.
+     * @param customer Customer who order a Delivery (Customer type).
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @return The pending order, or null if the queue of the City is full (AsyncOrder type).
+     */
+    public AsyncOrder submit(Customer customer, Restaurant restaurant, Date deliveryTime)
+    {
+        return submit(customer, restaurant, deliveryTime, null);
+    }
+
+    /**
+     * Put a new order on the queue of its City, and hand its created Delivery to the given future.
+     * Note: The Delivery is not kept by the order, only by the caller of the future.
+     * @param customer Customer who order a Delivery (Customer type).
+     * @param restaurant Restaurant where the order from (Restaurant type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param createdDelivery Completed with the created Delivery, or with the error of the order, or null (CompletableFuture<Delivery> type).
+     * @return The pending order, or null if the queue of the City is full (AsyncOrder type).
+     */
+    public AsyncOrder submit(Customer customer, Restaurant restaurant, Date deliveryTime, CompletableFuture<Delivery> createdDelivery)
+    {
+        AsyncOrder order = new AsyncOrder(UUID.randomUUID().toString(), customer, restaurant, deliveryTime, createdDelivery);
+
+        // Partition by City: orders of the same City always go to the same worker.
+        int partition = Math.floorMod(customer.getCity().getId().hashCode(), queues.size());
+        if ( ! (queues.get(partition).offer(order)))
+        {
+            rejectedCounter.increment();
+            return null;
+        }
+
+        map_id_order.put(order.getId(), order);
+        submittedCounter.increment();
+        return order;
+    }
+
+    /**
+     * Find an order by its id.
+     * @param id Id of the order (String type).
+     * @return The order, or null if unknown or already forgotten (AsyncOrder type).
+     */
+    public AsyncOrder find(String id)
+    {
+        return map_id_order.get(id);
+    }
+
+    /**
+     * The worker loop: create the Delivery of each order of the queue.
+     * @param queue The queue of the worker (BlockingQueue<AsyncOrder> type).
+     */
+    private void work(BlockingQueue<AsyncOrder> queue)
+    {
+        while (running)
+        {
+            AsyncOrder order;
+            try
+            {
+                order = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try
+            {
+                order.created(waltService.createOrderAndAssignDriver(order.customer(), order.restaurant(), order.deliveryTime()));
+                createdCounter.increment();
+            }
+            catch (Exception e)
+            {
+                order.failed(e.getMessage());
+                failedCounter.increment();
+                log.debug("Async order {} failed", order.getId(), e);
+            }
+            assignmentTimer.record(System.nanoTime() - order.submittedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.walt.ranking;
+
+import com.walt.model.City;
+import com.walt.model.DriverDistance;
+import com.walt.model.DriverDistanceClass;
+import org.hibernate.Hibernate;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking shard of the Drivers of a single City.
+ * Note: Every City has its own lock, so updating the ranking of one City never blocks another City.
+ */
+class CityRanking
+{
+    // The ranking entries of the City, order by total distance in descending order.
+    private final ConcurrentSkipListSet<RankEntry> rankedEntries = new ConcurrentSkipListSet<>(RankEntry.RANK_ORDER);
+
+    // Driver id and its current ranking entry.
+    private final Map<Long, RankEntry> map_driverId_entry = new HashMap<>();
+
+    // Writers replace an entry (remove and add) under the write lock, so readers never see a Driver twice or missing.
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Detached copy of the City, shared by the snapshots of all its Drivers.
+    private volatile City city;
+
+    /**
+     * The detached copy of the City, refreshed from the given City of a Driver.
+     * Note: A lazy City which was not loaded is not loaded for the copy, the copy of an earlier Driver is kept.
+     * @param driverCity The City of a Driver, maybe a lazy proxy (City type).
+     * @return The copy of the City (City type).
+     */
+    City citySnapshot(City driverCity)
+    {
+        if (city != null && ! (Hibernate.isInitialized(driverCity)))
+        {
+            return city;
+        }
+        return citySnapshot(driverCity.getId(), driverCity.getName());
+    }
+
+    /**
+     * The detached copy of the City, refreshed from the given City columns.
+     * @param cityId Id of the City (Long type).
+     * @param cityName Name of the City (String type).
+     * @return The copy of the City (City type).
+     */
+    City citySnapshot(Long cityId, String cityName)
+    {
+        City snapshot = city;
+        if (snapshot == null || ! (Objects.equals(snapshot.getName(), cityName)))
+        {
+            snapshot = new City(cityName);
+            snapshot.setId(cityId);
+            city = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Add the given entry to the City ranking, replacing the older entry of the same Driver.
+     * Note: An entry older than the ranked Driver version is ignored.
+     * @param newEntry The new entry of the Driver (RankEntry type).
+     */
+    void update(RankEntry newEntry)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            RankEntry oldEntry = map_driverId_entry.get(newEntry.driverId);
+            if (oldEntry != null)
+            {
+                if (oldEntry.version > newEntry.version)
+                {
+                    return;
+                }
+                rankedEntries.remove(oldEntry);
+            }
+            map_driverId_entry.put(newEntry.driverId, newEntry);
+            rankedEntries.add(newEntry);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the given Driver from the City ranking (e.g. the Driver moved to another City).
+     * @param driverId Id of the Driver (long type).
+     */
+    void remove(long driverId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            RankEntry oldEntry = map_driverId_entry.remove(driverId);
+            if (oldEntry != null)
+            {
+                rankedEntries.remove(oldEntry);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a page of the City rank report to the given List.
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers to add (int type).
+     * @param list_driverDistance The List of the rank report (List<DriverDistance> type).
+     */
+    void report(int offset, int limit, List<DriverDistance> list_driverDistance)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Iterator<RankEntry> iterator = rankedEntries.iterator();
+            for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++)
+            {
+                iterator.next();
+            }
+            for (int added = 0; added < limit && iterator.hasNext(); added++)
+            {
+                RankEntry entry = iterator.next();
+                list_driverDistance.add(new DriverDistanceClass(entry.driver, entry.distance));
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iterator over the City ranking, order by total distance in descending order.
+     * Note: The caller must hold the read lock while iterating.
+     * @return Iterator over the ranking entries (Iterator<RankEntry> type).
+     */
+    Iterator<RankEntry> iterator()
+    {
+        return rankedEntries.iterator();
+    }
+}
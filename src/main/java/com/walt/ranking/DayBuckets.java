@@ -0,0 +1,101 @@
+package com.walt.ranking;
+
+import java.util.Arrays;
+
+/**
+ * The distance a single Driver drove in each day (days since epoch), pre-aggregated from its Deliveries.
+ * The buckets are a dense array from the first to the last day of the Driver, next to their cumulative sums,
+ * so the distance of any range of days is two lookups, whatever the number of days or Deliveries.
+ * Note: All the methods are synchronized on the buckets of the Driver.
+ */
+final class DayBuckets
+{
+    // Day of distances[0], and the distance of every day from it on.
+    private long firstDay;
+    private double[] distances;
+
+    // Cumulative distance of every day: cumulative[i] is the distance from firstDay to firstDay + i, inclusive.
+    // Note: Valid below dirtyFrom only. A new Delivery marks its day, and the days from it on are summed again
+    // on the next read: O(1) for the Deliveries of the last days, a single pass after the history is loaded.
+    private double[] cumulative;
+    private int dirtyFrom;
+
+    /**
+     * Add the distance of a Delivery to the bucket of its day.
+     * @param day Day of the Delivery (long type).
+     * @param distance Distance of the Delivery (double type).
+     */
+    synchronized void add(long day, double distance)
+    {
+        if (distances == null)
+        {
+            firstDay = day;
+            distances = new double[1];
+            cumulative = new double[1];
+        }
+        else if (day < firstDay)
+        {
+            // Grow towards the past, the existing days move to the end of the new array.
+            int shift = (int) (firstDay - day);
+            double[] grownDistances = new double[distances.length + shift];
+            System.arraycopy(distances, 0, grownDistances, shift, distances.length);
+            distances = grownDistances;
+            cumulative = new double[grownDistances.length];
+            dirtyFrom = 0;
+            firstDay = day;
+        }
+        else if (day - firstDay >= distances.length)
+        {
+            // Grow towards the future with some spare days, Deliveries usually come day after day.
+            int length = (int) (day - firstDay) + 1;
+            distances = Arrays.copyOf(distances, Math.max(length, distances.length + distances.length / 2));
+            cumulative = Arrays.copyOf(cumulative, distances.length);
+        }
+        int index = (int) (day - firstDay);
+        distances[index] += distance;
+        dirtyFrom = Math.min(dirtyFrom, index);
+    }
+
+    /**
+     * The distance of the given range of days.
+     * @param fromDay First day of the range, inclusive (long type).
+     * @param toDay Last day of the range, inclusive (long type).
+     * @return Total distance of the range (double type).
+     */
+    synchronized double sum(long fromDay, long toDay)
+    {
+        if (distances == null)
+        {
+            return 0;
+        }
+        long from = Math.max(fromDay, firstDay);
+        long to = Math.min(toDay, firstDay + distances.length - 1);
+        if (from > to)
+        {
+            return 0;
+        }
+
+        int toIndex = (int) (to - firstDay);
+        int fromIndex = (int) (from - firstDay);
+        refresh(toIndex);
+        if (fromIndex == 0)
+        {
+            return cumulative[toIndex];
+        }
+        // Not below 0 by a rounding error of the two sums.
+        return Math.max(0, cumulative[toIndex] - cumulative[fromIndex - 1]);
+    }
+
+    /**
+     * Sum the cumulative distances again, from the first day of a new Delivery to the given day.
+     * @param toIndex Index of the last day that must be valid (int type).
+     */
+    private void refresh(int toIndex)
+    {
+        for (int i = dirtyFrom; i <= toIndex; i++)
+        {
+            cumulative[i] = ((i == 0) ? 0 : cumulative[i - 1]) + distances[i];
+        }
+        dirtyFrom = Math.max(dirtyFrom, toIndex + 1);
+    }
+}
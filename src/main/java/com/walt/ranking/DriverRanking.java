@@ -0,0 +1,373 @@
+package com.walt.ranking;
+
+import com.walt.model.City;
+import com.walt.model.Driver;
+import com.walt.model.DriverDistance;
+import com.walt.model.DriverDistanceClass;
+import com.walt.model.DriverState;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory materialized ranking of all the Drivers by their total distance, sharded by City.
+ * Each City keeps its Drivers in a skip list sorted by (total distance descending, Driver id),
+ * so a City report of k Drivers is an O(k) walk that does not depend on the other Cities,
+ * and updating a Driver distance is O(log n) under the lock of its City only.
+ * The report of all the Drivers is a k-way merge of the City shards.
+ * Every Driver also keeps the distance it drove in each day (DayBuckets), for the reports of a range of days.
+ * The ranking is rebuilt from the repositories at startup (DriverRankingLoader)
+ * and updated whenever a Driver or a Delivery is saved (DriverRankingEventListener).
+ */
+@Component
+public class DriverRanking
+{
+    // Shard key of the Drivers without a City.
+    private static final Long NO_CITY = Long.MIN_VALUE;
+
+    // City id and the ranking shard of its Drivers.
+    private final ConcurrentMap<Long, CityRanking> map_cityId_ranking = new ConcurrentHashMap<>();
+
+    // Driver id and its ranked entry, in the ranking shard of its City.
+    private final ConcurrentMap<Long, RankEntry> map_driverId_entry = new ConcurrentHashMap<>();
+
+    // Driver id and the distance it drove in each day.
+    private final ConcurrentMap<Long, DayBuckets> map_driverId_dayBuckets = new ConcurrentHashMap<>();
+
+    // Order of a range report: distance in the range in descending order, then Driver id.
+    private static final Comparator<RangeEntry> RANGE_ORDER = Comparator
+            .comparingDouble((RangeEntry rangeEntry) -> rangeEntry.distance).reversed()
+            .thenComparingLong(rangeEntry -> rangeEntry.entry.driverId);
+
+    // Days of the distance buckets are in the server time zone.
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Increased by every change of the ranking, so an unchanged ranking is known without reading it.
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Add the given Driver to the ranking of its City, or move it to its new place if its distance changed.
+     * Note: Updates of the same Driver may arrive out of order (commits of other threads),
+     * an update older than the ranked Driver version is ignored.
+     * @param driver Given Driver (Driver type).
+     */
+    public void update(Driver driver)
+    {
+        // The id of a lazy City is known without loading it.
+        Long cityId = (driver.getCity() == null) ? NO_CITY : driver.getCity().getId();
+        CityRanking cityRanking = cityRanking(cityId);
+        City city = (driver.getCity() == null) ? null : cityRanking.citySnapshot(driver.getCity());
+        update(RankEntry.of(driver, city), cityId, cityRanking);
+    }
+
+    /**
+     * Add the given Driver to the ranking of its City, or move it to its new place if its distance changed.
+     * Note: Built from the Driver columns only, no Driver or City entity is needed.
+     * @param driverState The Driver columns, read by a projection (DriverState type).
+     */
+    public void update(DriverState driverState)
+    {
+        Long cityId = (driverState.getCityId() == null) ? NO_CITY : driverState.getCityId();
+        CityRanking cityRanking = cityRanking(cityId);
+        City city = (driverState.getCityId() == null) ? null : cityRanking.citySnapshot(driverState.getCityId(), driverState.getCityName());
+        update(RankEntry.of(driverState, city), cityId, cityRanking);
+    }
+
+    /**
+     * Rank the new entry of a Driver, unless the ranked entry of the Driver is newer.
+     * Note: The versions are compared first, under the lock of the Driver entry, so an older update
+     * (e.g. of the City the Driver just left) never moves the Driver back to its old City.
+     * @param newEntry The new entry of the Driver (RankEntry type).
+     * @param cityId Shard key of the City of the new entry (Long type).
+     * @param cityRanking Ranking shard of that City (CityRanking type).
+     */
+    private void update(RankEntry newEntry, Long cityId, CityRanking cityRanking)
+    {
+        map_driverId_entry.compute(newEntry.driverId, (driverId, oldEntry) ->
+        {
+            if (oldEntry != null && oldEntry.version > newEntry.version)
+            {
+                return oldEntry;
+            }
+
+            // Case when the Driver moved to another City.
+            Long oldCityId = (oldEntry == null) ? null : shardOf(oldEntry);
+            if (oldCityId != null && ! (oldCityId.equals(cityId)))
+            {
+                cityRanking(oldCityId).remove(driverId);
+            }
+
+            cityRanking.update(newEntry);
+            version.incrementAndGet();
+            return newEntry;
+        });
+    }
+
+    /**
+     * Add the distance of a new Delivery to the day bucket of its Driver.
+     * @param driverId Id of the Driver of the Delivery (Long type).
+     * @param deliveryTime Date And Time of the Delivery (Date type).
+     * @param distance Distance of the Delivery (double type).
+     */
+    public void addDelivery(Long driverId, Date deliveryTime, double distance)
+    {
+        map_driverId_dayBuckets.computeIfAbsent(driverId, id -> new DayBuckets()).add(dayOf(deliveryTime), distance);
+        version.incrementAndGet();
+    }
+
+    /**
+     * The version of the ranking: the reports can only change when it changes.
+     * @return The number of changes of the ranking since startup (long type).
+     */
+    public long getVersion()
+    {
+        return version.get();
+    }
+
+    /**
+     * Create a rank report of all the Drivers (or of the Drivers of the given City) by the distance they drove
+     * in the given range of days, order by that distance in descending order.
+     * Note: The distance of every Driver is two lookups of the cumulative sums of its day buckets, no Delivery is read,
+     * and only the top offset + limit Drivers are kept (a bounded heap), the Drivers in scope are not sorted.
+     * @param cityId Id of the City, or null for all the Drivers (Long type).
+     * @param from First day of the range, inclusive, or null for no first day (Date type).
+     * @param to Last day of the range, inclusive, or null for no last day (Date type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report (List<DriverDistance> type).
+     */
+    public List<DriverDistance> reportInRange(Long cityId, Date from, Date to, int offset, int limit)
+    {
+        long fromDay = (from == null) ? Long.MIN_VALUE : dayOf(from);
+        long toDay = (to == null) ? Long.MAX_VALUE : dayOf(to);
+
+        List<CityRanking> cityRankings = new ArrayList<>();
+        if (cityId == null)
+        {
+            cityRankings.addAll(map_cityId_ranking.values());
+        }
+        else if (map_cityId_ranking.containsKey(cityId))
+        {
+            cityRankings.add(map_cityId_ranking.get(cityId));
+        }
+
+        int top = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        if (limit <= 0 || top <= 0)
+        {
+            return Collections.emptyList();
+        }
+
+        // The top Drivers so far, the last of them at the head, so a Driver that is not in the top is dropped in O(1).
+        PriorityQueue<RangeEntry> topEntries = new PriorityQueue<>(Math.min(top, 1024) + 1, RANGE_ORDER.reversed());
+        for (CityRanking cityRanking : cityRankings)
+        {
+            cityRanking.lock.readLock().lock();
+            try
+            {
+                Iterator<RankEntry> iterator = cityRanking.iterator();
+                while (iterator.hasNext())
+                {
+                    RankEntry entry = iterator.next();
+                    DayBuckets dayBuckets = map_driverId_dayBuckets.get(entry.driverId);
+                    double distance = (dayBuckets == null) ? 0 : dayBuckets.sum(fromDay, toDay);
+                    RangeEntry rangeEntry = new RangeEntry(entry, distance);
+                    if (topEntries.size() < top)
+                    {
+                        topEntries.add(rangeEntry);
+                    }
+                    else if (RANGE_ORDER.compare(rangeEntry, topEntries.peek()) < 0)
+                    {
+                        topEntries.poll();
+                        topEntries.add(rangeEntry);
+                    }
+                }
+            }
+            finally
+            {
+                cityRanking.lock.readLock().unlock();
+            }
+        }
+
+        if (offset >= topEntries.size())
+        {
+            return Collections.emptyList();
+        }
+        // The heap gives the top Drivers from the last one, the page is filled from its end.
+        DriverDistance[] page = new DriverDistance[Math.min(limit, topEntries.size() - offset)];
+        while (topEntries.size() > offset)
+        {
+            RangeEntry rangeEntry = topEntries.poll();
+            int index = topEntries.size() - offset;
+            if (index < page.length)
+            {
+                page[index] = new DriverDistanceClass(rangeEntry.entry.driver, rangeEntry.distance);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(page));
+    }
+
+    /**
+     * Create a rank report of all the Drivers, order by total distance in descending order.
+     * Note: The City shards are merged with a priority queue of their heads, O(k log c) for k Drivers of c Cities.
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report (List<DriverDistance> type).
+     */
+    public List<DriverDistance> report(int offset, int limit)
+    {
+        List<DriverDistance> list_driverDistance = new ArrayList<>(Math.min(limit, 1024));
+        List<CityRanking> cityRankings = new ArrayList<>(map_cityId_ranking.values());
+
+        // Read lock every City shard, so every City is merged from a consistent state.
+        for (CityRanking cityRanking : cityRankings)
+        {
+            cityRanking.lock.readLock().lock();
+        }
+        try
+        {
+            PriorityQueue<ShardHead> heads = new PriorityQueue<>(Math.max(1, cityRankings.size()));
+            for (CityRanking cityRanking : cityRankings)
+            {
+                ShardHead head = new ShardHead(cityRanking.iterator());
+                if (head.advance())
+                {
+                    heads.add(head);
+                }
+            }
+
+            int skipped = 0;
+            while ( ! (heads.isEmpty()) && list_driverDistance.size() < limit)
+            {
+                ShardHead head = heads.poll();
+                RankEntry entry = head.entry;
+                if (skipped < offset)
+                {
+                    skipped++;
+                }
+                else
+                {
+                    list_driverDistance.add(new DriverDistanceClass(entry.driver, entry.distance));
+                }
+                if (head.advance())
+                {
+                    heads.add(head);
+                }
+            }
+        }
+        finally
+        {
+            for (CityRanking cityRanking : cityRankings)
+            {
+                cityRanking.lock.readLock().unlock();
+            }
+        }
+
+        return list_driverDistance;
+    }
+
+    /**
+     * Create a rank report of the Drivers of the given City, order by total distance in descending order.
+     * Note: Only the shard of the City is read, whatever the number of the other Cities.
+     * @param cityId Id of the City (Long type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report (List<DriverDistance> type).
+     */
+    public List<DriverDistance> reportByCity(Long cityId, int offset, int limit)
+    {
+        List<DriverDistance> list_driverDistance = new ArrayList<>(Math.min(limit, 1024));
+
+        CityRanking cityRanking = map_cityId_ranking.get(cityId);
+        if (cityRanking != null)
+        {
+            cityRanking.report(offset, limit, list_driverDistance);
+        }
+        return list_driverDistance;
+    }
+
+    /**
+     * Remove all the Drivers (and their day buckets) from the ranking.
+     */
+    public void clear()
+    {
+        map_cityId_ranking.clear();
+        map_driverId_entry.clear();
+        map_driverId_dayBuckets.clear();
+        version.incrementAndGet();
+    }
+
+    private CityRanking cityRanking(Long cityId)
+    {
+        return map_cityId_ranking.computeIfAbsent(cityId, id -> new CityRanking());
+    }
+
+    private static Long shardOf(RankEntry entry)
+    {
+        return (entry.cityId == null) ? NO_CITY : entry.cityId;
+    }
+
+    private long dayOf(Date date)
+    {
+        return date.toInstant().atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * A ranked Driver and its distance in the range of days of a report.
+     */
+    private static final class RangeEntry
+    {
+        private final RankEntry entry;
+        private final double distance;
+
+        private RangeEntry(RankEntry entry, double distance)
+        {
+            this.entry = entry;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * The current head entry of a City shard during the k-way merge.
+     */
+    private static final class ShardHead implements Comparable<ShardHead>
+    {
+        private final Iterator<RankEntry> iterator;
+        private RankEntry entry;
+
+        ShardHead(Iterator<RankEntry> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        /**
+         * Move to the next entry of the shard.
+         * @return False if the shard has no more entries (boolean type).
+         */
+        boolean advance()
+        {
+            if ( ! (iterator.hasNext()))
+            {
+                return false;
+            }
+            entry = iterator.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(ShardHead other)
+        {
+            return RankEntry.RANK_ORDER.compare(entry, other.entry);
+        }
+    }
+}
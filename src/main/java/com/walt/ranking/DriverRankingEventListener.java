@@ -0,0 +1,94 @@
+package com.walt.ranking;
+
+import com.walt.model.Delivery;
+import com.walt.model.Driver;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hibernate listener which keeps the DriverRanking up to date with every saved Driver
+ * (a new Driver, or a Driver which distance was updated by Driver.updateDistance),
+ * and with the distance of every new Delivery (the day buckets of its Driver).
+ * Note: The listener is called only after the transaction commits, so a rolled back distance is never ranked.
+ */
+@Component
+public class DriverRankingEventListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener
+{
+    @Resource
+    EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    DriverRanking driverRanking;
+
+    /**
+     * Register the listener on the Hibernate post commit insert and update events.
+     */
+    @PostConstruct
+    public void register()
+    {
+        SessionFactoryImpl sessionFactory = entityManagerFactory.unwrap(SessionFactoryImpl.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event)
+    {
+        if (event.getEntity() instanceof Driver)
+        {
+            driverRanking.update((Driver) event.getEntity());
+        }
+        else if (event.getEntity() instanceof Delivery)
+        {
+            Delivery delivery = (Delivery) event.getEntity();
+            if (delivery.getDriver() != null && delivery.getDeliveryTime() != null)
+            {
+                driverRanking.addDelivery(delivery.getDriver().getId(), delivery.getDeliveryTime(), delivery.getDistance());
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event)
+    {
+        if (event.getEntity() instanceof Driver)
+        {
+            driverRanking.update((Driver) event.getEntity());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event)
+    {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event)
+    {
+    }
+
+    /**
+     * Only Drivers and Deliveries are ranked.
+     * Note: Hibernate may still call the listener for other entities, when another listener requires them.
+     * @param persister The persister of the saved entity (EntityPersister type).
+     * @return True if the entity is a Driver or a Delivery (boolean type).
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister)
+    {
+        Class<?> entityClass = persister.getMappedClass();
+        return Driver.class.isAssignableFrom(entityClass) || Delivery.class.isAssignableFrom(entityClass);
+    }
+}
@@ -0,0 +1,94 @@
+package com.walt.ranking;
+
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.model.DriverDeliveryTime;
+import com.walt.model.DriverState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Rebuild the DriverRanking (and the day buckets of the Drivers) from the repositories when the application starts.
+ */
+@Component
+public class DriverRankingLoader implements SmartInitializingSingleton
+{
+    private static final Logger log = LoggerFactory.getLogger(DriverRankingLoader.class);
+
+    @Resource
+    DriverRanking driverRanking;
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    DeliveryRepository deliveryRepository;
+
+    @Resource
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    public void init()
+    {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Rebuild once all the beans are created (the listeners are registered), before the web server starts accepting requests,
+     * so no order sees a partly loaded ranking, and no Delivery saved meanwhile is added twice.
+     */
+    @Override
+    public void afterSingletonsInstantiated()
+    {
+        rebuild();
+    }
+
+    /**
+     * Rebuild the ranking from all the Drivers and Deliveries in the system.
+     * Note: The Deliveries are streamed from a database cursor, so the rebuild memory does not grow with their number.
+     * The ranking is cleared first, so a later call must not run while orders are served (e.g. only in a benchmark setup).
+     */
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        driverRanking.clear();
+
+        int totalDrivers = 0;
+        for (DriverState driverState : driverRepository.findAllDriverStates())
+        {
+            driverRanking.update(driverState);
+            totalDrivers++;
+        }
+
+        long totalDeliveries = readOnlyTransactionTemplate.execute(status ->
+        {
+            try (Stream<DriverDeliveryTime> driverDeliveryTimes = deliveryRepository.streamAllDriverDeliveryTimes())
+            {
+                long count = 0;
+                Iterator<DriverDeliveryTime> iterator = driverDeliveryTimes.iterator();
+                while (iterator.hasNext())
+                {
+                    DriverDeliveryTime driverDeliveryTime = iterator.next();
+                    driverRanking.addDelivery(driverDeliveryTime.getDriverId(), driverDeliveryTime.getDeliveryTime(), driverDeliveryTime.getDistance());
+                    count++;
+                }
+                return count;
+            }
+        });
+
+        log.info("Driver ranking rebuilt with {} drivers and {} deliveries in {} ms",
+                totalDrivers, totalDeliveries, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,69 @@
+package com.walt.ranking;
+
+import com.walt.model.City;
+import com.walt.model.Driver;
+import com.walt.model.DriverState;
+
+import java.util.Comparator;
+
+/**
+ * Immutable entry of the Driver ranking: a snapshot of a Driver and its total distance.
+ * Note: The snapshot is a detached copy, so reading the ranking never touches the database.
+ * Its City is the copy shared by all the Drivers of the City (CityRanking.citySnapshot).
+ */
+final class RankEntry
+{
+    // Order by total distance in descending order, and by Driver id for Drivers with the same distance.
+    static final Comparator<RankEntry> RANK_ORDER = Comparator
+            .comparingDouble((RankEntry entry) -> entry.distance).reversed()
+            .thenComparingLong(entry -> entry.driverId);
+
+    final long driverId;
+    final Long cityId;
+    final double distance;
+    final long version;
+    final Driver driver;
+
+    private RankEntry(long driverId, Long cityId, double distance, long version, Driver driver)
+    {
+        this.driverId = driverId;
+        this.cityId = cityId;
+        this.distance = distance;
+        this.version = version;
+        this.driver = driver;
+    }
+
+    /**
+     * Create a ranking entry from the current state of the given Driver.
+     * @param driver Given Driver (Driver type).
+     * @param city Detached copy of the Driver City, or null (City type).
+     * @return The ranking entry of the Driver (RankEntry type).
+     */
+    static RankEntry of(Driver driver, City city)
+    {
+        return of(driver.getId(), driver.getName(), city, driver.getDistance(), driver.getDeliveryCount(), driver.getVersion());
+    }
+
+    /**
+     * Create a ranking entry from the given columns of a Driver.
+     * @param driverState The Driver columns, read by a projection (DriverState type).
+     * @param city Detached copy of the Driver City, or null (City type).
+     * @return The ranking entry of the Driver (RankEntry type).
+     */
+    static RankEntry of(DriverState driverState, City city)
+    {
+        return of(driverState.getDriverId(), driverState.getName(), city, driverState.getDistance(),
+                driverState.getDeliveryCount(), driverState.getVersion());
+    }
+
+    private static RankEntry of(Long driverId, String name, City city, double distance, long deliveryCount, Long version)
+    {
+        Driver snapshot = new Driver(name, city);
+        snapshot.setId(driverId);
+        snapshot.updateDistance(distance);
+        snapshot.updateDeliveryCount(deliveryCount);
+
+        Long cityId = (city == null) ? null : city.getId();
+        return new RankEntry(driverId, cityId, distance, (version == null) ? 0 : version, snapshot);
+    }
+}
@@ -0,0 +1,198 @@
+package com.walt.reconcile;
+
+import com.walt.dao.DeliveryRepository;
+import com.walt.dao.DriverRepository;
+import com.walt.index.DriverAvailabilityIndexLoader;
+import com.walt.model.DriverDeliveryCount;
+import com.walt.model.DriverState;
+import com.walt.ranking.DriverRanking;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconcile the delivery count of every Driver (kept next to its distance) with the Deliveries in the database.
+ * The Drivers are split into ranges of ids ('walt.reconcile.chunk-size'), counted in parallel ('walt.reconcile.threads'),
+ * one grouped query per range, and every drift is reported (logged, and exported as 'walt.deliveries.count.drifted').
+ * With fix, the count of a drifted Driver is set from its Deliveries in the same statement that counts them,
+ * and the Driver is refreshed in the DriverRanking, the DriverAvailabilityIndex and the DriverAssignmentStrategy.
+ * Note: Runs on a schedule ('walt.reconcile.cron', disabled by default), or on demand.
+ * A drift means a Delivery was saved or deleted without its Driver, e.g. by hand in the database.
+ */
+@Component
+public class DeliveryCountReconciler
+{
+    private static final Logger log = LoggerFactory.getLogger(DeliveryCountReconciler.class);
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    DeliveryRepository deliveryRepository;
+
+    @Resource
+    DriverRanking driverRanking;
+
+    @Resource
+    DriverAvailabilityIndexLoader driverAvailabilityIndexLoader;
+
+    @Resource
+    PlatformTransactionManager transactionManager;
+
+    @Resource
+    MeterRegistry meterRegistry;
+
+    @Value("${walt.reconcile.chunk-size:10000}")
+    int chunkSize;
+
+    @Value("${walt.reconcile.threads:4}")
+    int threads;
+
+    @Value("${walt.reconcile.fix:false}")
+    boolean scheduledFix;
+
+    TransactionTemplate transactionTemplate;
+
+    TransactionTemplate readOnlyTransactionTemplate;
+
+    // Drivers drifted in the last reconciliation.
+    private final AtomicLong lastDrifted = new AtomicLong();
+
+    @PostConstruct
+    public void init()
+    {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+
+        meterRegistry.gauge("walt.deliveries.count.drifted", lastDrifted);
+    }
+
+    @Scheduled(cron = "${walt.reconcile.cron:-}")
+    public void scheduledReconcile()
+    {
+        reconcile(scheduledFix);
+    }
+
+    /**
+     * Compare the delivery count of every Driver with the number of its Deliveries.
+     * @param fix Set the delivery count of every drifted Driver to the number of its Deliveries (boolean type).
+     * @return The report of the reconciliation (DeliveryCountReport type).
+     */
+    public DeliveryCountReport reconcile(boolean fix)
+    {
+        long start = System.currentTimeMillis();
+        DeliveryCountReport report = new DeliveryCountReport(fix);
+
+        Long minId = driverRepository.findMinDriverId();
+        Long maxId = driverRepository.findMaxDriverId();
+        if (minId != null)
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable ->
+            {
+                Thread thread = new Thread(runnable, "reconcile-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try
+            {
+                List<Future<?>> futures = new ArrayList<>();
+                for (long fromId = minId; fromId <= maxId; fromId += chunkSize)
+                {
+                    long chunkFromId = fromId;
+                    long chunkToId = Math.min(fromId + chunkSize, maxId + 1);
+                    futures.add(executor.submit(() -> reconcileChunk(chunkFromId, chunkToId, report)));
+                }
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Delivery count reconciliation interrupted", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("Delivery count reconciliation failed", e.getCause());
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        report.finished(System.currentTimeMillis() - start);
+        lastDrifted.set(report.getDrifted());
+        if (report.getDrifted() > 0)
+        {
+            log.warn("Delivery counts reconciled: {}, {}", report, report.getDrifts());
+        }
+        else
+        {
+            log.info("Delivery counts reconciled: {}", report);
+        }
+        return report;
+    }
+
+    /**
+     * Reconcile the Drivers of the given range of ids.
+     * @param fromId First Driver id, inclusive (long type).
+     * @param toId Last Driver id, exclusive (long type).
+     * @param report The report the drifts are added to (DeliveryCountReport type).
+     */
+    private void reconcileChunk(long fromId, long toId, DeliveryCountReport report)
+    {
+        List<DriverDeliveryCount> driverDeliveryCounts = readOnlyTransactionTemplate.execute(status ->
+                deliveryRepository.countDeliveriesOfDrivers(fromId, toId));
+        report.checked(driverDeliveryCounts.size());
+
+        List<Long> driftedDriverIds = new ArrayList<>();
+        for (DriverDeliveryCount driverDeliveryCount : driverDeliveryCounts)
+        {
+            if (driverDeliveryCount.getDeliveryCount() != driverDeliveryCount.getActualCount())
+            {
+                report.drifted(driverDeliveryCount.getDriverId(), driverDeliveryCount.getDeliveryCount(), driverDeliveryCount.getActualCount());
+                driftedDriverIds.add(driverDeliveryCount.getDriverId());
+            }
+        }
+
+        if (report.isFix() && ! (driftedDriverIds.isEmpty()))
+        {
+            transactionTemplate.execute(status ->
+            {
+                for (Long driverId : driftedDriverIds)
+                {
+                    driverRepository.recountDeliveries(driverId);
+                }
+                return null;
+            });
+
+            // The update did not go through Hibernate, the ranking keeps a snapshot of every Driver.
+            for (DriverState driverState : driverRepository.findDriverStates(driftedDriverIds))
+            {
+                driverRanking.update(driverState);
+            }
+
+            // Nor did the Deliveries of the drift, the index and the assignment strategy count them again.
+            driverAvailabilityIndexLoader.reload(driftedDriverIds);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.walt.reconcile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The result of reconciling the Driver delivery counts: the number of Drivers checked and drifted, and the first drifts.
+ */
+public class DeliveryCountReport
+{
+    // Drifts kept per report, the rest are only counted.
+    private static final int MAX_DRIFTS = 100;
+
+    private final boolean fix;
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong drifted = new AtomicLong();
+    private final List<Drift> drifts = new ArrayList<>();
+    private long millis;
+
+    DeliveryCountReport(boolean fix)
+    {
+        this.fix = fix;
+    }
+
+    /**
+     * Were the drifted delivery counts set to the counted Deliveries.
+     */
+    public boolean isFix()
+    {
+        return fix;
+    }
+
+    public long getChecked()
+    {
+        return checked.get();
+    }
+
+    public long getDrifted()
+    {
+        return drifted.get();
+    }
+
+    public List<Drift> getDrifts()
+    {
+        synchronized (drifts)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(drifts));
+        }
+    }
+
+    public long getMillis()
+    {
+        return millis;
+    }
+
+    void checked(long drivers)
+    {
+        checked.addAndGet(drivers);
+    }
+
+    void drifted(Long driverId, long deliveryCount, long actualCount)
+    {
+        drifted.incrementAndGet();
+        synchronized (drifts)
+        {
+            if (drifts.size() < MAX_DRIFTS)
+            {
+                drifts.add(new Drift(driverId, deliveryCount, actualCount));
+            }
+        }
+    }
+
+    void finished(long millis)
+    {
+        this.millis = millis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return checked + " drivers checked, " + drifted + " drifted" + (fix ? " and fixed" : "") + " in " + millis + " ms";
+    }
+
+    /**
+     * A Driver which stored delivery count is not the number of its Deliveries.
+     */
+    public static class Drift
+    {
+        private final Long driverId;
+        private final long deliveryCount;
+        private final long actualCount;
+
+        Drift(Long driverId, long deliveryCount, long actualCount)
+        {
+            this.driverId = driverId;
+            this.deliveryCount = deliveryCount;
+            this.actualCount = actualCount;
+        }
+
+        public Long getDriverId()
+        {
+            return driverId;
+        }
+
+        public long getDeliveryCount()
+        {
+            return deliveryCount;
+        }
+
+        public long getActualCount()
+        {
+            return actualCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "driver " + driverId + ": " + deliveryCount + " stored, " + actualCount + " counted";
+        }
+    }
+}
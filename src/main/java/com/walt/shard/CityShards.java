@@ -0,0 +1,107 @@
+package com.walt.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The City shards of a sharded deployment.
+ * Every shard is an instance of the application with its own database (e.g. its own embedded H2),
+ * and owns the Cities whose name hashes to it: their Drivers, Customers, Restaurants and Deliveries live only there.
+ * Orders never cross Cities, so an order is handled by the shard of its City alone,
+ * and only the reports over all the Cities need the other shards (see ShardedRankReport).
+ * The placement is enforced where Cities are written or read: a request of a City of another shard is redirected
+ * to that shard (see WaltController), and the BulkImporter rejects the rows of such a City.
+ * Note: With the default single shard ('walt.sharding.shards=1') every City is local and nothing changes.
+ */
+@Component
+public class CityShards
+{
+    private final int shards;
+    private final int localShard;
+
+    // Base URL of each shard, by shard number (e.g. 'http://walt-0:8080').
+    private final List<String> peers;
+
+    public CityShards(@Value("${walt.sharding.shards:1}") int shards,
+                      @Value("${walt.sharding.shard:0}") int localShard,
+                      @Value("${walt.sharding.peers:}") String peers)
+    {
+        this.shards = Math.max(1, shards);
+        this.localShard = localShard;
+        this.peers = peers.trim().isEmpty()
+                ? Collections.emptyList()
+                : new ArrayList<>(Arrays.asList(peers.trim().split("\\s*,\\s*")));
+
+        if (localShard < 0 || localShard >= this.shards)
+        {
+            throw new IllegalArgumentException("walt.sharding.shard must be between 0 and " + (this.shards - 1));
+        }
+        if (this.shards > 1 && this.peers.size() != this.shards)
+        {
+            throw new IllegalArgumentException("walt.sharding.peers must list the base URL of each of the " + this.shards + " shards");
+        }
+    }
+
+    /**
+     * Check if the deployment has more then one shard.
+     * @return True if sharded (boolean type).
+     */
+    public boolean isSharded()
+    {
+        return shards > 1;
+    }
+
+    /**
+     * Number of shards.
+     * @return Number of shards (int type).
+     */
+    public int getShards()
+    {
+        return shards;
+    }
+
+    /**
+     * The shard of this instance.
+     * @return Shard number (int type).
+     */
+    public int getLocalShard()
+    {
+        return localShard;
+    }
+
+    /**
+     * The shard that owns the given City.
+     * Note: By the City name and not its id, ids are generated by the database of each shard.
+     * @param cityName Name of the City (String type).
+     * @return Shard number (int type).
+     */
+    public int shardOf(String cityName)
+    {
+        return Math.floorMod(cityName.hashCode(), shards);
+    }
+
+    /**
+     * Check if the given City is owned by this instance.
+     * @param cityName Name of the City (String type).
+     * @return True if the City is local (boolean type).
+     */
+    public boolean isLocal(String cityName)
+    {
+        return shardOf(cityName) == localShard;
+    }
+
+    /**
+     * Base URL of the given shard.
+     * @param shard Shard number (int type).
+     * @return Base URL of the shard (String type).
+     */
+    public String peerOf(int shard)
+    {
+        return peers.get(shard);
+    }
+}
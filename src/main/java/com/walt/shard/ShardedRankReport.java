@@ -0,0 +1,189 @@
+package com.walt.shard;
+
+import com.walt.model.modelResponse.DriverDistanceResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Scatter-gather rank report over all the City shards.
+ * Every shard is asked (in parallel) for its own top offset + limit Drivers, and the sorted shard reports are merged,
+ * the same k-way merge DriverRanking does over the City shards of a single instance.
+ */
+@Component
+public class ShardedRankReport
+{
+    // Order of the merged report: the exact distance every shard sorts by, in descending order.
+    // Note: Drivers of the same distance keep their shard order, the Driver ids of different shards are not unique.
+    private static final Comparator<DriverDistanceResult> RANK_ORDER = Comparator
+            .comparingDouble(DriverDistanceResult::getDistance).reversed();
+
+    private final CityShards cityShards;
+    private final RestTemplate restTemplate;
+    private final ExecutorService executor;
+
+    public ShardedRankReport(CityShards cityShards, RestTemplateBuilder restTemplateBuilder,
+                             @Value("${walt.sharding.timeout:5s}") Duration timeout)
+    {
+        this.cityShards = cityShards;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(timeout)
+                .setReadTimeout(timeout)
+                .build();
+        this.executor = Executors.newCachedThreadPool(runnable ->
+        {
+            Thread thread = new Thread(runnable, "shard-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Create a page of the rank report of the Drivers of all the shards.
+     * @param localReport The report of this instance, the top offset + limit Drivers (Supplier<List<DriverDistanceResult>> type).
+     * @param from First day of the report, format: 'dd-MM-yyyy', or null (String type).
+     * @param to Last day of the report, format: 'dd-MM-yyyy', or null (String type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the rank report page, order by total distance in descending order (List<DriverDistanceResult> type).
+     * @throws Exception if a shard did not answer.
+     */
+    public List<DriverDistanceResult> report(Supplier<List<DriverDistanceResult>> localReport, String from, String to, int offset, int limit) throws Exception
+    {
+        int top = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+
+        List<CompletableFuture<List<DriverDistanceResult>>> shardReports = new ArrayList<>();
+        for (int shard = 0; shard < cityShards.getShards(); shard++)
+        {
+            if (shard == cityShards.getLocalShard())
+            {
+                shardReports.add(CompletableFuture.completedFuture(localReport.get()));
+            }
+            else
+            {
+                int remoteShard = shard;
+                shardReports.add(CompletableFuture.supplyAsync(() -> fetch(remoteShard, from, to, top), executor));
+            }
+        }
+
+        List<List<DriverDistanceResult>> reports = new ArrayList<>();
+        for (CompletableFuture<List<DriverDistanceResult>> shardReport : shardReports)
+        {
+            try
+            {
+                reports.add(shardReport.join());
+            }
+            catch (CompletionException e)
+            {
+                throw new Exception(e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return merge(reports, offset, limit);
+    }
+
+    /**
+     * Merge the given sorted shard reports to a single page.
+     * @param reports The report of each shard, order by total distance in descending order (List<List<DriverDistanceResult>> type).
+     * @param offset Number of top Drivers to skip (int type).
+     * @param limit Maximum number of Drivers in the report (int type).
+     * @return List that represent the merged report page (List<DriverDistanceResult> type).
+     */
+    public static List<DriverDistanceResult> merge(List<List<DriverDistanceResult>> reports, int offset, int limit)
+    {
+        // Every head is the shard report and the index of its next Driver, the lower shard first on the same distance.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, reports.size()), (head1, head2) ->
+        {
+            int order = RANK_ORDER.compare(reports.get(head1[0]).get(head1[1]), reports.get(head2[0]).get(head2[1]));
+            return (order != 0) ? order : Integer.compare(head1[0], head2[0]);
+        });
+        for (int i = 0; i < reports.size(); i++)
+        {
+            if ( ! (reports.get(i).isEmpty()))
+            {
+                heads.add(new int[] {i, 0});
+            }
+        }
+
+        List<DriverDistanceResult> list_driverDistance = new ArrayList<>();
+        int skipped = 0;
+        while ( ! (heads.isEmpty()) && list_driverDistance.size() < limit)
+        {
+            int[] head = heads.poll();
+            List<DriverDistanceResult> report = reports.get(head[0]);
+            if (skipped < offset)
+            {
+                skipped++;
+            }
+            else
+            {
+                list_driverDistance.add(report.get(head[1]));
+            }
+            if (++head[1] < report.size())
+            {
+                heads.add(head);
+            }
+        }
+        return list_driverDistance;
+    }
+
+    /**
+     * Ask the given shard for its own top Drivers.
+     * @param shard Shard number (int type).
+     * @param from First day of the report, or null (String type).
+     * @param to Last day of the report, or null (String type).
+     * @param top Number of top Drivers (int type).
+     * @return The report of the shard (List<DriverDistanceResult> type).
+     */
+    private List<DriverDistanceResult> fetch(int shard, String from, String to, int top)
+    {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(cityShards.peerOf(shard))
+                .path("/driverRankReport")
+                .queryParam("local", true)
+                .queryParam("top", top);
+        if (from != null)
+        {
+            uri.queryParam("from", from);
+        }
+        if (to != null)
+        {
+            uri.queryParam("to", to);
+        }
+
+        DriverDistanceResult[] report;
+        try
+        {
+            report = restTemplate.getForObject(uri.build().toUri(), DriverDistanceResult[].class);
+        }
+        catch (RestClientException e)
+        {
+            throw new IllegalStateException("Shard " + shard + " did not answer the rank report!", e);
+        }
+        if (report == null)
+        {
+            throw new IllegalStateException("Shard " + shard + " answered an invalid rank report!");
+        }
+        return Arrays.asList(report);
+    }
+}
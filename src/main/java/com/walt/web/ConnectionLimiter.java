@@ -0,0 +1,99 @@
+package com.walt.web;
+
+import com.walt.controller.WaltController;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the WaltController requests that run at the same time to the connections of the JDBC pool.
+ * With virtual threads nothing bounds the requests in flight any more: a burst of orders would all wait
+ * inside the pool for a connection, and fail after its connection timeout.
+ * Instead, a request waits for a permit (first come first served) before its handler runs,
+ * and is rejected with 503 if no permit is free within the wait.
+ * Note: The permit is held until the request completes, or until its handler starts asynchronous processing
+ * (a streamed export), whose work runs on threads of its own.
+ * Waiting and rejected requests are exported to the actuator metrics ('walt.web.connections.*').
+ */
+public class ConnectionLimiter implements AsyncHandlerInterceptor
+{
+    // Request attribute of a request that holds a permit.
+    private static final String PERMIT_ATTRIBUTE = ConnectionLimiter.class.getName() + ".PERMIT";
+
+    private final Semaphore permits;
+    private final long waitMillis;
+    private final Counter rejectedCounter;
+
+    public ConnectionLimiter(int permits, Duration wait, MeterRegistry meterRegistry)
+    {
+        this.permits = new Semaphore(permits, true);
+        this.waitMillis = wait.toMillis();
+
+        Gauge.builder("walt.web.connections.available", this.permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+        Gauge.builder("walt.web.connections.waiting", this.permits, Semaphore::getQueueLength)
+                .register(meterRegistry);
+        rejectedCounter = meterRegistry.counter("walt.web.connections.rejected");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception
+    {
+        // Case when not a WaltController request, or the dispatch of an asynchronous result (its permit was released).
+        if ( ! (handler instanceof HandlerMethod)
+                || ((HandlerMethod) handler).getBeanType() != WaltController.class
+                || request.getDispatcherType() != DispatcherType.REQUEST)
+        {
+            return true;
+        }
+
+        if ( ! (permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)))
+        {
+            rejectedCounter.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Error - Too many requests waiting for the database, please try again later!");
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler)
+    {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
+    {
+        release(request);
+    }
+
+    /**
+     * Release the permit of the given request, if it holds one.
+     * @param request The request (HttpServletRequest type).
+     */
+    private void release(HttpServletRequest request)
+    {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null)
+        {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permits.release();
+        }
+    }
+}
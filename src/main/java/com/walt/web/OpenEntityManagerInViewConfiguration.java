@@ -0,0 +1,33 @@
+package com.walt.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open the EntityManager in view ('spring.jpa.open-in-view', default true) for all the requests but the reactive API.
+ * An asynchronous request keeps its EntityManager, and the JDBC connection it used, until the request completes:
+ * a '/reactive/createOrder' waiting for the OrderPipeline would hold a connection the workers need to create the orders.
+ * The reactive API only reads detached Drivers (the ranking snapshots), so it needs no EntityManager in view.
+ * Note: Replaces the interceptor of Spring Boot (JpaWebConfiguration), which backs off when this one is defined.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.jpa", name = "open-in-view", havingValue = "true", matchIfMissing = true)
+public class OpenEntityManagerInViewConfiguration implements WebMvcConfigurer
+{
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor()
+    {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns("/reactive/**");
+    }
+}
@@ -0,0 +1,67 @@
+package com.walt.web;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of Java 21, used through reflection so the application still builds and runs on Java 8.
+ */
+public final class VirtualThreads
+{
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * Check if this Java has virtual threads.
+     * @return True on Java 21 or later (boolean type).
+     */
+    public static boolean isAvailable()
+    {
+        return newThreadFactory("probe-") != null;
+    }
+
+    /**
+     * Create an executor that runs every task on a new virtual thread.
+     * @param namePrefix Prefix of the thread names, followed by a counter (String type).
+     * @return The executor, or null if this Java has no virtual threads (ExecutorService type).
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix)
+    {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        if (threadFactory == null)
+        {
+            return null;
+        }
+        try
+        {
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().name(namePrefix, 0).factory()
+     * Note: The methods are looked up on the public Thread.Builder interfaces, the builder class itself is not public.
+     */
+    private static ThreadFactory newThreadFactory(String namePrefix)
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+}
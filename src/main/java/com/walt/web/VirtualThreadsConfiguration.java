@@ -0,0 +1,71 @@
+package com.walt.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Opt-in handling of the requests on virtual threads ('walt.web.threads=virtual', default 'platform').
+ * Tomcat runs every request on a new virtual thread instead of its bounded pool of platform threads,
+ * so a request that blocks on the database does not hold one of a few hundred scarce threads.
+ * The database is protected by the ConnectionLimiter instead: at most 'walt.web.connection-permits' WaltController
+ * requests run at the same time (by default the size of the JDBC pool), the others wait 'walt.web.connection-wait'.
+ * Note: Virtual threads need Java 21. On an older Java a warning is logged and Tomcat keeps its platform threads,
+ * the ConnectionLimiter still applies.
+ */
+@Configuration
+@ConditionalOnProperty(name = "walt.web.threads", havingValue = "virtual")
+public class VirtualThreadsConfiguration implements WebMvcConfigurer
+{
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfiguration.class);
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${walt.web.connection-permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+    int connectionPermits;
+
+    @Value("${walt.web.connection-wait:2s}")
+    Duration connectionWait;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsCustomizer()
+    {
+        return protocolHandler ->
+        {
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+            if (executor == null)
+            {
+                log.warn("Virtual threads need Java 21 (running {}), the requests run on the Tomcat thread pool",
+                        System.getProperty("java.version"));
+                return;
+            }
+            protocolHandler.setExecutor(executor);
+            log.info("Requests run on virtual threads, at most {} at the same time use the database", connectionPermits);
+        };
+    }
+
+    @Bean
+    public ConnectionLimiter connectionLimiter()
+    {
+        return new ConnectionLimiter(connectionPermits, connectionWait, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addInterceptor(connectionLimiter());
+    }
+}
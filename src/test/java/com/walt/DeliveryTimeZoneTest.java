@@ -0,0 +1,61 @@
+package com.walt;
+
+import com.walt.index.DriverAvailabilityIndex;
+import com.walt.model.DeliveryTime;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The hour slots of DeliveryTime are local hours, in any default time zone.
+ * Note: Also run by the 'half-hour-time-zone' surefire execution under Asia/Kolkata (+05:30),
+ * where an hour slot of UTC hours would split 12:00 from 12:30.
+ */
+public class DeliveryTimeZoneTest
+{
+    @Test
+    public void hourSlot_isTheLocalHour() throws Exception
+    {
+        long hour12 = DeliveryTime.parse("01-10-2021 12:00").getHourSlot();
+
+        // Hours since the local epoch, whatever the offset of the default time zone.
+        assertEquals(LocalDateTime.of(2021, 10, 1, 12, 0).toEpochSecond(ZoneOffset.UTC) / 3600, hour12);
+        assertEquals(hour12, DeliveryTime.parse("01-10-2021 12:30").getHourSlot());
+        assertEquals(hour12, DeliveryTime.parse("01-10-2021 12:59").getHourSlot());
+        assertEquals(hour12 - 1, DeliveryTime.parse("01-10-2021 11:45").getHourSlot());
+        assertEquals(hour12 + 1, DeliveryTime.parse("01-10-2021 13:00").getHourSlot());
+        assertEquals(12, DeliveryTime.hourOfDayOf(hour12));
+        assertEquals(0, DeliveryTime.hourOfDayOf(DeliveryTime.parse("02-10-2021 00:15").getHourSlot()));
+
+        // The start of the slot is the local hour, and the slot of its start is the slot.
+        Date hourStart = DriverAvailabilityIndex.hourStartOf(DeliveryTime.parse("01-10-2021 12:30").toDate());
+        assertEquals(DeliveryTime.parse("01-10-2021 12:00").toDate(), hourStart);
+        assertEquals("01-10-2021 12:00", DeliveryTime.of(hourStart).toString());
+        assertEquals(DeliveryTime.parse("01-10-2021 13:00").toDate(),
+                DriverAvailabilityIndex.hourEndOf(DeliveryTime.parse("01-10-2021 12:30").toDate()));
+        for (long hourSlot = hour12 - 24 * 400; hourSlot < hour12 + 24 * 400; hourSlot += 7)
+        {
+            assertEquals(hourSlot, DeliveryTime.hourSlotOf(DeliveryTime.hourStartMillisOf(hourSlot)));
+        }
+    }
+
+    @Test
+    public void driverAvailabilityIndex_clashesInTheLocalHour() throws Exception
+    {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        index.addDriver(1L, 1L, 12, 13, 1);
+
+        index.addDelivery(1L, DeliveryTime.parse("01-10-2021 12:00").toDate());
+        assertFalse(index.isAvailable(1L, DeliveryTime.parse("01-10-2021 12:30").toDate()));
+        assertFalse(index.isAvailable(1L, DeliveryTime.parse("01-10-2021 11:45").toDate()));
+        assertTrue(index.isAvailable(1L, DeliveryTime.parse("02-10-2021 12:45").toDate()));
+        assertEquals(DeliveryTime.parse("02-10-2021 12:00").getHourSlot(), (long) index.findFreeHourSlots(1L,
+                DeliveryTime.parse("01-10-2021 12:00").getHourSlot(), DeliveryTime.parse("03-10-2021 00:00").getHourSlot(), 1).get(0));
+    }
+}
@@ -1,24 +1,72 @@
 package com.walt;
 
+import com.walt.assignment.LeastDistanceTodayStrategy;
+import com.walt.assignment.RollingWindowStrategy;
+import com.walt.assignment.RoundRobinStrategy;
+import com.walt.controller.WaltController;
 import com.walt.dao.*;
+import com.walt.importer.BulkImporter;
+import com.walt.importer.ImportResult;
+import com.walt.importer.ImportType;
+import com.walt.index.DriverAvailabilityIndex;
 import com.walt.model.*;
+import com.walt.model.modelResponse.DriverDistanceResult;
+import com.walt.pipeline.AsyncOrder;
+import com.walt.pipeline.OrderPipeline;
+import com.walt.ranking.DriverRanking;
+import com.walt.reconcile.DeliveryCountReconciler;
+import com.walt.reconcile.DeliveryCountReport;
+import com.walt.shard.CityShards;
+import com.walt.shard.ShardedRankReport;
+import com.walt.web.ConnectionLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.assertj.core.util.Lists;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.method.HandlerMethod;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.Resource;
+import javax.persistence.EntityManagerFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 @SpringBootTest()
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -32,6 +80,13 @@ public class MyTest
         public WaltService waltService() {
             return new WaltServiceImpl();
         }
+
+        // 'now' of the tests, so the suggested delivery times do not depend on the wall clock.
+        @Bean
+        @Primary
+        public Clock fixedClock() throws ParseException {
+            return Clock.fixed(DeliveryTime.parse("01-11-2021 00:00").toDate().toInstant(), ZoneId.systemDefault());
+        }
     }
 
     @Autowired
@@ -52,6 +107,36 @@ public class MyTest
     @Resource
     RestaurantRepository restaurantRepository;
 
+    @Resource
+    DriverAvailabilityIndex driverAvailabilityIndex;
+
+    @Resource
+    OrderPipeline orderPipeline;
+
+    @Resource
+    MeterRegistry meterRegistry;
+
+    @Resource
+    BulkImporter bulkImporter;
+
+    @Resource
+    DeliveryCountReconciler deliveryCountReconciler;
+
+    @Resource
+    JdbcTemplate jdbcTemplate;
+
+    @Resource
+    EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    WaltController waltController;
+
+    @Resource
+    ReactiveWaltService reactiveWaltService;
+
+    @TempDir
+    Path tempDir;
+
     @BeforeEach()
     public void prepareData()
     {
@@ -142,6 +227,7 @@ public class MyTest
         double distance = delivery.getDistance();
 
         driver.updateDistance(distance);
+        driver.updateDeliveryCount(1);
 
         driverRepository.save(driver);
     }
@@ -349,6 +435,311 @@ public class MyTest
         }
     }
 
+    @Test
+    public void driverAvailabilityIndex_totalDeliveriesOfDrivers()
+    {
+        assertEquals(3, driverAvailabilityIndex.getTotalDeliveries(driverRepository.findByName("Mary").getId()));
+        assertEquals(2, driverAvailabilityIndex.getTotalDeliveries(driverRepository.findByName("Patricia").getId()));
+        assertEquals(1, driverAvailabilityIndex.getTotalDeliveries(driverRepository.findByName("Daniel").getId()));
+        assertEquals(0, driverAvailabilityIndex.getTotalDeliveries(driverRepository.findByName("Noa").getId()));
+    }
+
+    @Test
+    public void driverAvailabilityIndex_availabilityAcrossYearsOfHistory() throws Exception
+    {
+        Long noaId = driverRepository.findByName("Noa").getId();
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+
+        // Deliveries years apart, and before the first one (the schedule grows in both directions).
+        driverAvailabilityIndex.addDelivery(noaId, format.parse("01-10-2021 15:30"));
+        driverAvailabilityIndex.addDelivery(noaId, format.parse("01-10-2031 15:00"));
+        driverAvailabilityIndex.addDelivery(noaId, format.parse("01-10-2011 15:00"));
+        driverAvailabilityIndex.addDelivery(noaId, format.parse("01-10-2021 15:45"));
+
+        assertEquals(3, driverAvailabilityIndex.getTotalDeliveries(noaId));
+        assertFalse(driverAvailabilityIndex.isAvailable(noaId, format.parse("01-10-2021 15:00")));
+        assertFalse(driverAvailabilityIndex.isAvailable(noaId, format.parse("01-10-2031 15:59")));
+        assertFalse(driverAvailabilityIndex.isAvailable(noaId, format.parse("01-10-2011 15:00")));
+        assertTrue(driverAvailabilityIndex.isAvailable(noaId, format.parse("01-10-2021 16:00")));
+        assertTrue(driverAvailabilityIndex.isAvailable(noaId, format.parse("01-10-2026 15:00")));
+    }
+
+    @Test
+    public void driverAssignmentStrategy_roundRobinAndLeastDistanceToday() throws Exception
+    {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+        Long tlvId = cityRepository.findByName("Tel-Aviv").getId();
+        Long maryId = driverRepository.findByName("Mary").getId();
+        Long patriciaId = driverRepository.findByName("Patricia").getId();
+        Long danielId = driverRepository.findByName("Daniel").getId();
+
+        // Round robin: the Drivers in turn (by id) whatever their history, skipping the busy Drivers.
+        RoundRobinStrategy roundRobin = new RoundRobinStrategy(driverAvailabilityIndex);
+        for (Long driverId : Lists.newArrayList(danielId, maryId, patriciaId))
+        {
+            roundRobin.addDriver(driverId, tlvId);
+        }
+        Date deliveryTime = format.parse("01-10-2021 18:00");
+        assertEquals(maryId, roundRobin.chooseDriver(tlvId, deliveryTime));
+        assertEquals(patriciaId, roundRobin.chooseDriver(tlvId, deliveryTime));
+        assertEquals(danielId, roundRobin.chooseDriver(tlvId, deliveryTime));
+        assertEquals(maryId, roundRobin.chooseDriver(tlvId, deliveryTime));
+        assertEquals(danielId, roundRobin.chooseDriver(tlvId, format.parse("01-10-2021 16:00")));
+        assertNull(roundRobin.chooseDriver(tlvId, format.parse("01-10-2021 15:00")));
+
+        // Least distance today: only the distance of the Delivery day counts.
+        LeastDistanceTodayStrategy leastDistanceToday = new LeastDistanceTodayStrategy(driverAvailabilityIndex);
+        for (Long driverId : Lists.newArrayList(maryId, patriciaId, danielId))
+        {
+            leastDistanceToday.addDriver(driverId, tlvId);
+        }
+        leastDistanceToday.addDelivery(maryId, format.parse("02-10-2021 10:00"), 5.0);
+        leastDistanceToday.addDelivery(patriciaId, format.parse("01-10-2021 10:00"), 3.0);
+        leastDistanceToday.addDelivery(danielId, format.parse("02-10-2021 11:00"), 1.0);
+        assertEquals(patriciaId, leastDistanceToday.chooseDriver(tlvId, format.parse("02-10-2021 18:00")));
+
+        leastDistanceToday.addDelivery(patriciaId, format.parse("02-10-2021 12:00"), 2.0);
+        assertEquals(danielId, leastDistanceToday.chooseDriver(tlvId, format.parse("02-10-2021 18:00")));
+        assertEquals(Lists.newArrayList(danielId, patriciaId, maryId),
+                leastDistanceToday.chooseDrivers(tlvId, format.parse("02-10-2021 18:00"), 3));
+    }
+
+    @Test
+    public void driverAssignmentStrategy_rollingWindowCountsEveryDelivery() throws Exception
+    {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        index.addDriver(1L, 1L, 0, 24, 2);
+        index.addDriver(2L, 1L, 0, 24, 2);
+        Date hour10 = DeliveryTime.parse("01-10-2021 10:00").toDate();
+        Date hour12 = DeliveryTime.parse("01-10-2021 12:00").toDate();
+        Date hour18 = DeliveryTime.parse("01-10-2021 18:00").toDate();
+
+        // Rolling window: every Delivery counts, not only the busy hours of a Driver with a capacity above one.
+        RollingWindowStrategy rollingWindow = new RollingWindowStrategy(index, Duration.ofDays(7));
+        rollingWindow.addDriver(1L, 1L);
+        rollingWindow.addDriver(2L, 1L);
+        for (Date deliveryTime : Lists.newArrayList(hour10, hour10, hour12))
+        {
+            Long driverId = (deliveryTime == hour12) ? 2L : 1L;
+            index.addDelivery(driverId, deliveryTime);
+            rollingWindow.addDelivery(driverId, deliveryTime, 1.0);
+        }
+        assertEquals(Long.valueOf(2L), rollingWindow.chooseDriver(1L, hour18));
+        assertEquals(Lists.newArrayList(2L, 1L), rollingWindow.chooseDrivers(1L, hour18, 2));
+    }
+
+    @Test
+    public void driverSaved_withNewCityAssignedInTheNewCity() throws Exception
+    {
+        City tlv = cityRepository.findByName("Tel-Aviv");
+        Restaurant falafel = new Restaurant("falafel", cityRepository.findByName("Haifa"), "Falafel stand");
+        restaurantRepository.save(falafel);
+        Date hour15 = DeliveryTime.parse("01-10-2021 15:00").toDate();
+        Date hour16 = DeliveryTime.parse("01-10-2021 16:00").toDate();
+
+        // All the Haifa Drivers deliver at 16:00, then Jennifer moves to Tel-Aviv with her Delivery.
+        Customer chopin = customerRepository.findByName("Chopin");
+        for (int i = 0; i < 3; i++)
+        {
+            waltService.createOrderAndAssignDriver(chopin, falafel, hour16);
+        }
+        Driver jennifer = driverRepository.findByName("Jennifer");
+        jennifer.setCity(tlv);
+        driverRepository.save(jennifer);
+        assertEquals(tlv.getId(), driverAvailabilityIndex.getCityId(jennifer.getId()));
+        long hourSlot16 = DeliveryTime.parse("01-10-2021 16:00").getHourSlot();
+        assertEquals(0, driverAvailabilityIndex.getFreeCapacity(cityRepository.findByName("Haifa").getId(), hourSlot16));
+        assertEquals(1, driverAvailabilityIndex.getFreeCapacity(tlv.getId(), hourSlot16));
+
+        // Mary, Patricia and Daniel deliver at 15:00, so only Jennifer is free in Tel-Aviv.
+        Customer beethoven = customerRepository.findByName("Beethoven");
+        Restaurant chinese = restaurantRepository.findByName("chinese");
+        assertEquals("Jennifer", waltService.createOrderAndAssignDriver(beethoven, chinese, hour15).getDriver().getName());
+        List<String> haifaDrivers = Lists.newArrayList(
+                waltService.createOrderAndAssignDriver(chopin, falafel, hour15).getDriver().getName(),
+                waltService.createOrderAndAssignDriver(chopin, falafel, hour15).getDriver().getName());
+        haifaDrivers.sort(null);
+        assertEquals(Lists.newArrayList("Noa", "Ofri"), haifaDrivers);
+        try
+        {
+            waltService.createOrderAndAssignDriver(chopin, falafel, hour15);
+            Assert.fail( "Should have thrown an exception" );
+        }
+        catch (Exception e)
+        {
+            assertEquals("Sorry no driver available to take the new Delivery!", e.getMessage());
+        }
+        assertEquals(0, driverAvailabilityIndex.getFreeCapacity(tlv.getId(), DeliveryTime.parse("01-10-2021 15:00").getHourSlot()));
+    }
+
+    @Test
+    public void createOrderAndAssignDriver_chosenDriverBusyForTheSameHour() throws Exception
+    {
+        Customer customer = customerRepository.findByName("Beethoven");
+        Restaurant restaurant = restaurantRepository.findByName("chinese");
+        Date deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 18:00");
+
+        assertEquals("Daniel", waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime).getDriver().getName());
+        assertEquals("Patricia", waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime).getDriver().getName());
+        assertEquals("Mary", waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime).getDriver().getName());
+
+        try
+        {
+            waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+            Assert.fail( "Should have thrown an exception" );
+        }
+        catch (Exception e)
+        {
+            String expectedMessage = "Sorry no driver available to take the new Delivery!";
+            assertEquals( "Exception message must be correct", expectedMessage, e.getMessage() );
+        }
+    }
+
+    @Test
+    public void createOrdersAndAssignDrivers_batchGroupedByCityAndHour() throws ParseException
+    {
+        Customer beethoven = customerRepository.findByName("Beethoven");
+        Customer mozart = customerRepository.findByName("Mozart");
+        Restaurant chinese = restaurantRepository.findByName("chinese");
+        Restaurant meat = restaurantRepository.findByName("meat");
+        Date hour18 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 18:00");
+        Date hour15 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 15:00");
+
+        List<DeliveryOrderResult> results = waltService.createOrdersAndAssignDrivers(Lists.newArrayList(
+                new DeliveryOrder(beethoven, chinese, hour18),
+                new DeliveryOrder(beethoven, meat, hour18),
+                new DeliveryOrder(beethoven, chinese, hour18),
+                new DeliveryOrder(mozart, meat, hour18),
+                new DeliveryOrder(beethoven, chinese, hour18),
+                new DeliveryOrder(beethoven, chinese, hour18),
+                new DeliveryOrder(beethoven, chinese, hour15)));
+
+        assertEquals("Daniel", results.get(0).getDelivery().getDriver().getName());
+        assertEquals("Customer City not same as Restaurant City!", results.get(1).getError());
+        assertEquals("Patricia", results.get(2).getDelivery().getDriver().getName());
+        assertTrue(results.get(3).isCreated());
+        assertEquals("Mary", results.get(4).getDelivery().getDriver().getName());
+        assertEquals("Sorry no driver available to take the new Delivery!", results.get(5).getError());
+        assertEquals("Sorry no driver available to take the new Delivery!", results.get(6).getError());
+
+        assertEquals(10, ((List<Delivery>) deliveryRepository.findAll()).size());
+        assertEquals(2, driverAvailabilityIndex.getTotalDeliveries(driverRepository.findByName("Daniel").getId()));
+    }
+
+    @Test
+    public void createOrdersAndAssignDrivers_chosenDriverDeleted() throws Exception
+    {
+        City eilat = new City("Eilat");
+        cityRepository.save(eilat);
+        Driver eli = new Driver("Eli", eilat);
+        driverRepository.save(eli);
+        Customer customer = new Customer("Satie", eilat, "Erik Satie");
+        customerRepository.save(customer);
+        Restaurant restaurant = new Restaurant("fish", eilat, "Fish restaurant");
+        restaurantRepository.save(restaurant);
+
+        // The index still knows the Driver, deleted from the database.
+        driverRepository.delete(eli);
+        Customer beethoven = customerRepository.findByName("Beethoven");
+        Restaurant chinese = restaurantRepository.findByName("chinese");
+        Date hour18 = DeliveryTime.parse("01-10-2021 18:00").toDate();
+        List<DeliveryOrderResult> results = waltService.createOrdersAndAssignDrivers(Lists.newArrayList(
+                new DeliveryOrder(customer, restaurant, hour18),
+                new DeliveryOrder(beethoven, chinese, hour18)));
+
+        assertEquals("Sorry no driver available to take the new Delivery!", results.get(0).getError());
+        assertEquals("Daniel", results.get(1).getDelivery().getDriver().getName());
+    }
+
+    @Test
+    public void orderPipeline_asyncOrderCreated() throws Exception
+    {
+        Customer customer = customerRepository.findByName("Beethoven");
+        Restaurant restaurant = restaurantRepository.findByName("chinese");
+        Date deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 16:00");
+
+        AsyncOrder asyncOrder = orderPipeline.submit(customer, restaurant, deliveryTime);
+        assertEquals(AsyncOrder.Status.CREATED, asyncOrder.completion().get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals("Daniel", orderPipeline.find(asyncOrder.getId()).getDriver());
+        assertEquals(driverRepository.findByName("Daniel").getId(), asyncOrder.driverId());
+
+        AsyncOrder busyOrder = orderPipeline.submit(customer, restaurant, deliveryTime);
+        assertEquals(AsyncOrder.Status.FAILED, busyOrder.completion().get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals("Sorry no driver available to take the new Delivery!", busyOrder.getError());
+    }
+
+    @Test
+    public void findLeastBusyAvailableDriver_singleQuery() throws ParseException
+    {
+        Long tlvId = cityRepository.findByName("Tel-Aviv").getId();
+        Long haifaId = cityRepository.findByName("Haifa").getId();
+
+        Date hour15 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 15:00");
+        Date hour16 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 16:00");
+        Date hour17 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 17:00");
+        Date hour18 = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 18:00");
+
+        assertNull(driverRepository.findLeastBusyAvailableDriver(tlvId, 15, hour15, hour16));
+        assertEquals("Daniel", driverRepository.findLeastBusyAvailableDriver(tlvId, 16, hour16, hour17).getName());
+        assertEquals("Jennifer", driverRepository.findLeastBusyAvailableDriver(haifaId, 16, hour16, hour17).getName());
+
+        // Patricia is free at 17:00 but busier than Daniel.
+        assertEquals("Daniel", driverRepository.findLeastBusyAvailableDriver(tlvId, 17, hour17, hour18).getName());
+
+        // Off shift at 17:00, Patricia takes the Delivery; with a capacity of 2, Mary is free at 15:00 again.
+        Driver daniel = driverRepository.findByName("Daniel");
+        daniel.setShift(8, 17);
+        driverRepository.save(daniel);
+        assertEquals("Patricia", driverRepository.findLeastBusyAvailableDriver(tlvId, 17, hour17, hour18).getName());
+        Driver mary = driverRepository.findByName("Mary");
+        mary.setCapacity(2);
+        driverRepository.save(mary);
+        assertEquals("Mary", driverRepository.findLeastBusyAvailableDriver(tlvId, 15, hour15, hour16).getName());
+    }
+
+    @Test
+    public void createOrderAndAssignDriver_shiftAndCapacity() throws Exception
+    {
+        Customer customer = customerRepository.findByName("Beethoven");
+        Restaurant restaurant = restaurantRepository.findByName("chinese");
+        Date deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 16:00");
+
+        // Daniel is the only Tel-Aviv Driver free at 16:00, with a capacity of 2 he takes two Deliveries in the hour.
+        Driver daniel = driverRepository.findByName("Daniel");
+        daniel.setCapacity(2);
+        driverRepository.save(daniel);
+
+        Delivery first = waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+        Delivery second = waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+        assertEquals("Daniel", first.getDriver().getName());
+        assertEquals("Daniel", second.getDriver().getName());
+        assertEquals(0, first.getSeat());
+        assertEquals(1, second.getSeat());
+        assertEquals(0, driverAvailabilityIndex.getFreeCapacity(customer.getCity().getId(), DriverAvailabilityIndex.hourSlotOf(deliveryTime)));
+        try
+        {
+            waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+            Assert.fail("Should have thrown an exception: no capacity left");
+        }
+        catch (Exception e)
+        {
+            assertEquals("Sorry no driver available to take the new Delivery!", e.getMessage());
+        }
+
+        // Daniel has room for a second Delivery at 15:00 (from 15:30 on), all the Tel-Aviv Drivers are full at 16:00.
+        Date from = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 15:30");
+        List<Date> availableTimes = waltService.getNextAvailableDeliveryTimes(restaurant, from, 2);
+        assertEquals(2, availableTimes.size());
+        assertEquals(from, availableTimes.get(0));
+        assertEquals(new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 17:00"), availableTimes.get(1));
+
+        // Off shift from 17:00 on, Daniel can no longer take a Delivery at 17:00.
+        daniel = driverRepository.findByName("Daniel");
+        daniel.setShift(8, 17);
+        driverRepository.save(daniel);
+        assertFalse(driverAvailabilityIndex.isAvailable(daniel.getId(), availableTimes.get(1)));
+    }
+
     @Test
     public void getDriverRankReport_checkReportListSize()
     {
@@ -358,6 +749,545 @@ public class MyTest
     }
 
 
+    @Test
+    public void getDriverRankReport_descendingOrderAndPaging()
+    {
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        for (int i = 1; i < driverRankReport.size(); i++)
+        {
+            assertTrue(driverRankReport.get(i - 1).getTotalDistance() >= driverRankReport.get(i).getTotalDistance());
+        }
+
+        List<DriverDistance> top3 = waltService.getDriverRankReport(0, 3);
+        assertEquals(3, top3.size());
+        assertEquals(driverRankReport.get(0).getDriver().getId(), top3.get(0).getDriver().getId());
+
+        List<DriverDistance> secondPage = waltService.getDriverRankReport(4, 4);
+        assertEquals(4, secondPage.size());
+        assertEquals(driverRankReport.get(4).getDriver().getId(), secondPage.get(0).getDriver().getId());
+
+        assertEquals(3, waltService.getDriverRankReport(8, 4).size());
+    }
+
+    @Test
+    public void getDriverRankReport_mergeOfCityReports()
+    {
+        List<DriverDistance> mergedCityReports = new ArrayList<>();
+        for (City city : cityRepository.findAll())
+        {
+            List<DriverDistance> cityReport = waltService.getDriverRankReportByCity(city);
+            assertEquals(cityReport.subList(1, 2).get(0).getDriver().getId(),
+                    waltService.getDriverRankReportByCity(city, 1, 1).get(0).getDriver().getId());
+            mergedCityReports.addAll(cityReport);
+        }
+        mergedCityReports.sort(Comparator.comparing(DriverDistance::getTotalDistance).reversed());
+
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        assertEquals(mergedCityReports.size(), driverRankReport.size());
+        for (int i = 0; i < driverRankReport.size(); i++)
+        {
+            assertEquals(mergedCityReports.get(i).getTotalDistance(), driverRankReport.get(i).getTotalDistance());
+        }
+    }
+
+    @Test
+    public void driverRanking_olderUpdateDoesNotMoveCity()
+    {
+        DriverRanking driverRanking = new DriverRanking();
+        driverRanking.update(driverState(7L, 2L, "Haifa", 2L));
+
+        // The older update, of the City the Driver left, arrives after the newer one.
+        driverRanking.update(driverState(7L, 1L, "Tel Aviv", 1L));
+        assertTrue(driverRanking.reportByCity(1L, 0, 10).isEmpty());
+        assertEquals(Long.valueOf(7L), driverRanking.reportByCity(2L, 0, 10).get(0).getDriver().getId());
+
+        driverRanking.update(driverState(7L, 1L, "Tel Aviv", 3L));
+        assertTrue(driverRanking.reportByCity(2L, 0, 10).isEmpty());
+        assertEquals(1, driverRanking.report(0, 10).size());
+    }
+
+    private static DriverState driverState(Long driverId, Long cityId, String cityName, Long version)
+    {
+        return new DriverState()
+        {
+            public Long getDriverId() { return driverId; }
+            public String getName() { return "Driver " + driverId; }
+            public Long getCityId() { return cityId; }
+            public String getCityName() { return cityName; }
+            public double getDistance() { return 10; }
+            public long getDeliveryCount() { return 1; }
+            public Long getVersion() { return version; }
+        };
+    }
+
+    @Test
+    public void getDriverRankReport_strictDayRange()
+    {
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getDriverRankReport(null, null, null, "31-02-2021", null, false, null).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getDriverRankReport(null, null, null, "1-10-2021", null, false, null).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getDriverRankReport(null, null, null, "01-10-2021", "01-13-2021", false, null).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getDriverRankReport(null, null, null, "01-10-2021x", null, false, null).getStatusCode());
+    }
+
+    @Test
+    public void getDriverRankReport_updatedByNewDelivery() throws Exception
+    {
+        Customer customer = customerRepository.findByName("Chopin");
+        Restaurant restaurant = new Restaurant("falafel", customer.getCity(), "Falafel stand");
+        restaurantRepository.save(restaurant);
+        Date deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 18:00");
+
+        Delivery delivery = waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+
+        Driver driver = driverRepository.findByName(delivery.getDriver().getName());
+        for (DriverDistance driverDistance : waltService.getDriverRankReportByCity(customer.getCity()))
+        {
+            if (driverDistance.getDriver().getId().equals(driver.getId()))
+            {
+                assertEquals((long) driver.getDistance(), driverDistance.getTotalDistance().longValue());
+                return;
+            }
+        }
+        Assert.fail( "Driver is missing from the rank report" );
+    }
+
+    @Test
+    public void getDriverRankReport_inRangeOfDays() throws Exception
+    {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("dd-MM-yyyy");
+        Date firstOfOctober = dayFormat.parse("01-10-2021");
+        Date fifthOfOctober = dayFormat.parse("05-10-2021");
+
+        // All the fixture Deliveries are in the first of October, the same distances as the total report.
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        List<DriverDistance> firstOfOctoberReport = waltService.getDriverRankReport(firstOfOctober, firstOfOctober, 0, Integer.MAX_VALUE);
+        assertEquals(driverRankReport.size(), firstOfOctoberReport.size());
+        for (int i = 0; i < driverRankReport.size(); i++)
+        {
+            assertEquals(driverRankReport.get(i).getTotalDistance(), firstOfOctoberReport.get(i).getTotalDistance(), 1);
+        }
+
+        // A page is the same Drivers as in the whole report, only the top offset + limit are kept.
+        List<DriverDistance> secondPage = waltService.getDriverRankReport(firstOfOctober, null, 2, 3);
+        assertEquals(3, secondPage.size());
+        for (int i = 0; i < secondPage.size(); i++)
+        {
+            assertEquals(firstOfOctoberReport.get(2 + i).getDriver().getId(), secondPage.get(i).getDriver().getId());
+        }
+        assertTrue(waltService.getDriverRankReport(firstOfOctober, null, driverRankReport.size(), 3).isEmpty());
+
+        Customer customer = customerRepository.findByName("Beethoven");
+        Restaurant restaurant = restaurantRepository.findByName("vegan");
+        Delivery delivery = waltService.createOrderAndAssignDriver(customer, restaurant,
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("05-10-2021 12:00"));
+
+        // Only the new Delivery is in the fifth of October (its distance may be 0 too, so its Driver is not always first).
+        List<DriverDistance> fifthOfOctoberReport = waltService.getDriverRankReportByCity(customer.getCity(), fifthOfOctober, fifthOfOctober, 0, Integer.MAX_VALUE);
+        assertEquals(3, fifthOfOctoberReport.size());
+        for (DriverDistance driverDistance : fifthOfOctoberReport)
+        {
+            long expectedDistance = driverDistance.getDriver().getId().equals(delivery.getDriver().getId()) ? (long) delivery.getDistance() : 0;
+            assertEquals(expectedDistance, driverDistance.getTotalDistance().longValue());
+        }
+
+        // The first of October is not changed, and an open range counts both days.
+        assertEquals(firstOfOctoberReport.get(0).getTotalDistance(),
+                waltService.getDriverRankReport(firstOfOctober, firstOfOctober, 0, 1).get(0).getTotalDistance());
+        long octoberDistance = 0;
+        for (DriverDistance driverDistance : waltService.getDriverRankReportByCity(customer.getCity(), null, fifthOfOctober, 0, Integer.MAX_VALUE))
+        {
+            octoberDistance += driverDistance.getTotalDistance();
+        }
+        long totalDistance = 0;
+        for (DriverDistance driverDistance : waltService.getDriverRankReportByCity(customer.getCity()))
+        {
+            totalDistance += driverDistance.getTotalDistance();
+        }
+        assertEquals(totalDistance, octoberDistance, 3);
+    }
+
+    @Test
+    public void shardedRankReport_mergeOfShardReports()
+    {
+        CityShards cityShards = new CityShards(2, 1, "http://walt-0:8080, http://walt-1:8080");
+        assertEquals(cityShards.shardOf("Tel-Aviv"), new CityShards(2, 0, "http://a,http://b").shardOf("Tel-Aviv"));
+        assertEquals(cityShards.isLocal("Haifa"), cityShards.shardOf("Haifa") == 1);
+        assertEquals("http://walt-1:8080", cityShards.peerOf(1));
+
+        // Every City report stands for the report of a shard, as its rows are read from the response of the shard.
+        List<List<DriverDistanceResult>> shardReports = new ArrayList<>();
+        for (City city : cityRepository.findAll())
+        {
+            List<DriverDistanceResult> shardReport = new ArrayList<>();
+            for (DriverDistance driverDistance : waltService.getDriverRankReportByCity(city))
+            {
+                shardReport.add(DriverDistanceResult.of(driverDistance));
+            }
+            shardReports.add(shardReport);
+        }
+
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        List<DriverDistanceResult> merged = ShardedRankReport.merge(shardReports, 0, Integer.MAX_VALUE);
+        assertEquals(driverRankReport.size(), merged.size());
+        for (int i = 0; i < merged.size(); i++)
+        {
+            assertEquals((long) driverRankReport.get(i).getTotalDistance(), merged.get(i).getTotalDistance());
+        }
+
+        List<DriverDistanceResult> secondPage = ShardedRankReport.merge(shardReports, 3, 3);
+        assertEquals(3, secondPage.size());
+        assertEquals(merged.get(3).getDriverId(), secondPage.get(0).getDriverId());
+
+        // Merged by the exact distance, the ids of the Drivers of two shards may be the same.
+        List<DriverDistanceResult> mergedShards = ShardedRankReport.merge(Lists.newArrayList(
+                Lists.newArrayList(new DriverDistanceResult(1, "Adi", "Haifa", 10, 10.2), new DriverDistanceResult(2, "Ben", "Haifa", 5, 5.0)),
+                Lists.newArrayList(new DriverDistanceResult(1, "Gal", "Eilat", 10, 10.7), new DriverDistanceResult(2, "Dor", "Eilat", 5, 5.0))),
+                0, Integer.MAX_VALUE);
+        List<String> mergedNames = new ArrayList<>();
+        for (DriverDistanceResult result : mergedShards)
+        {
+            mergedNames.add(result.getDriverName());
+        }
+        assertEquals(Lists.newArrayList("Gal", "Adi", "Ben", "Dor"), mergedNames);
+    }
+
+    @Test
+    public void driverRankReportVersion_changesOnlyWithTheRanking() throws Exception
+    {
+        long version = waltService.getDriverRankReportVersion();
+        waltService.getDriverRankReport();
+        assertEquals(version, waltService.getDriverRankReportVersion());
+
+        waltService.createOrderAndAssignDriver(customerRepository.findByName("Mozart"), restaurantRepository.findByName("meat"),
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("02-10-2021 12:00"));
+        assertTrue(waltService.getDriverRankReportVersion() > version);
+
+        // The report row keeps only what the report shows, not the Driver entity graph.
+        DriverDistance top = waltService.getDriverRankReport().get(0);
+        DriverDistanceResult result = DriverDistanceResult.of(top);
+        assertEquals((long) top.getDriver().getId(), result.getDriverId());
+        assertEquals(top.getDriver().getName(), result.getDriverName());
+        assertEquals(top.getDriver().getCity().getName(), result.getCity());
+        assertEquals((long) top.getTotalDistance(), result.getTotalDistance());
+    }
+
+    @Test
+    public void bulkImporter_importCityWithHistory() throws Exception
+    {
+        Map<ImportType, Path> map_type_file = new EnumMap<>(ImportType.class);
+        map_type_file.put(ImportType.CITIES, Files.write(tempDir.resolve("cities.csv"),
+                Lists.newArrayList("name", "Eilat", "Haifa")));
+        map_type_file.put(ImportType.CUSTOMERS, Files.write(tempDir.resolve("customers.csv"),
+                Lists.newArrayList("city,name,address", "Eilat,Vivaldi,\"Antonio Lucio Vivaldi, Venice\"")));
+        map_type_file.put(ImportType.RESTAURANTS, Files.write(tempDir.resolve("restaurants.ndjson"),
+                Lists.newArrayList("{\"name\":\"fish\",\"city\":\"Eilat\",\"address\":\"Fish by the sea\"}")));
+        map_type_file.put(ImportType.DRIVERS, Files.write(tempDir.resolve("drivers.ndjson"),
+                Lists.newArrayList("{\"name\":\"Yael\",\"city\":\"Eilat\"}", "{\"name\":\"Omer\",\"city\":\"Eilat\"}",
+                        "{\"name\":\"Gil\",\"city\":\"Atlantis\"}")));
+        map_type_file.put(ImportType.DELIVERIES, Files.write(tempDir.resolve("deliveries.csv"),
+                Lists.newArrayList("driver,restaurant,customer,deliveryTime,distance",
+                        "Yael,fish,Vivaldi,01-10-2021 15:00,7.5",
+                        "Yael,fish,Vivaldi,01-10-2021 16:00,2.5",
+                        "Yael,fish,Vivaldi,01-10-2021 16:00,1",
+                        "Yael,fish,Vivaldi,01-10-2021 16:30,1",
+                        "Omer,fish,Vivaldi,01-10-2021 15:00,not a number")));
+
+        List<ImportResult> results = bulkImporter.importFiles(map_type_file);
+
+        // Haifa already exists, Atlantis does not, Yael is booked twice at 16:00 (and again at 16:30), and Omer's distance is invalid.
+        assertEquals(5, results.size());
+        assertEquals(1, results.get(0).getImported());
+        assertEquals(1, results.get(0).getRejected());
+        assertEquals(2, results.get(3).getImported());
+        assertEquals(1, results.get(3).getRejected());
+        assertEquals(2, results.get(4).getImported());
+        assertEquals(3, results.get(4).getRejected());
+
+        City eilat = cityRepository.findByName("Eilat");
+        assertEquals("Antonio Lucio Vivaldi, Venice", customerRepository.findByName("Vivaldi").getAddress());
+        Driver yael = driverRepository.findByName("Yael");
+        assertEquals(eilat.getId(), yael.getCity().getId());
+        assertEquals(10.0, yael.getDistance(), 0.001);
+        assertEquals(2, yael.getDeliveryCount());
+
+        // The derived state knows the imported history.
+        assertEquals(2, driverAvailabilityIndex.getTotalDeliveries(yael.getId()));
+        assertEquals(yael.getId(), waltService.getDriverRankReportByCity(eilat).get(0).getDriver().getId());
+        Delivery delivery = waltService.createOrderAndAssignDriver(customerRepository.findByName("Vivaldi"), restaurantRepository.findByName("fish"),
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 15:00"));
+        assertEquals("Omer", delivery.getDriver().getName());
+
+        // The database rejects a second Delivery of the same Driver seat in the hour, at another time of the hour.
+        Delivery sameHour = new Delivery(yael, restaurantRepository.findByName("fish"), customerRepository.findByName("Vivaldi"),
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 15:30"));
+        try
+        {
+            deliveryRepository.save(sameHour);
+            Assert.fail("Should have thrown an exception: the seat 0 of Yael at 15:00 is taken");
+        }
+        catch (DataIntegrityViolationException e)
+        {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void deliveryCount_keptWithDeliveriesAndReconciled() throws Exception
+    {
+        Delivery delivery = waltService.createOrderAndAssignDriver(customerRepository.findByName("Mozart"), restaurantRepository.findByName("meat"),
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("02-10-2021 12:00"));
+        Driver driver = driverRepository.findByName(delivery.getDriver().getName());
+        assertEquals(deliveryRepository.findByDriver(driver).size(), driver.getDeliveryCount());
+        assertEquals(3, driverRepository.findByName("Mary").getDeliveryCount());
+
+        DeliveryCountReport report = deliveryCountReconciler.reconcile(false);
+        assertEquals(11, report.getChecked());
+        assertEquals(0, report.getDrifted());
+
+        // A Delivery saved without its Driver.
+        Driver ofri = driverRepository.findByName("Ofri");
+        deliveryRepository.save(new Delivery(ofri, restaurantRepository.findByName("meat"), customerRepository.findByName("Mozart"),
+                new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("03-10-2021 12:00")));
+
+        report = deliveryCountReconciler.reconcile(false);
+        assertEquals(1, report.getDrifted());
+        assertEquals(ofri.getId(), report.getDrifts().get(0).getDriverId());
+        assertEquals(0, report.getDrifts().get(0).getDeliveryCount());
+        assertEquals(1, report.getDrifts().get(0).getActualCount());
+        assertEquals(0, driverRepository.findByName("Ofri").getDeliveryCount());
+
+        assertEquals(1, deliveryCountReconciler.reconcile(true).getDrifted());
+        assertEquals(1, driverRepository.findByName("Ofri").getDeliveryCount());
+        assertEquals(0, deliveryCountReconciler.reconcile(false).getDrifted());
+
+        // A Delivery inserted by hand, the index does not know it until the fix reloads its Driver.
+        DeliveryTime handTime = DeliveryTime.parse("04-10-2021 12:00");
+        jdbcTemplate.update("insert into delivery (id, driver_id, restaurant_id, customer_id, delivery_time, hour_slot, seat, distance)"
+                        + " values (?, ?, ?, ?, ?, ?, 0, 5)", 1_000_000L, ofri.getId(), restaurantRepository.findByName("meat").getId(),
+                customerRepository.findByName("Mozart").getId(), new java.sql.Timestamp(handTime.toDate().getTime()), handTime.getHourSlot());
+        assertTrue(driverAvailabilityIndex.isAvailable(ofri.getId(), handTime.toDate()));
+        assertEquals(1, deliveryCountReconciler.reconcile(true).getDrifted());
+        assertEquals(2, driverRepository.findByName("Ofri").getDeliveryCount());
+        assertEquals(2, driverAvailabilityIndex.getTotalDeliveries(ofri.getId()));
+        assertFalse(driverAvailabilityIndex.isAvailable(ofri.getId(), handTime.toDate()));
+        assertTrue(driverAvailabilityIndex.isAvailable(ofri.getId(), DeliveryTime.parse("04-10-2021 13:00").toDate()));
+    }
+
+    @Test
+    public void reactiveWaltService_orderAndReports() throws Exception
+    {
+        Customer customer = customerRepository.findByName("Beethoven");
+        Restaurant restaurant = restaurantRepository.findByName("chinese");
+        Date deliveryTime = new SimpleDateFormat("dd-MM-yyyy HH:mm").parse("01-10-2021 16:00");
+
+        // Nothing is created until subscribed.
+        Mono<Delivery> order = reactiveWaltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime);
+        assertEquals("Daniel", order.block(Duration.ofSeconds(10)).getDriver().getName());
+
+        // Every subscription is a new order, and no Driver is left for a second one.
+        try
+        {
+            order.block(Duration.ofSeconds(10));
+            Assert.fail("An order without an available Driver must fail");
+        }
+        catch (Exception e)
+        {
+            assertEquals("Sorry no driver available to take the new Delivery!", e.getCause().getMessage());
+        }
+
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport(0, 5);
+        List<DriverDistance> reactiveReport = reactiveWaltService.getDriverRankReport(0, 5).collectList().block();
+        assertEquals(driverRankReport.size(), reactiveReport.size());
+        for (int i = 0; i < driverRankReport.size(); i++)
+        {
+            assertEquals(driverRankReport.get(i).getDriver().getId(), reactiveReport.get(i).getDriver().getId());
+        }
+
+        City tlv = cityRepository.findByName("Tel-Aviv");
+        assertEquals(waltService.getDriverRankReportByCity(tlv, 0, 2).size(),
+                (long) reactiveWaltService.getDriverRankReportByCity(tlv, 0, 2).count().block());
+    }
+
+    @Test
+    public void connectionLimiter_rejectsBeyondItsPermits() throws Exception
+    {
+        ConnectionLimiter connectionLimiter = new ConnectionLimiter(1, Duration.ofMillis(10), new SimpleMeterRegistry());
+        HandlerMethod handler = new HandlerMethod(waltController, "getAsyncOrder", String.class, long.class);
+
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(connectionLimiter.preHandle(first, new MockHttpServletResponse(), handler));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(connectionLimiter.preHandle(new MockHttpServletRequest(), rejected, handler));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+
+        // Not a WaltController request.
+        assertTrue(connectionLimiter.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()));
+
+        // A long poll (DeferredResult) releases its permit as soon as its asynchronous processing starts.
+        connectionLimiter.afterConcurrentHandlingStarted(first, new MockHttpServletResponse(), handler);
+        assertTrue(connectionLimiter.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    public void deliveryTime_parseAndHourSlot() throws Exception
+    {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+        DeliveryTime deliveryTime = DeliveryTime.parse("01-10-2021 12:30");
+        assertEquals(format.parse("01-10-2021 12:30"), deliveryTime.toDate());
+        assertEquals("01-10-2021 12:30", deliveryTime.toString());
+
+        // 12:30 is in the hour slot of 12:00, not of 13:00.
+        assertEquals(DeliveryTime.parse("01-10-2021 12:00").getHourSlot(), deliveryTime.getHourSlot());
+        assertEquals(DeliveryTime.parse("01-10-2021 13:00").getHourSlot() - 1, deliveryTime.getHourSlot());
+        assertEquals(DriverAvailabilityIndex.hourSlotOf(format.parse("01-10-2021 12:59")), deliveryTime.getHourSlot());
+
+        for (String wrong : new String[] {"1-10-2021 12:30", "01-10-2021 12:30:00", "01/10/2021 12:30", "31-02-2021 12:30",
+                "01-13-2021 12:30", "01-10-2021 24:00", "01-10-2021 12:3x", "", null})
+        {
+            try
+            {
+                DeliveryTime.parse(wrong);
+                Assert.fail("Should have thrown an exception: " + wrong);
+            }
+            catch (ParseException e)
+            {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void driverAvailabilityIndex_shiftsAndFreeCapacity() throws Exception
+    {
+        DriverAvailabilityIndex index = new DriverAvailabilityIndex();
+        long day = DeliveryTime.parse("01-10-2021 00:00").getHourSlot();
+
+        // A day shift 8 to 16 taking 2 Deliveries an hour, and a night shift 22 to 6.
+        index.addDriver(1L, 1L, 8, 16, 2);
+        index.addDriver(2L, 1L, 22, 6, 1);
+
+        Date hour9 = DeliveryTime.parse("01-10-2021 09:15").toDate();
+        Date hour23 = DeliveryTime.parse("01-10-2021 23:00").toDate();
+        Date hour3 = DeliveryTime.parse("02-10-2021 03:00").toDate();
+        assertEquals(Long.valueOf(1L), index.findLeastBusyAvailableDriver(1L, hour9));
+        assertEquals(Long.valueOf(2L), index.findLeastBusyAvailableDriver(1L, hour23));
+        assertEquals(Long.valueOf(2L), index.findLeastBusyAvailableDriver(1L, hour3));
+        assertNull(index.findLeastBusyAvailableDriver(1L, DeliveryTime.parse("01-10-2021 18:00").toDate()));
+        assertEquals(2, index.getFreeCapacity(1L, day + 9));
+        assertEquals(0, index.getFreeCapacity(1L, day + 18));
+
+        // The day Driver takes two Deliveries at 9:00, and no third.
+        index.addDelivery(1L, hour9);
+        assertTrue(index.isAvailable(1L, hour9));
+        index.addDelivery(1L, hour9);
+        assertFalse(index.isAvailable(1L, hour9));
+        index.addDelivery(1L, hour9);
+        assertEquals(2, index.getDeliveriesInHour(1L, hour9));
+        assertEquals(2, index.getTotalDeliveries(1L));
+        assertNull(index.findLeastBusyAvailableDriver(1L, hour9));
+        assertEquals(0, index.getFreeCapacity(1L, day + 9));
+
+        // Free hour slots from 9:00: 10:00 to 15:00 (day shift), then 22:00 (night shift).
+        List<Long> freeHourSlots = index.findFreeHourSlots(1L, day + 9, day + 48, 8);
+        assertEquals(8, freeHourSlots.size());
+        assertEquals(Long.valueOf(day + 10), freeHourSlots.get(0));
+        assertEquals(Long.valueOf(day + 15), freeHourSlots.get(5));
+        assertEquals(Long.valueOf(day + 22), freeHourSlots.get(6));
+        assertEquals(Long.valueOf(day + 23), freeHourSlots.get(7));
+        assertTrue(index.findFreeHourSlots(1L, day + 16, day + 22, 1).isEmpty());
+        assertTrue(index.findFreeHourSlots(2L, day, day + 48, 1).isEmpty());
+
+        // A shift change moves the capacity, and the Deliveries already booked in the hours of the new shift.
+        index.setDriverShift(1L, 9, 10, 3);
+        assertTrue(index.isAvailable(1L, hour9));
+        assertEquals(1, index.getFreeCapacity(1L, day + 9));
+        assertEquals(0, index.getFreeCapacity(1L, day + 10));
+        assertEquals(Long.valueOf(day + 22), index.findFreeHourSlots(1L, day + 10, day + 48, 1).get(0));
+
+        // A Delivery of a Driver now off shift does not take the capacity of the Drivers on shift.
+        index.addDriver(4L, 3L, 22, 6, 1);
+        index.addDriver(5L, 3L, 20, 24, 1);
+        index.addDelivery(4L, DeliveryTime.parse("01-10-2021 23:00").toDate());
+        assertEquals(1, index.getFreeCapacity(3L, day + 23));
+        index.setDriverShift(4L, 8, 16, 1);
+        assertEquals(1, index.getFreeCapacity(3L, day + 23));
+        assertEquals(Lists.newArrayList(day + 23), index.findNearestFreeHourSlots(3L, day + 23, day + 23, day + 24, 1));
+        index.setDriverShift(4L, 22, 6, 1);
+        assertEquals(1, index.getFreeCapacity(3L, day + 23));
+
+        // Nearest to 11:00: the night shift 6:00 before is nearer than the night shift 22:00 after; 9:00 is free again.
+        assertEquals(Lists.newArrayList(day + 9, day + 5, day + 4), index.findNearestFreeHourSlots(1L, day + 11, day - 48, day + 48, 3));
+        assertEquals(Lists.newArrayList(day + 22), index.findNearestFreeHourSlots(1L, day + 11, day + 10, day + 48, 1));
+
+        // Searches across pages: a Driver of 10:00 fully booked for 400 days (more than two pages).
+        index.addDriver(3L, 2L, 10, 11, 1);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(DeliveryTime.parse("01-10-2021 10:00").toDate());
+        for (int i = 0; i < 400; i++)
+        {
+            index.addDelivery(3L, calendar.getTime());
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        long lastDay = DriverAvailabilityIndex.hourSlotOf(calendar.getTime()) - 24;
+        long dayBefore = DeliveryTime.parse("30-09-2021 10:00").getHourSlot();
+        assertEquals(Lists.newArrayList(DriverAvailabilityIndex.hourSlotOf(calendar.getTime()), dayBefore),
+                index.findNearestFreeHourSlots(2L, day + 5000, dayBefore - 12, lastDay + 48, 3));
+        assertEquals(Lists.newArrayList(dayBefore), index.findNearestFreeHourSlots(2L, lastDay, dayBefore - 12, lastDay, 3));
+    }
+
+    @Test
+    public void getNearestAvailableDeliveryTimes_bothDirections() throws Exception
+    {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+        City tlv = cityRepository.findByName("Tel-Aviv");
+        Date preferredTime = format.parse("01-10-2021 15:20");
+
+        // All the Tel-Aviv Drivers are busy at 15:00: 16:00 and 14:00 are as near, the later first.
+        assertEquals(Lists.newArrayList(format.parse("01-10-2021 16:00"), format.parse("01-10-2021 14:00"),
+                        format.parse("01-10-2021 17:00"), format.parse("01-10-2021 13:00")),
+                waltService.getNearestAvailableDeliveryTimes(tlv, preferredTime, format.parse("01-01-2021 00:00"), 4));
+
+        // Never earlier than the earliest time.
+        assertEquals(Lists.newArrayList(format.parse("01-10-2021 16:00"), format.parse("01-10-2021 14:30"),
+                        format.parse("01-10-2021 17:00")),
+                waltService.getNearestAvailableDeliveryTimes(tlv, preferredTime, format.parse("01-10-2021 14:30"), 3));
+
+        // A free preferred hour is suggested first, at the preferred time.
+        assertEquals(format.parse("01-10-2021 16:20"),
+                waltService.getNearestAvailableDeliveryTimes(tlv, format.parse("01-10-2021 16:20"), format.parse("01-01-2021 00:00"), 1).get(0));
+
+        // The endpoint suggests from now on only (the fixed clock: 01-11-2021 00:00), for the City of the Customer or the Restaurant.
+        ResponseEntity<?> response = waltController.getAvailableDeliveryTimes("Mozart", null, "01-11-2021 12:00", 3);
+        assertEquals(Lists.newArrayList("01-11-2021 12:00", "01-11-2021 13:00", "01-11-2021 11:00"), response.getBody());
+        response = waltController.getAvailableDeliveryTimes(null, "meat", "01-11-2021 12:00", 1);
+        assertEquals(Lists.newArrayList("01-11-2021 12:00"), response.getBody());
+        response = waltController.getAvailableDeliveryTimes("Mozart", null, "31-10-2021 23:30", 3);
+        assertEquals(Lists.newArrayList("01-11-2021 00:00", "01-11-2021 01:00", "01-11-2021 02:00"), response.getBody());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getAvailableDeliveryTimes("Nobody", null, "01-11-2021 12:00", 3).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getAvailableDeliveryTimes(null, null, "01-11-2021 12:00", 3).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getAvailableDeliveryTimes("Mozart", null, "01-11-2021", 3).getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, waltController.getAvailableDeliveryTimes("Mozart", null, "01-11-2021 12:00", 0).getStatusCode());
+    }
+
+    @Test
+    public void findByDriver_loadsOnlyTheDeliveries()
+    {
+        Driver mary = driverRepository.findByName("Mary");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<Delivery> deliveries = deliveryRepository.findByDriver(mary);
+
+        // One select of the Delivery rows, their Driver, Restaurant, Customer and Cities are not loaded.
+        assertEquals(3, deliveries.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getEntityLoadCount());
+        statistics.setStatisticsEnabled(false);
+    }
+
     @Test
     public void getDriverRankReportByCity_checkReportListSize_forEachCityDrivers()
     {
@@ -380,4 +1310,50 @@ public class MyTest
         driverRankReportByCity = waltService.getDriverRankReportByCity(city);
         assertEquals(3, driverRankReportByCity.size());
     }
+
+    @Test
+    public void findByName_cachedAndInvalidatedOnSave()
+    {
+        Customer customer = customerRepository.findByName("Mozart");
+        assertSame(customer, customerRepository.findByName("Mozart"));
+
+        customer.setAddress("Salzburg");
+        customerRepository.save(customer);
+        assertEquals("Salzburg", customerRepository.findByName("Mozart").getAddress());
+
+        // A renamed Restaurant is not found by its old name any more.
+        Restaurant restaurant = restaurantRepository.findByName("chinese");
+        assertSame(restaurant, restaurantRepository.findByName("chinese"));
+        restaurant.setName("dim sum");
+        restaurantRepository.save(restaurant);
+        assertNull(restaurantRepository.findByName("chinese"));
+        assertEquals(restaurant.getId(), restaurantRepository.findByName("dim sum").getId());
+
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "customersByName").tag("result", "hit")
+                .functionCounter().count() >= 1);
+        assertNull(customerRepository.findByName("Nobody"));
+    }
+
+    @Test
+    public void exportDriverRankReport_sameOrderAsRankReport()
+    {
+        List<DriverRank> driverRanks = new ArrayList<>();
+        waltService.exportDriverRankReport(null, driverRanks::add);
+
+        List<DriverDistance> driverRankReport = waltService.getDriverRankReport();
+        assertEquals(driverRankReport.size(), driverRanks.size());
+        for (int i = 0; i < driverRanks.size(); i++)
+        {
+            assertEquals(driverRankReport.get(i).getDriver().getId(), driverRanks.get(i).getDriverId());
+            assertEquals(driverRankReport.get(i).getTotalDistance().doubleValue(), driverRanks.get(i).getDistance(), 1.0);
+        }
+
+        List<DriverRank> haifaDriverRanks = new ArrayList<>();
+        waltService.exportDriverRankReport(cityRepository.findByName("Haifa"), haifaDriverRanks::add);
+        assertEquals(3, haifaDriverRanks.size());
+        for (DriverRank driverRank : haifaDriverRanks)
+        {
+            assertEquals("Haifa", driverRank.getCityName());
+        }
+    }
 }
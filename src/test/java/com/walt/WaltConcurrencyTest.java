@@ -0,0 +1,178 @@
+package com.walt;
+
+import com.walt.dao.*;
+import com.walt.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test of createOrderAndAssignDriver under parallel order load.
+ * 10 Cities with 50 Drivers each get 10k orders (every Driver booked for 20 hours),
+ * first from a single thread and then from a thread per core, and no Driver may be booked twice.
+ * Note: The order throughput per thread count is measured by ParallelOrderBenchmark (benchmark profile), not here.
+ */
+@SpringBootTest()
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class WaltConcurrencyTest
+{
+    private static final int CITIES = 10;
+    private static final int DRIVERS_PER_CITY = 50;
+    private static final int HOURS = 20;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long FIRST_HOUR = TimeUnit.DAYS.toMillis(18900);
+
+    @Autowired
+    WaltService waltService;
+
+    @Resource
+    CityRepository cityRepository;
+
+    @Resource
+    CustomerRepository customerRepository;
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    DeliveryRepository deliveryRepository;
+
+    @Resource
+    RestaurantRepository restaurantRepository;
+
+    private final List<Customer> customers = new ArrayList<>();
+    private final List<Restaurant> restaurants = new ArrayList<>();
+
+    @BeforeEach()
+    public void prepareData()
+    {
+        for (int c = 0; c < CITIES; c++)
+        {
+            City city = cityRepository.save(new City("City" + c));
+
+            List<Driver> drivers = new ArrayList<>();
+            for (int d = 0; d < DRIVERS_PER_CITY; d++)
+            {
+                drivers.add(new Driver("Driver" + c + "_" + d, city));
+            }
+            driverRepository.saveAll(drivers);
+
+            customers.add(customerRepository.save(new Customer("Customer" + c, city, "Address" + c)));
+            restaurants.add(restaurantRepository.save(new Restaurant("Restaurant" + c, city, "Address" + c)));
+        }
+    }
+
+    @Test
+    public void createOrderAndAssignDriver_parallelOrders_noDoubleBooking() throws Exception
+    {
+        // Every City and hour gets exactly as many orders as it has Drivers, so every order must succeed.
+        List<Callable<Delivery>> singleThreadOrders = new ArrayList<>();
+        List<Callable<Delivery>> parallelOrders = new ArrayList<>();
+        for (int hour = 0; hour < HOURS; hour++)
+        {
+            List<Callable<Delivery>> orders = (hour < HOURS / 2) ? singleThreadOrders : parallelOrders;
+            Date deliveryTime = new Date(FIRST_HOUR + hour * HOUR_MILLIS);
+            for (int d = 0; d < DRIVERS_PER_CITY; d++)
+            {
+                for (int c = 0; c < CITIES; c++)
+                {
+                    Customer customer = customers.get(c);
+                    Restaurant restaurant = restaurants.get(c);
+                    orders.add(() -> waltService.createOrderAndAssignDriver(customer, restaurant, deliveryTime));
+                }
+            }
+        }
+
+        runOrders(singleThreadOrders, 1);
+        runOrders(parallelOrders, Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        assertNoDoubleBooking(CITIES * DRIVERS_PER_CITY * HOURS);
+    }
+
+    @Test
+    public void createOrderAndAssignDriver_moreParallelOrdersThanDrivers() throws Exception
+    {
+        // All the orders compete for the same City and hour, only one order per Driver may succeed.
+        int totalOrders = DRIVERS_PER_CITY * 3;
+        Date deliveryTime = new Date(FIRST_HOUR);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger noDriverFailures = new AtomicInteger();
+        List<Future<Delivery>> futures = new ArrayList<>();
+        for (int i = 0; i < totalOrders; i++)
+        {
+            futures.add(executor.submit(() ->
+            {
+                try
+                {
+                    return waltService.createOrderAndAssignDriver(customers.get(0), restaurants.get(0), deliveryTime);
+                }
+                catch (Exception e)
+                {
+                    assertEquals("Sorry no driver available to take the new Delivery!", e.getMessage());
+                    noDriverFailures.incrementAndGet();
+                    return null;
+                }
+            }));
+        }
+        for (Future<Delivery> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(totalOrders - DRIVERS_PER_CITY, noDriverFailures.get());
+        assertNoDoubleBooking(DRIVERS_PER_CITY);
+    }
+
+    /**
+     * Run all the given orders on the given number of threads, and wait for all of them.
+     */
+    private void runOrders(List<Callable<Delivery>> orders, int threads) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Delivery>> futures = executor.invokeAll(orders);
+        for (Future<Delivery> future : futures)
+        {
+            // Fails the test if any order failed.
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Check that there are exactly the expected Deliveries, no Driver has two Deliveries at the same time,
+     * and every Driver distance and delivery count are the sum and number of its Deliveries (no lost update).
+     */
+    private void assertNoDoubleBooking(int expectedDeliveries)
+    {
+        List<Delivery> deliveries = (List<Delivery>) deliveryRepository.findAll();
+        assertEquals(expectedDeliveries, deliveries.size());
+
+        Set<String> bookings = new HashSet<>();
+        Map<Long, Double> map_driverId_distance = new HashMap<>();
+        Map<Long, Long> map_driverId_deliveryCount = new HashMap<>();
+        for (Delivery delivery : deliveries)
+        {
+            Long driverId = delivery.getDriver().getId();
+            assertTrue("Driver booked twice", bookings.add(driverId + "@" + delivery.getDeliveryTime().getTime()));
+            map_driverId_distance.merge(driverId, delivery.getDistance(), Double::sum);
+            map_driverId_deliveryCount.merge(driverId, 1L, Long::sum);
+        }
+
+        for (Driver driver : driverRepository.findAll())
+        {
+            assertEquals(map_driverId_distance.getOrDefault(driver.getId(), 0.0), driver.getDistance(), 1e-6);
+            assertEquals(map_driverId_deliveryCount.getOrDefault(driver.getId(), 0L).longValue(), driver.getDeliveryCount());
+        }
+    }
+}
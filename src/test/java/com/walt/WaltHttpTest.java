@@ -0,0 +1,120 @@
+package com.walt;
+
+import com.walt.dao.*;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.DeliveryTime;
+import com.walt.model.Driver;
+import com.walt.model.Restaurant;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The rank report over HTTP, through the connector: its ETag (304 while the ranking is unchanged) and its gzip encoding.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class WaltHttpTest
+{
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    WaltService waltService;
+
+    @Resource
+    CityRepository cityRepository;
+
+    @Resource
+    CustomerRepository customerRepository;
+
+    @Resource
+    DriverRepository driverRepository;
+
+    @Resource
+    RestaurantRepository restaurantRepository;
+
+    @BeforeEach()
+    public void prepareData()
+    {
+        City tlv = new City("Tel-Aviv");
+        cityRepository.save(tlv);
+
+        // Enough Drivers for a report above 'server.compression.min-response-size'.
+        List<Driver> drivers = new ArrayList<>();
+        for (int i = 0; i < 60; i++)
+        {
+            drivers.add(new Driver("Driver " + i, tlv));
+        }
+        driverRepository.saveAll(drivers);
+
+        customerRepository.save(new Customer("Beethoven", tlv, "Ludwig van Beethoven"));
+        restaurantRepository.saveAll(Lists.newArrayList(new Restaurant("vegan", tlv, "Only vegan")));
+    }
+
+    @Test
+    public void getDriverRankReport_eTagAndGzip() throws Exception
+    {
+        HttpHeaders gzip = new HttpHeaders();
+        gzip.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> report = restTemplate.exchange("/driverRankReport", HttpMethod.GET, new HttpEntity<>(gzip), byte[].class);
+
+        assertEquals(HttpStatus.OK, report.getStatusCode());
+        assertEquals("gzip", report.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gunzip(report.getBody()).startsWith("["));
+        String eTag = report.getHeaders().getETag();
+        assertNotNull(eTag);
+
+        // The compressed report keeps its (weak) ETag, so a poll of an unchanged ranking is answered 304.
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ifNoneMatch.setIfNoneMatch(eTag);
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                restTemplate.exchange("/driverRankReport", HttpMethod.GET, new HttpEntity<>(ifNoneMatch), byte[].class).getStatusCode());
+
+        // A new Delivery changes the ranking, the same ETag gets the new report.
+        waltService.createOrderAndAssignDriver(customerRepository.findByName("Beethoven"), restaurantRepository.findByName("vegan"),
+                DeliveryTime.parse("01-10-2021 12:00").toDate());
+        ResponseEntity<byte[]> changed = restTemplate.exchange("/driverRankReport", HttpMethod.GET, new HttpEntity<>(ifNoneMatch), byte[].class);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertTrue( ! (eTag.equals(changed.getHeaders().getETag())));
+    }
+
+    private static String gunzip(byte[] body) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body)))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; )
+            {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.walt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.walt.dao.CityRepository;
+import com.walt.dao.CustomerRepository;
+import com.walt.importer.BulkImporter;
+import com.walt.importer.ImportResult;
+import com.walt.importer.ImportType;
+import com.walt.model.City;
+import com.walt.model.Customer;
+import com.walt.model.modelRequset.CreateOrder;
+import com.walt.model.modelResponse.DriverDistanceResult;
+import com.walt.shard.CityShards;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A sharded deployment of two shards, each its own application context with its own embedded H2 database:
+ * every City is written only to its shard, a request of a City of the other shard is redirected to it,
+ * and the rank report of all the Drivers is merged from both shards.
+ */
+public class WaltShardingTest
+{
+    // Candidate City names, the first one owned by each shard is used.
+    private static final String[] CITY_NAMES = {"Tel-Aviv", "Haifa", "Jerusalem", "Beer-Sheva", "Eilat", "Ashdod"};
+
+    private static final List<ConfigurableApplicationContext> shards = new ArrayList<>();
+    private static final List<String> peers = new ArrayList<>();
+    private static final String[] shardCities = new String[2];
+
+    // Requests of the test: redirects are not followed, and error statuses are answered, not thrown.
+    private static final RestTemplate restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory()
+    {
+        @Override
+        protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException
+        {
+            super.prepareConnection(connection, httpMethod);
+            connection.setInstanceFollowRedirects(false);
+        }
+    });
+
+    @TempDir
+    static Path tempDir;
+
+    @BeforeAll
+    public static void startShards() throws IOException
+    {
+        peers.add("http://localhost:" + freePort());
+        peers.add("http://localhost:" + freePort());
+        CityShards cityShards = new CityShards(2, 0, String.join(",", peers));
+        for (String cityName : CITY_NAMES)
+        {
+            if (shardCities[cityShards.shardOf(cityName)] == null)
+            {
+                shardCities[cityShards.shardOf(cityName)] = cityName;
+            }
+        }
+
+        for (int shard = 0; shard < 2; shard++)
+        {
+            shards.add(new SpringApplicationBuilder(WaltApplication.class)
+                    .initializers(context -> context.getBeanFactory().registerSingleton("testConfigurationExcludeFilter", new TypeExcludeFilter()
+                    {
+                        // The test configurations of the other tests (e.g. their fixed Clock) are not part of a shard.
+                        @Override
+                        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+                        {
+                            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+                        }
+                    }))
+                    .run("--server.port=" + URI.create(peers.get(shard)).getPort(),
+                            "--spring.datasource.url=jdbc:h2:mem:walt-shard-" + shard + ";DB_CLOSE_DELAY=-1",
+                            "--walt.sharding.shards=2",
+                            "--walt.sharding.shard=" + shard,
+                            "--walt.sharding.peers=" + String.join(",", peers)));
+        }
+
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler()
+        {
+            @Override
+            public boolean hasError(ClientHttpResponse response)
+            {
+                return false;
+            }
+        });
+    }
+
+    @AfterAll
+    public static void stopShards()
+    {
+        for (ConfigurableApplicationContext shard : shards)
+        {
+            shard.close();
+        }
+    }
+
+    @Test
+    public void cityShards_placementRedirectAndMerge() throws Exception
+    {
+        String city0 = shardCities[0];
+        String city1 = shardCities[1];
+
+        // The same files are imported to both shards, each shard keeps only the rows of its own City.
+        Map<ImportType, Path> map_type_file = new EnumMap<>(ImportType.class);
+        map_type_file.put(ImportType.CITIES, Files.write(tempDir.resolve("cities.csv"),
+                Lists.newArrayList("name", city0, city1)));
+        map_type_file.put(ImportType.CUSTOMERS, Files.write(tempDir.resolve("customers.csv"),
+                Lists.newArrayList("city,name,address", city0 + ",Bach,Leipzig", city1 + ",Chopin,Warsaw")));
+        map_type_file.put(ImportType.RESTAURANTS, Files.write(tempDir.resolve("restaurants.csv"),
+                Lists.newArrayList("city,name,address", city0 + ",vegan,Only vegan", city1 + ",fish,Fish by the sea")));
+        map_type_file.put(ImportType.DRIVERS, Files.write(tempDir.resolve("drivers.csv"),
+                Lists.newArrayList("city,name", city0 + ",Mary", city0 + ",Patricia", city1 + ",Noa", city1 + ",Ofri")));
+        map_type_file.put(ImportType.DELIVERIES, Files.write(tempDir.resolve("deliveries.csv"),
+                Lists.newArrayList("driver,restaurant,customer,deliveryTime,distance",
+                        "Mary,vegan,Bach,01-10-2021 15:00,7.5",
+                        "Patricia,vegan,Bach,01-10-2021 15:00,3.2",
+                        "Noa,fish,Chopin,01-10-2021 15:00,7.9",
+                        "Ofri,fish,Chopin,01-10-2021 15:00,3.0")));
+        for (ConfigurableApplicationContext shard : shards)
+        {
+            for (ImportResult result : shard.getBean(BulkImporter.class).importFiles(map_type_file))
+            {
+                assertEquals(result.toString(), result.getRejected(), result.getImported());
+            }
+        }
+        assertNotNull(shards.get(0).getBean(CityRepository.class).findByName(city0));
+        assertNull(shards.get(0).getBean(CityRepository.class).findByName(city1));
+        assertNull(shards.get(1).getBean(CityRepository.class).findByName(city0));
+        assertNotNull(shards.get(1).getBean(CityRepository.class).findByName(city1));
+
+        // The rank report of any shard merges both shards, by the exact distance.
+        for (String peer : peers)
+        {
+            DriverDistanceResult[] report = restTemplate.getForObject(peer + "/driverRankReport", DriverDistanceResult[].class);
+            List<String> names = new ArrayList<>();
+            for (DriverDistanceResult result : report)
+            {
+                names.add(result.getDriverName());
+            }
+            assertEquals(Lists.newArrayList("Noa", "Mary", "Patricia", "Ofri"), names);
+        }
+
+        // An order of the City of the other shard is redirected to it, with its body.
+        CreateOrder createOrder = new CreateOrder("Chopin", "fish", "01-10-2021 16:00");
+        createOrder.setCity(city1);
+        ResponseEntity<String> redirect = restTemplate.postForEntity(peers.get(0) + "/createOrder", createOrder, String.class);
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirect.getStatusCode());
+        assertEquals(URI.create(peers.get(1) + "/createOrder"), redirect.getHeaders().getLocation());
+        JsonNode created = restTemplate.postForObject(redirect.getHeaders().getLocation(), createOrder, JsonNode.class);
+        assertTrue(created.get("created").asBoolean());
+        assertTrue(Lists.newArrayList("Noa", "Ofri").contains(created.get("driver").asText()));
+
+        // A Customer saved to the wrong shard still has its orders and delivery times served by the shard of its City.
+        City misplacedCity = shards.get(0).getBean(CityRepository.class).save(new City(city1));
+        shards.get(0).getBean(CustomerRepository.class).save(new Customer("Liszt", misplacedCity, "Raiding"));
+        redirect = restTemplate.postForEntity(peers.get(0) + "/createOrder", new CreateOrder("Liszt", "fish", "01-10-2021 17:00"), String.class);
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirect.getStatusCode());
+        assertEquals(URI.create(peers.get(1) + "/createOrder"), redirect.getHeaders().getLocation());
+        redirect = restTemplate.getForEntity(peers.get(0) + "/availableDeliveryTimes?customer=Liszt&deliveryTime=01-10-2021 17:00", String.class);
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirect.getStatusCode());
+        assertEquals(peers.get(1) + "/availableDeliveryTimes", redirect.getHeaders().getLocation().toString().split("\\?")[0]);
+
+        // The reports and exports of a City are redirected too.
+        redirect = restTemplate.getForEntity(peers.get(0) + "/driverRankReport/export?city=" + city1, String.class);
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirect.getStatusCode());
+        assertEquals(URI.create(peers.get(1) + "/driverRankReport/export?city=" + city1), redirect.getHeaders().getLocation());
+        redirect = restTemplate.getForEntity(peers.get(1) + "/driverRankReportByCity?city=" + city0, String.class);
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, redirect.getStatusCode());
+        assertEquals(URI.create(peers.get(0) + "/driverRankReportByCity?city=" + city0), redirect.getHeaders().getLocation());
+
+        // A batch is not redirected, only its orders of the other shard fail.
+        CreateOrder otherShardOrder = new CreateOrder("Chopin", "fish", "01-10-2021 18:00");
+        otherShardOrder.setCity(city1);
+        JsonNode results = restTemplate.postForObject(peers.get(0) + "/createOrders",
+                Lists.newArrayList(new CreateOrder("Bach", "vegan", "01-10-2021 18:00"), otherShardOrder), JsonNode.class);
+        assertTrue(results.get(0).get("created").asBoolean());
+        assertEquals("Error - The City of the order is owned by another shard!", results.get(1).get("error").asText());
+    }
+
+    private static int freePort() throws IOException
+    {
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+    }
+}